@@ -0,0 +1,384 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the requests in flight to each host, adapting the limit to what the host can take.
+ *
+ * <p>The limit follows the gradient between the long-term and the latest round trip times: while latency stays
+ * within the tolerance of its long-term average the limit grows by about its square root per response, and as
+ * latency rises above it the limit shrinks proportionally. Responses throttled (429) or failed (5xx), and transport
+ * failures, cut the limit multiplicatively. Responses received while fewer than half the permits are in use say
+ * little about the capacity of the host, so they do not grow the limit.</p>
+ *
+ * <p>Requests over the limit wait in a queue for up to maxQueueTime, and are rejected with a
+ * {@link RequestRejectedException} once it expires. They are served by {@link RequestPriority}, and in arrival
+ * order within a priority. A waiting request is promoted one priority every agingInterval, so that a steady flow of
+ * higher priority requests cannot starve the others. When the queue is full, a request is rejected right away
+ * unless it would be served before the last request waiting, which is rejected in its place. Requests whose
+ * deadline passes while they wait are rejected before being signed.</p>
+ *
+ * Example:
+ * <pre>
+ *
+ *     AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+ *         .initialLimit(20)
+ *         .maxLimit(500)
+ *         .maxQueueSize(100)
+ *         .maxQueueTime(Duration.ofMillis(200))
+ *         .build();
+ *
+ *     ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+ *         .httpClient(httpClient)
+ *         .concurrencyLimiter(limiter)
+ *         .build();
+ *
+ *     int limit = limiter.getHostLimits().get("api.example.com:443").getLimit();
+ *
+ * </pre>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double LONG_RTT_SMOOTHING = 0.05;
+
+    final int initialLimit;
+    final int minLimit;
+    final int maxLimit;
+    final int maxQueueSize;
+    final long maxQueueNanos;
+    final long agingNanos;
+    final double rttTolerance;
+    final double smoothing;
+    final double backoffRatio;
+
+    private final Map<String, HostLimit> hostLimits = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Creates an AdaptiveConcurrencyLimiter
+     * @param initialLimit limit of a host before any response is received from it, defaults to 20
+     * @param minLimit lowest limit, defaults to 1
+     * @param maxLimit highest limit, defaults to 1000
+     * @param maxQueueSize maximum number of requests waiting for each host, defaults to 100
+     * @param maxQueueTime maximum time a request waits for a permit, defaults to 500 milliseconds
+     * @param agingInterval time after which a waiting request is served as if it had the next higher priority,
+     *                      defaults to 100 milliseconds
+     * @param rttTolerance how many times its long-term average latency may rise before the limit shrinks,
+     *                     defaults to 1.5
+     * @param smoothing weight of every response in the limit, defaults to 0.2
+     * @param backoffRatio factor applied to the limit on throttled or failed responses, defaults to 0.9
+     */
+    @Builder
+    AdaptiveConcurrencyLimiter(
+        final Integer initialLimit,
+        final Integer minLimit,
+        final Integer maxLimit,
+        final Integer maxQueueSize,
+        final Duration maxQueueTime,
+        final Duration agingInterval,
+        final Double rttTolerance,
+        final Double smoothing,
+        final Double backoffRatio
+    ) {
+        this.minLimit = minLimit == null ? 1 : minLimit;
+        this.maxLimit = maxLimit == null ? 1000 : maxLimit;
+        this.initialLimit = initialLimit == null ? Math.max(this.minLimit, Math.min(20, this.maxLimit)) : initialLimit;
+        this.maxQueueSize = maxQueueSize == null ? 100 : maxQueueSize;
+        this.maxQueueNanos = (maxQueueTime == null ? Duration.ofMillis(500) : maxQueueTime).toNanos();
+        this.agingNanos = (agingInterval == null ? Duration.ofMillis(100) : agingInterval).toNanos();
+        this.rttTolerance = rttTolerance == null ? 1.5 : rttTolerance;
+        this.smoothing = smoothing == null ? 0.2 : smoothing;
+        this.backoffRatio = backoffRatio == null ? 0.9 : backoffRatio;
+
+        if (this.minLimit < 1 || this.minLimit > this.initialLimit || this.initialLimit > this.maxLimit) {
+            throw new IllegalArgumentException(
+                "limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit: " +
+                    this.minLimit + ", " + this.initialLimit + ", " + this.maxLimit
+            );
+        }
+        if (this.maxQueueSize < 0) {
+            throw new IllegalArgumentException("maxQueueSize must not be negative: " + this.maxQueueSize);
+        }
+    }
+
+    /**
+     * @return limit state of every host a request was sent to, keyed by host and port
+     */
+    public Map<String, HostLimit> getHostLimits() {
+        return Collections.unmodifiableMap(hostLimits);
+    }
+
+    /**
+     * Obtains a permit to send a request to its host
+     * @param request the request
+     * @return future completed with the permit once available, or with a RequestRejectedException
+     */
+    CompletableFuture<Permit> acquire(final ApiGatewayRequest request) {
+        return hostLimits.computeIfAbsent(request.getHost() + ":" + request.getPort(), key -> new HostLimit(key))
+            .acquire(request.getPriority(), request.getDeadline());
+    }
+
+    /**
+     * Limit state of a host
+     */
+    public class HostLimit {
+
+        /**
+         * host and port
+         */
+        @Getter
+        final String key;
+
+        private double estimatedLimit = initialLimit;
+        private double longRttNanos;
+        private int inFlight;
+
+        // ordered by the time each waiter is due once aged, first served first
+        private final TreeSet<Waiter> queue = new TreeSet<>(
+            Comparator.comparingLong((Waiter waiter) -> waiter.rank).thenComparingLong(waiter -> waiter.sequence)
+        );
+
+        /**
+         * number of requests rejected because the queue was full or their wait expired
+         */
+        @Getter
+        final AtomicLong shedCount = new AtomicLong();
+
+        /**
+         * number of requests rejected because their deadline passed while they waited
+         */
+        @Getter
+        final AtomicLong expiredCount = new AtomicLong();
+
+        HostLimit(final String key) {
+            this.key = key;
+        }
+
+        /**
+         * @return current number of requests allowed in flight
+         */
+        public synchronized int getLimit() {
+            return (int) estimatedLimit;
+        }
+
+        /**
+         * @return current number of requests in flight
+         */
+        public synchronized int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * @return current number of requests waiting for a permit
+         */
+        public synchronized int getQueueDepth() {
+            return queue.size();
+        }
+
+        CompletableFuture<Permit> acquire(final RequestPriority priority, final Instant deadline) {
+            final long now = System.nanoTime();
+            final long remainingNanos = deadline == null
+                ? Long.MAX_VALUE
+                : Duration.between(Instant.now(), deadline).toNanos();
+            final long waitNanos = Math.min(maxQueueNanos, remainingNanos);
+
+            final Waiter waiter = new Waiter(
+                now + priority.ordinal() * agingNanos,
+                sequence.incrementAndGet(),
+                deadline
+            );
+            final Waiter evicted;
+
+            synchronized (this) {
+                if (inFlight < (int) estimatedLimit) {
+                    inFlight++;
+                    return CompletableFuture.completedFuture(new Permit(this, inFlight));
+                }
+                if (queue.size() < maxQueueSize) {
+                    evicted = null;
+                } else if (!queue.isEmpty() && queue.comparator().compare(waiter, queue.last()) < 0) {
+                    evicted = queue.pollLast();
+                } else {
+                    shedCount.incrementAndGet();
+                    return CompletableFuture.failedFuture(
+                        new RequestRejectedException("too many requests waiting for " + key + ": " + queue.size())
+                    );
+                }
+                queue.add(waiter);
+            }
+
+            if (evicted != null) {
+                shedCount.incrementAndGet();
+                evicted.future.completeExceptionally(
+                    new RequestRejectedException("too many requests waiting for " + key + ", and others came first")
+                );
+            }
+
+            CompletableFuture.delayedExecutor(Math.max(0, waitNanos), TimeUnit.NANOSECONDS)
+                .execute(() -> expire(waiter, waitNanos < maxQueueNanos));
+
+            return waiter.future;
+        }
+
+        private void expire(final Waiter waiter, final boolean deadline) {
+            synchronized (this) {
+                if (!queue.remove(waiter)) {
+                    return;
+                }
+            }
+            if (deadline) {
+                expiredCount.incrementAndGet();
+                waiter.future.completeExceptionally(
+                    new RequestRejectedException("deadline passed waiting for a permit for " + key)
+                );
+            } else {
+                shedCount.incrementAndGet();
+                waiter.future.completeExceptionally(
+                    new RequestRejectedException("timed out waiting for a permit for " + key)
+                );
+            }
+        }
+
+        void release(final Permit permit) {
+            synchronized (this) {
+                inFlight--;
+            }
+
+            dispatch();
+        }
+
+        void release(final Permit permit, final boolean dropped) {
+            final long rttNanos = System.nanoTime() - permit.startNanos;
+
+            synchronized (this) {
+                inFlight--;
+                update(rttNanos, permit.inFlight, dropped);
+            }
+
+            dispatch();
+        }
+
+        private void update(final long rttNanos, final int inFlightAtStart, final boolean dropped) {
+            if (dropped) {
+                estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+                return;
+            }
+
+            longRttNanos = longRttNanos == 0
+                ? rttNanos
+                : longRttNanos * (1 - LONG_RTT_SMOOTHING) + rttNanos * LONG_RTT_SMOOTHING;
+
+            if (inFlightAtStart < estimatedLimit / 2) {
+                return;
+            }
+
+            final double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRttNanos / Math.max(1, rttNanos)));
+            final double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+
+            estimatedLimit = Math.max(
+                minLimit,
+                Math.min(maxLimit, estimatedLimit * (1 - smoothing) + newLimit * smoothing)
+            );
+        }
+
+        private void dispatch() {
+            while (true) {
+                final Waiter waiter;
+                final Permit permit;
+                synchronized (this) {
+                    if (inFlight >= (int) estimatedLimit || queue.isEmpty()) {
+                        return;
+                    }
+                    waiter = queue.pollFirst();
+                    if (waiter.deadline != null && !Instant.now().isBefore(waiter.deadline)) {
+                        permit = null;
+                    } else {
+                        inFlight++;
+                        permit = new Permit(this, inFlight);
+                    }
+                }
+
+                // completed outside the lock, since the waiter goes on to sign and send its request
+                if (permit == null) {
+                    expiredCount.incrementAndGet();
+                    waiter.future.completeExceptionally(
+                        new RequestRejectedException("deadline passed waiting for a permit for " + key)
+                    );
+                } else if (!waiter.future.complete(permit)) {
+                    // cancelled by the caller meanwhile
+                    synchronized (this) {
+                        inFlight--;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A permit to have one request in flight
+     */
+    static class Permit {
+
+        final HostLimit hostLimit;
+        final int inFlight;
+        final long startNanos = System.nanoTime();
+
+        Permit(final HostLimit hostLimit, final int inFlight) {
+            this.hostLimit = hostLimit;
+            this.inFlight = inFlight;
+        }
+
+        /**
+         * Returns the permit, adapting the limit to the outcome of its request
+         * @param response the response, or null if the request failed
+         * @param failure why the request failed, or null
+         */
+        void release(final ApiGatewayResponse response, final Throwable failure) {
+            release(failure, failure == null ? response.getStatusCode() : 0);
+        }
+
+        /**
+         * Returns the permit, adapting the limit to the outcome of its request.
+         * Transport failures, 429 and 5xx responses count as drops, while requests cancelled or rejected
+         * before reaching the host leave the limit as it is.
+         * @param failure why the request failed, or null
+         * @param statusCode status code of the response, if it did not fail
+         */
+        void release(final Throwable failure, final int statusCode) {
+            if (failure == null) {
+                hostLimit.release(this, statusCode == 429 || statusCode >= 500);
+            } else if (ApiGatewayEndpointGroup.isTransportFailure(failure)) {
+                hostLimit.release(this, true);
+            } else {
+                hostLimit.release(this);
+            }
+        }
+    }
+
+    private static class Waiter {
+
+        final long rank;
+        final long sequence;
+        final Instant deadline;
+        final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        Waiter(final long rank, final long sequence, final Instant deadline) {
+            this.rank = rank;
+            this.sequence = sequence;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -1,28 +1,35 @@
 package org.rdelfino.apigateway.client;
 
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
+import org.reactivestreams.FlowAdapters;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
-import software.amazon.awssdk.core.async.AsyncRequestBody;
-import software.amazon.awssdk.http.ContentStreamProvider;
 import software.amazon.awssdk.http.SdkHttpFullRequest;
 import software.amazon.awssdk.http.SdkHttpResponse;
 import software.amazon.awssdk.http.async.AsyncExecuteRequest;
 import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
 import software.amazon.awssdk.http.async.SdkAsyncHttpResponseHandler;
-import software.amazon.awssdk.http.async.SdkHttpContentPublisher;
 import software.amazon.awssdk.regions.Region;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 /**
  * ApiGatewayAsyncClient is a client for the AWS API Gateway that uses the asynchronous request processing model
@@ -68,90 +75,484 @@ import java.util.concurrent.CompletableFuture;
  */
 public class ApiGatewayAsyncClient extends SignedRequestsHandler {
 
-    private static final List<String> EMPTY_CONTENT_LENGTH = List.of("-1");
+    private static final int MAX_INITIAL_BUFFER_SIZE = 1 << 20;
 
     @Getter
     final SdkAsyncHttpClient httpClient;
 
+    final ResponseBodyStorage responseBodyStorage;
+
+    final TrafficRecorder trafficRecorder;
+
+    /**
+     * limiter of the requests in flight to each host, if any
+     */
+    @Getter
+    final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Getter
+    final Tracer tracer;
+
+    /**
+     * budget of the bytes held in memory by the requests in flight, if any
+     */
+    final MemoryBudget memoryBudget;
+
+    /**
+     * cache GET requests are served from, if any
+     */
+    @Getter
+    final ResponseCache responseCache;
+
+    // checkpoint and restore hooks, referenced for as long as this client is
+    Object checkpointHooks;
+
     @Builder
     ApiGatewayAsyncClient(
         final @NonNull SdkAsyncHttpClient httpClient,
         final AwsCredentialsProvider credentialsProvider,
-        final Region region
+        final Region region,
+        final Duration signatureCacheTtl,
+        final Integer payloadHashCacheSize,
+        final Long responseSpillThreshold,
+        final Path responseSpillDirectory,
+        final TrafficRecorder trafficRecorder,
+        final AdaptiveConcurrencyLimiter concurrencyLimiter,
+        final Tracer tracer,
+        final Long maxInFlightBytes,
+        final Long maxResponseSize,
+        final ResponseCache responseCache,
+        final WarmUpPlan checkpointWarmUp,
+        final Integer maxSigningContexts,
+        final Duration signingContextTtl
     ) {
         this(
             SignedRequestFactory.builder()
                 .signingRegion(region)
                 .credentialsProvider(credentialsProvider)
+                .signatureCacheTtl(signatureCacheTtl)
+                .payloadHashCacheSize(payloadHashCacheSize)
+                .maxSigningContexts(maxSigningContexts)
+                .signingContextTtl(signingContextTtl)
             .build(),
-            httpClient
+            httpClient,
+            ResponseBodyStorage.of(responseSpillThreshold, responseSpillDirectory, maxResponseSize),
+            trafficRecorder,
+            concurrencyLimiter,
+            tracer,
+            maxInFlightBytes == null ? null : new MemoryBudget(maxInFlightBytes),
+            responseCache
         );
+        this.checkpointHooks = registerCheckpointHooks(checkpointWarmUp, this::resetConnections);
     }
 
     ApiGatewayAsyncClient(
             final SignedRequestFactory signedRequestFactory,
             final @NonNull SdkAsyncHttpClient httpClient
+    ) {
+        this(signedRequestFactory, httpClient, ResponseBodyStorage.IN_MEMORY);
+    }
+
+    ApiGatewayAsyncClient(
+            final SignedRequestFactory signedRequestFactory,
+            final @NonNull SdkAsyncHttpClient httpClient,
+            final @NonNull ResponseBodyStorage responseBodyStorage
+    ) {
+        this(signedRequestFactory, httpClient, responseBodyStorage, null, null, null, null, null);
+    }
+
+    ApiGatewayAsyncClient(
+            final SignedRequestFactory signedRequestFactory,
+            final @NonNull SdkAsyncHttpClient httpClient,
+            final @NonNull ResponseBodyStorage responseBodyStorage,
+            final TrafficRecorder trafficRecorder,
+            final AdaptiveConcurrencyLimiter concurrencyLimiter,
+            final Tracer tracer,
+            final MemoryBudget memoryBudget,
+            final ResponseCache responseCache
     ) {
         super(signedRequestFactory);
         this.httpClient = httpClient;
+        this.responseBodyStorage = responseBodyStorage;
+        this.trafficRecorder = trafficRecorder;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.tracer = tracer == null ? Tracer.NOOP : tracer;
+        this.memoryBudget = memoryBudget;
+        this.responseCache = responseCache;
+    }
+
+    void resetConnections() {
+        if (httpClient instanceof JdkAsyncHttpClient) {
+            ((JdkAsyncHttpClient) httpClient).resetConnections();
+        }
     }
 
     /**
-     * Invoke the API Gateway asynchronously
+     * Invoke the API Gateway asynchronously.
+     * With a concurrency limiter, the request may wait for a permit before being signed and sent, served
+     * by priority, or fail with a {@link RequestRejectedException} if it is shed.
+     * Requests whose deadline has passed fail with a RequestRejectedException without being sent.
+     * With a response cache, GET requests may be served from it without being sent.
+     *
      * @param apiGatewayRequest ApiGatewayRequest
      * @return CompletableFuture from which to obtain the response
      */
     public CompletableFuture<ApiGatewayResponse> invoke(
         final @NonNull ApiGatewayRequest apiGatewayRequest
     ) {
+        if (isPastDeadline(apiGatewayRequest)) {
+            return CompletableFuture.failedFuture(
+                new RequestRejectedException("deadline passed before sending the request: " + apiGatewayRequest.getDeadline())
+            );
+        }
+
+        if (responseCache != null && ResponseCache.isCacheable(apiGatewayRequest)) {
+            return responseCache.invokeAsync(apiGatewayRequest, request -> safely(() -> invokeRemote(request)));
+        }
 
-        final SdkHttpFullRequest request = signedRequestFactory.create(apiGatewayRequest);
+        return invokeRemote(apiGatewayRequest);
+    }
+
+    private CompletableFuture<ApiGatewayResponse> invokeRemote(final ApiGatewayRequest apiGatewayRequest) {
+        final Span span = startSpan(tracer, apiGatewayRequest);
+
+        if (trafficRecorder == null && span == Span.NOOP) {
+            return admit(apiGatewayRequest, span, () -> send(apiGatewayRequest, span), ApiGatewayResponse::getStatusCode);
+        }
 
-        final AsyncRequestBody payloadBody =
-                AsyncRequestBody.fromByteBuffer(
-                    request.contentStreamProvider()
-                        .map(ContentStreamProvider::newStream)
-                        .map(Buffer::from)
-                        .map(Buffer::asByteBuffer)
-                        .orElseGet(() -> ByteBuffer.wrap(new byte[0]))
+        final long startNanos = System.nanoTime();
+        final AtomicBoolean sent = new AtomicBoolean();
+
+        final CompletableFuture<ApiGatewayResponse> future = admit(
+            apiGatewayRequest,
+            span,
+            () -> {
+                sent.set(true);
+                return send(apiGatewayRequest, span);
+            },
+            ApiGatewayResponse::getStatusCode
+        );
+
+        // send ends the span and records the call once it runs; until then, a failure to admit the request does
+        future.whenComplete((response, failure) -> {
+            if (failure != null && !sent.get()) {
+                if (trafficRecorder != null) {
+                    trafficRecorder.record(apiGatewayRequest, startNanos, TrafficLog.FAILED, 0);
+                }
+                span.end(null, failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Runs a call once its request is admitted: holding a permit of the concurrency limiter, if any,
+     * and with its payload reserved from the memory budget, if any. Both are returned once the call completes.
+     * @param apiGatewayRequest the request
+     * @param span span of the invocation
+     * @param call sends the request
+     * @param statusCode status code of the outcome of the call, adapting the concurrency limit
+     * @param <T> outcome of the call
+     * @return CompletableFuture completed with the outcome of the call
+     */
+    private <T> CompletableFuture<T> admit(
+        final ApiGatewayRequest apiGatewayRequest,
+        final Span span,
+        final Supplier<CompletableFuture<T>> call,
+        final ToIntFunction<T> statusCode
+    ) {
+        if (concurrencyLimiter == null) {
+            return reserve(apiGatewayRequest, call);
+        }
+
+        final long queueStart = span.isRecording() ? System.nanoTime() : 0;
+
+        final CompletableFuture<AdaptiveConcurrencyLimiter.Permit> futurePermit =
+            concurrencyLimiter.acquire(apiGatewayRequest);
+
+        if (span.isRecording()) {
+            futurePermit.thenRun(() -> span.stage(Span.Stage.QUEUE, queueStart, System.nanoTime()));
+        }
+
+        return futurePermit.thenCompose(permit -> {
+            final CompletableFuture<T> future = safely(() -> reserve(apiGatewayRequest, call));
+            future.whenComplete((outcome, failure) ->
+                permit.release(failure, failure == null ? statusCode.applyAsInt(outcome) : 0)
+            );
+            return future;
+        });
+    }
+
+    private <T> CompletableFuture<T> reserve(
+        final ApiGatewayRequest apiGatewayRequest,
+        final Supplier<CompletableFuture<T>> call
+    ) {
+        if (memoryBudget == null) {
+            return call.get();
+        }
+
+        final PayloadSource payload = apiGatewayRequest.getPayloadSource();
+        final long payloadBytes = payload == null ? 0 : payload.size();
+
+        final CompletableFuture<Void> reservation = memoryBudget.reserve(payloadBytes, apiGatewayRequest.getDeadline());
+        final CompletableFuture<T> admitted = reservation.thenCompose(reserved -> {
+            final CompletableFuture<T> future = safely(call);
+            future.whenComplete((outcome, failure) -> memoryBudget.release(payloadBytes));
+            return future;
+        });
+        // cancelling the invocation withdraws it from the budget while it waits
+        admitted.whenComplete((outcome, failure) -> {
+            if (failure != null) {
+                reservation.cancel(false);
+            }
+        });
+        return admitted;
+    }
+
+    private CompletableFuture<ApiGatewayResponse> send(final ApiGatewayRequest apiGatewayRequest, final Span span) {
+        final AsyncResponseHandler responseHandler = new AsyncResponseHandler(
+            apiGatewayRequest.getMapper(),
+            responseBodyStorage,
+            apiGatewayRequest.getMaxResponseSize(),
+            memoryBudget,
+            span
+        );
+
+        final long startNanos = System.nanoTime();
+
+        final CompletableFuture<Void> execution;
+        try {
+            final SdkHttpFullRequest request = signedRequestFactory.create(apiGatewayRequest, span);
+            responseHandler.sendStartNanos = span.isRecording() ? System.nanoTime() : 0;
+            execution = execute(request, apiGatewayRequest.getPayloadSource(), responseHandler);
+        } catch (RuntimeException e) {
+            if (trafficRecorder != null) {
+                trafficRecorder.record(apiGatewayRequest, startNanos, TrafficLog.FAILED, 0);
+            }
+            span.end(null, e);
+            throw e;
+        }
+
+        final CompletableFuture<ApiGatewayResponse> futureResponse = execution
+                .whenComplete((v, failure) -> {
+                    if (failure != null) {
+                        // not every http client reports transport failures to the response handler as well
+                        responseHandler.future.completeExceptionally(failure);
+                    }
+                })
+                .thenCombine(
+                    responseHandler.future,
+                    (v, response) -> response
                 );
 
-        final AsyncResponseHandler responseHandler =
-                new AsyncResponseHandler(apiGatewayRequest.getMapper());
+        if (trafficRecorder == null && span == Span.NOOP) {
+            return futureResponse;
+        }
 
+        return futureResponse.whenComplete((response, failure) -> {
+            if (trafficRecorder != null) {
+                if (failure == null) {
+                    trafficRecorder.record(apiGatewayRequest, startNanos, response.getStatusCode(), responseHandler.buffer.size());
+                } else {
+                    trafficRecorder.record(apiGatewayRequest, startNanos, TrafficLog.FAILED, 0);
+                }
+            }
+            span.end(response, failure);
+        });
+    }
+
+    /**
+     * Invokes the API Gateway asynchronously, decoding the response body incrementally as a JSON array or
+     * as a sequence of whitespace/newline delimited JSON values (NDJSON).
+     *
+     * <p>Elements are decoded one at a time as response body chunks arrive, and further chunks are requested only
+     * while the subscriber has outstanding demand, so memory use does not depend on the number of elements.
+     * Every subscription sends the request again. Non-successful responses terminate the Publisher
+     * with an {@link ApiGatewayException}.</p>
+     *
+     * <p>The request waits for the concurrency limiter and the memory budget like {@link #invoke} does, is rejected
+     * past its deadline, and bodies beyond the maximum response size are aborted. Responses are never cached,
+     * since they are not held whole.</p>
+     *
+     * @param apiGatewayRequest ApiGatewayRequest
+     * @param elementClass Class of the elements to be parsed
+     * @param <Payload> expected type of the elements to be parsed
+     * @return Publisher of the parsed elements
+     */
+    public <Payload> Publisher<Payload> invokeForObjects(
+        final @NonNull ApiGatewayRequest apiGatewayRequest,
+        final @NonNull Class<Payload> elementClass
+    ) {
+        return invokeForObjects(apiGatewayRequest, apiGatewayRequest.getMapper().constructType(elementClass));
+    }
+
+    /**
+     * Invokes the API Gateway asynchronously, decoding the response body incrementally into elements.
+     *
+     * @see #invokeForObjects(ApiGatewayRequest, Class)
+     * @param apiGatewayRequest ApiGatewayRequest
+     * @param elementType JavaType describing the type of the elements to be parsed
+     * @param <Payload> expected type of the elements to be parsed
+     * @return Publisher of the parsed elements
+     */
+    public <Payload> Publisher<Payload> invokeForObjects(
+        final @NonNull ApiGatewayRequest apiGatewayRequest,
+        final @NonNull JavaType elementType
+    ) {
+        return new JsonElementPublisher<>(this, apiGatewayRequest, elementType);
+    }
+
+    /**
+     * Signs and sends a request, delivering the response to the given handler. The request is admitted as invoked
+     * ones are: rejected past its deadline, and subject to the concurrency limiter and the memory budget.
+     * It is never served from the response cache, since its body is not held whole.
+     * @param apiGatewayRequest ApiGatewayRequest
+     * @param responseHandler handler receiving the response headers and body
+     * @param statusCode status code received by the handler, once the execution finishes
+     * @return CompletableFuture completed when the request execution finishes
+     */
+    CompletableFuture<Void> execute(
+        final ApiGatewayRequest apiGatewayRequest,
+        final SdkAsyncHttpResponseHandler responseHandler,
+        final IntSupplier statusCode
+    ) {
+        if (isPastDeadline(apiGatewayRequest)) {
+            return CompletableFuture.failedFuture(
+                new RequestRejectedException("deadline passed before sending the request: " + apiGatewayRequest.getDeadline())
+            );
+        }
+
+        return admit(
+            apiGatewayRequest,
+            Span.NOOP,
+            () -> execute(
+                signedRequestFactory.create(apiGatewayRequest),
+                apiGatewayRequest.getPayloadSource(),
+                responseHandler
+            ),
+            executed -> statusCode.getAsInt()
+        );
+    }
+
+    private CompletableFuture<Void> execute(
+        final SdkHttpFullRequest request,
+        final PayloadSource payloadSource,
+        final SdkAsyncHttpResponseHandler responseHandler
+    ) {
         final AsyncExecuteRequest executeRequest =
             AsyncExecuteRequest.builder()
                 .fullDuplex(false)
                 .request(request)
                 .responseHandler(responseHandler)
                 .requestContentPublisher(
-                    new SdkHttpContentPublisher() {
-                        @Override
-                        public Optional<Long> contentLength() {
-                            return payloadBody.contentLength();
-                        }
-
-                        @Override
-                        public void subscribe(Subscriber<? super ByteBuffer> s) {
-                            payloadBody.subscribe(s);
-                        }
-                    }
+                    payloadSource == null ? PayloadPublisher.EMPTY : new PayloadPublisher(payloadSource)
                 )
             .build();
 
-        return httpClient.execute(executeRequest)
-                .thenCombine(
-                    responseHandler.future,
-                    (v, response) -> response
-                );
+        return httpClient.execute(executeRequest);
+    }
+
+    /**
+     * Prepares this client for its first user-facing request: loads classes, builds JSON serializers and
+     * deserializers, resolves credentials, derives signing keys and optionally opens connections.
+     * The requests of the plan are sent concurrently.
+     *
+     * @param plan what to warm up
+     * @return CompletableFuture from which to obtain how long each stage took, and what failed
+     */
+    public CompletableFuture<WarmUpReport> warmUp(final @NonNull WarmUpPlan plan) {
+        final WarmUp warmUp = new WarmUp(plan);
+        warmUp.prepare(signedRequestFactory);
+
+        if (!plan.isOpenConnections()) {
+            return CompletableFuture.completedFuture(warmUp.report());
+        }
+
+        final long start = warmUp.start();
+        return CompletableFuture.allOf(
+            plan.getRequests().stream()
+                .map(request -> safely(() -> invoke(request)).handle((response, failure) -> {
+                    if (failure != null) {
+                        warmUp.failed(failure);
+                    } else {
+                        response.close();
+                    }
+                    return null;
+                }))
+                .toArray(CompletableFuture[]::new)
+        ).thenApply(done -> {
+            warmUp.end(WarmUpReport.Stage.CONNECTIONS, start);
+            return warmUp.report();
+        });
+    }
+
+    private static <T> CompletableFuture<T> safely(final Supplier<CompletableFuture<T>> call) {
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Invokes the API Gateway for every request emitted by a Publisher.
+     *
+     * <p>Requests are pulled from upstream only while fewer than maxConcurrency invocations are in flight and
+     * downstream has outstanding demand. Responses are emitted in completion order. A failed invocation terminates
+     * the returned Publisher with the failure and cancels the upstream subscription.</p>
+     *
+     * @param requests Publisher of the requests to send
+     * @param maxConcurrency maximum number of requests in flight at any time
+     * @return Publisher of the responses
+     */
+    public Publisher<ApiGatewayResponse> invokeAll(
+        final @NonNull Publisher<ApiGatewayRequest> requests,
+        final int maxConcurrency
+    ) {
+        return new InvokePublisher(this, requests, maxConcurrency);
+    }
+
+    /**
+     * Invokes the API Gateway for every request emitted by a java.util.concurrent.Flow.Publisher.
+     * Named apart from invokeAll, so that a lambda is never ambiguous between the two Publisher types.
+     *
+     * @see #invokeAll(Publisher, int)
+     * @param requests Flow.Publisher of the requests to send
+     * @param maxConcurrency maximum number of requests in flight at any time
+     * @return Flow.Publisher of the responses
+     */
+    public Flow.Publisher<ApiGatewayResponse> invokeAllFlow(
+        final @NonNull Flow.Publisher<ApiGatewayRequest> requests,
+        final int maxConcurrency
+    ) {
+        return FlowAdapters.toFlowPublisher(
+            invokeAll(FlowAdapters.toPublisher(requests), maxConcurrency)
+        );
     }
 
     private static class AsyncResponseHandler implements SdkAsyncHttpResponseHandler, Subscriber<ByteBuffer> {
 
         final ObjectMapper mapper;
+        final ResponseBodyStorage bodyStorage;
+        final Long maxResponseSize;
+        final MemoryBudget memoryBudget;
+        final Span span;
+
+        long sendStartNanos;
+        private long receiveStartNanos;
 
-        AsyncResponseHandler(final ObjectMapper mapper) {
+        AsyncResponseHandler(
+            final ObjectMapper mapper,
+            final ResponseBodyStorage bodyStorage,
+            final Long maxResponseSize,
+            final MemoryBudget memoryBudget,
+            final Span span
+        ) {
             this.mapper = mapper;
+            this.bodyStorage = bodyStorage;
+            this.maxResponseSize = maxResponseSize;
+            this.memoryBudget = memoryBudget;
+            this.span = span;
         }
 
         private String statusText;
@@ -160,17 +561,20 @@ public class ApiGatewayAsyncClient extends SignedRequestsHandler {
         private boolean isSuccessful;
         private Subscription subscription;
 
-        int remainingBytes = -1;
-
-        private Buffer buffer = new Buffer(256);
+        private SpillableBuffer buffer;
+        private MemoryBudget.Receiver receiver;
+        private Runnable requestNext;
 
         final CompletableFuture<ApiGatewayResponse> future = new CompletableFuture<>();
 
         @Override
         public void onSubscribe(final Subscription subscription) {
             this.subscription = subscription;
-            if (remainingBytes > 0) {
-                subscription.request(remainingBytes);
+            if (future.isDone()) {
+                // rejected on its headers, the body is not worth receiving
+                subscription.cancel();
+            } else {
+                subscription.request(receiver == null ? Long.MAX_VALUE : 1);
             }
         }
 
@@ -181,9 +585,32 @@ public class ApiGatewayAsyncClient extends SignedRequestsHandler {
             this.isSuccessful = sdkHttpResponse.isSuccessful();
             this.headers = sdkHttpResponse.headers();
 
-            this.remainingBytes = Integer.parseInt(
-                headers.getOrDefault("Content-Length", EMPTY_CONTENT_LENGTH).get(0)
+            if (span.isRecording()) {
+                receiveStartNanos = System.nanoTime();
+                span.stage(Span.Stage.SEND, sendStartNanos, receiveStartNanos);
+                responseAttributes(span, sdkHttpResponse);
+            }
+
+            final long contentLength = contentLength(sdkHttpResponse);
+
+            final long maxSize = bodyStorage.maxSize(maxResponseSize);
+            if (contentLength > maxSize) {
+                future.completeExceptionally(new ResponseTooLargeException(contentLength, maxSize));
+                return;
+            }
+
+            this.buffer = bodyStorage.newBuffer(
+                contentLength > 0 ? (int) Math.min(contentLength, MAX_INITIAL_BUFFER_SIZE) : 256,
+                maxResponseSize
             );
+
+            if (memoryBudget != null) {
+                final MemoryBudget.Receiver registered = memoryBudget.receiver();
+                this.receiver = registered;
+                // one for the whole body, instead of one per chunk
+                this.requestNext = () -> subscription.request(1);
+                future.whenComplete((response, failure) -> registered.close());
+            }
         }
 
         @Override
@@ -193,29 +620,57 @@ public class ApiGatewayAsyncClient extends SignedRequestsHandler {
 
         @Override
         public void onNext(ByteBuffer byteBuffer) {
-            remainingBytes -= byteBuffer.limit();
-            buffer.write(byteBuffer.array(), 0, byteBuffer.limit());
-            if (remainingBytes > 0) {
-                subscription.request(remainingBytes);
+            final int bytes = byteBuffer.remaining();
+            try {
+                buffer.write(byteBuffer);
+            } catch (IOException e) {
+                subscription.cancel();
+                onError(e);
+                return;
+            }
+            if (receiver != null && receiver.received(bytes, requestNext)) {
+                subscription.request(1);
             }
         }
 
         @Override
         public void onError(Throwable error) {
-            future.completeExceptionally(error);
+            if (future.completeExceptionally(error) && buffer != null) {
+                closeQuietly(buffer);
+            }
         }
 
         @Override
         public void onComplete() {
-            future.complete(
-                SimpleApiGatewayResponse.builder()
-                    .objectMapper(mapper)
-                    .statusText(statusText)
-                    .statusCode(statusCode)
-                    .successful(isSuccessful)
-                    .bodyContent(buffer.asInputStream())
-                .build()
-            );
+            if (future.isDone()) {
+                return;
+            }
+            if (span.isRecording()) {
+                span.stage(Span.Stage.RECEIVE, receiveStartNanos, System.nanoTime());
+            }
+            try {
+                future.complete(
+                    SimpleApiGatewayResponse.builder()
+                        .objectMapper(mapper)
+                        .statusText(statusText)
+                        .statusCode(statusCode)
+                        .successful(isSuccessful)
+                        .headers(headers)
+                        .body(buffer.asByteBuffer())
+                        .bodyResources(buffer)
+                    .build()
+                );
+            } catch (IOException e) {
+                onError(e);
+            }
+        }
+
+        private static void closeQuietly(final SpillableBuffer buffer) {
+            try {
+                buffer.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
         }
     }
 }
@@ -0,0 +1,245 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects items submitted one at a time into batches, sending every batch in a single request through an
+ * {@link ApiGatewayAsyncClient}, and completing the future of every item with its own result.
+ *
+ * <p>A batch is sent as soon as it holds maxBatchSize items, or maxDelay after its first item was submitted,
+ * whichever comes first, so that no item waits longer than maxDelay to be sent. Batches are encoded into requests,
+ * and responses decoded into results, by a {@link BatchCodec}. A batch failing as a whole, whether it cannot be
+ * sent, its response is not successful or it cannot be decoded, fails the future of every one of its items; a
+ * non-successful response fails them with an {@link ApiGatewayException}, holding a copy of the response that
+ * stays readable once the response itself is released.</p>
+ *
+ * Example:
+ * <pre>
+ *
+ *     ApiGatewayBatcher&lt;Event, Ack&gt; batcher = ApiGatewayBatcher.&lt;Event, Ack&gt;builder()
+ *         .client(client)
+ *         .codec(BatchCodec.jsonArray(
+ *             ApiGatewayRequest.builder("api.example.com", "/v1/events:batch").setMethod("POST").build(),
+ *             Ack.class
+ *         ))
+ *         .maxBatchSize(100)
+ *         .maxDelay(Duration.ofMillis(10))
+ *         .build();
+ *
+ *     CompletableFuture&lt;Ack&gt; ack = batcher.submit(event);
+ *
+ * </pre>
+ *
+ * @param <Item> type of the items submitted
+ * @param <Result> type of the result of every item
+ */
+public class ApiGatewayBatcher<Item, Result> implements AutoCloseable {
+
+    final ApiGatewayAsyncClient client;
+    final BatchCodec<Item, Result> codec;
+    final int maxBatchSize;
+    final long maxDelayNanos;
+
+    private final Object lock = new Object();
+    private List<Pending<Item, Result>> batch;
+    private long batchNumber;
+    private boolean closed;
+
+    /**
+     * number of batches sent
+     */
+    @Getter
+    final AtomicLong batchCount = new AtomicLong();
+
+    /**
+     * number of items sent
+     */
+    @Getter
+    final AtomicLong itemCount = new AtomicLong();
+
+    /**
+     * Creates an ApiGatewayBatcher
+     * @param client client sending the batches
+     * @param codec codec of the batches
+     * @param maxBatchSize maximum number of items in a batch, defaults to 100
+     * @param maxDelay maximum time an item waits for its batch to be sent, defaults to 10 milliseconds
+     */
+    @Builder
+    ApiGatewayBatcher(
+        final @NonNull ApiGatewayAsyncClient client,
+        final @NonNull BatchCodec<Item, Result> codec,
+        final Integer maxBatchSize,
+        final Duration maxDelay
+    ) {
+        this.client = client;
+        this.codec = codec;
+        this.maxBatchSize = maxBatchSize == null ? 100 : maxBatchSize;
+        this.maxDelayNanos = (maxDelay == null ? Duration.ofMillis(10) : maxDelay).toNanos();
+
+        if (this.maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + this.maxBatchSize);
+        }
+
+        this.batch = new ArrayList<>(this.maxBatchSize);
+    }
+
+    /**
+     * Submits an item, to be sent with the next batch
+     * @param item the item
+     * @return CompletableFuture from which to obtain the result of the item
+     * @throws IllegalStateException if the batcher is closed
+     */
+    public CompletableFuture<Result> submit(final Item item) {
+        final Pending<Item, Result> pending = new Pending<>(item);
+        final List<Pending<Item, Result>> full;
+        final long first;
+
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("batcher is closed");
+            }
+            batch.add(pending);
+            first = batch.size() == 1 ? batchNumber : -1;
+            full = batch.size() >= maxBatchSize ? take() : null;
+        }
+
+        if (full != null) {
+            send(full);
+        } else if (first >= 0) {
+            CompletableFuture.delayedExecutor(maxDelayNanos, TimeUnit.NANOSECONDS).execute(() -> flush(first));
+        }
+
+        return pending.future;
+    }
+
+    /**
+     * Sends the items submitted so far without waiting for their batch to fill up or its delay to expire
+     */
+    public void flush() {
+        final List<Pending<Item, Result>> current;
+        synchronized (lock) {
+            current = batch.isEmpty() ? null : take();
+        }
+        if (current != null) {
+            send(current);
+        }
+    }
+
+    /**
+     * Sends the items submitted so far, and rejects further submissions
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        flush();
+    }
+
+    private void flush(final long number) {
+        final List<Pending<Item, Result>> expired;
+        synchronized (lock) {
+            // the batch may have been sent already, by size or by an explicit flush
+            if (number != batchNumber || batch.isEmpty()) {
+                return;
+            }
+            expired = take();
+        }
+        send(expired);
+    }
+
+    private List<Pending<Item, Result>> take() {
+        final List<Pending<Item, Result>> taken = batch;
+        batch = new ArrayList<>(maxBatchSize);
+        batchNumber++;
+        return taken;
+    }
+
+    private void send(final List<Pending<Item, Result>> pendings) {
+        batchCount.incrementAndGet();
+        itemCount.addAndGet(pendings.size());
+
+        final List<Item> items = new ArrayList<>(pendings.size());
+        for (final Pending<Item, Result> pending : pendings) {
+            items.add(pending.item);
+        }
+
+        final CompletableFuture<ApiGatewayResponse> futureResponse;
+        try {
+            futureResponse = client.invoke(codec.encode(items));
+        } catch (RuntimeException e) {
+            failAll(pendings, e);
+            return;
+        }
+
+        futureResponse.whenComplete((response, failure) -> {
+            if (failure != null) {
+                failAll(pendings, failure);
+            } else if (!response.isSuccessful()) {
+                try (response) {
+                    failAll(pendings, new ApiGatewayException(copyOf(response)));
+                }
+            } else {
+                try (response) {
+                    complete(pendings, codec.decode(items, response));
+                } catch (RuntimeException e) {
+                    failAll(pendings, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return a copy of a response, its body on the heap
+     */
+    private static ApiGatewayResponse copyOf(final ApiGatewayResponse response) {
+        final ByteBuffer body = response.getBody();
+        final ByteBuffer copy = ByteBuffer.allocate(body.remaining()).put(body.duplicate()).flip();
+
+        return SimpleApiGatewayResponse.builder()
+                .objectMapper(response.getObjectMapper())
+                .statusText(response.getStatusText())
+                .statusCode(response.getStatusCode())
+                .successful(false)
+                .headers(response.getHeaders())
+                .body(copy)
+            .build();
+    }
+
+    private void complete(final List<Pending<Item, Result>> pendings, final List<Result> results) {
+        if (results == null || results.size() != pendings.size()) {
+            throw new IllegalStateException(
+                "batch of " + pendings.size() + " items decoded into " + (results == null ? 0 : results.size()) + " results"
+            );
+        }
+        for (int i = 0; i < results.size(); i++) {
+            pendings.get(i).future.complete(results.get(i));
+        }
+    }
+
+    private static <Item, Result> void failAll(final List<Pending<Item, Result>> pendings, final Throwable failure) {
+        for (final Pending<Item, Result> pending : pendings) {
+            pending.future.completeExceptionally(failure);
+        }
+    }
+
+    private static class Pending<Item, Result> {
+
+        final Item item;
+        final CompletableFuture<Result> future = new CompletableFuture<>();
+
+        Pending(final Item item) {
+            this.item = item;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.http.AbortableInputStream;
 import software.amazon.awssdk.http.ExecutableHttpRequest;
 import software.amazon.awssdk.http.HttpExecuteRequest;
 import software.amazon.awssdk.http.HttpExecuteResponse;
@@ -13,6 +14,10 @@ import software.amazon.awssdk.http.SdkHttpResponse;
 import software.amazon.awssdk.regions.Region;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
 
 /**
  * ApiGatewayClient is a client for the AWS API Gateway that uses the synchronous request processing model
@@ -59,42 +64,141 @@ public class ApiGatewayClient extends SignedRequestsHandler {
     @Getter
     final SdkHttpClient httpClient;
 
+    final ResponseBodyStorage responseBodyStorage;
+
+    final TrafficRecorder trafficRecorder;
+
+    @Getter
+    final Tracer tracer;
+
+    /**
+     * cache GET requests are served from, if any
+     */
+    @Getter
+    final ResponseCache responseCache;
+
+    // checkpoint and restore hooks, referenced for as long as this client is
+    Object checkpointHooks;
+
     @Builder
     ApiGatewayClient(
         final @NonNull SdkHttpClient httpClient,
         final AwsCredentialsProvider credentialsProvider,
-        final Region region
+        final Region region,
+        final Duration signatureCacheTtl,
+        final Integer payloadHashCacheSize,
+        final Long responseSpillThreshold,
+        final Path responseSpillDirectory,
+        final TrafficRecorder trafficRecorder,
+        final Tracer tracer,
+        final Long maxResponseSize,
+        final ResponseCache responseCache,
+        final WarmUpPlan checkpointWarmUp,
+        final Integer maxSigningContexts,
+        final Duration signingContextTtl
     ) {
         this(
             SignedRequestFactory.builder()
                 .signingRegion(region)
                 .credentialsProvider(credentialsProvider)
+                .signatureCacheTtl(signatureCacheTtl)
+                .payloadHashCacheSize(payloadHashCacheSize)
+                .maxSigningContexts(maxSigningContexts)
+                .signingContextTtl(signingContextTtl)
             .build(),
-            httpClient
+            httpClient,
+            ResponseBodyStorage.of(responseSpillThreshold, responseSpillDirectory, maxResponseSize),
+            trafficRecorder,
+            tracer,
+            responseCache
         );
+        // the connections of a blocking http client cannot be dropped through its interface
+        this.checkpointHooks = registerCheckpointHooks(checkpointWarmUp, () -> {});
     }
 
     ApiGatewayClient(
             final SignedRequestFactory signedRequestFactory,
             final @NonNull SdkHttpClient httpClient
+    ) {
+        this(signedRequestFactory, httpClient, ResponseBodyStorage.IN_MEMORY);
+    }
+
+    ApiGatewayClient(
+            final SignedRequestFactory signedRequestFactory,
+            final @NonNull SdkHttpClient httpClient,
+            final @NonNull ResponseBodyStorage responseBodyStorage
+    ) {
+        this(signedRequestFactory, httpClient, responseBodyStorage, null, null, null);
+    }
+
+    ApiGatewayClient(
+            final SignedRequestFactory signedRequestFactory,
+            final @NonNull SdkHttpClient httpClient,
+            final @NonNull ResponseBodyStorage responseBodyStorage,
+            final TrafficRecorder trafficRecorder,
+            final Tracer tracer,
+            final ResponseCache responseCache
     ) {
         super(signedRequestFactory);
         this.httpClient = httpClient;
+        this.responseBodyStorage = responseBodyStorage;
+        this.trafficRecorder = trafficRecorder;
+        this.tracer = tracer == null ? Tracer.NOOP : tracer;
+        this.responseCache = responseCache;
     }
 
     /**
-     * Invokes the API Gateway with a request
+     * Invokes the API Gateway with a request.
+     * With a response cache, GET requests may be served from it without being sent.
      *
      * @param apiGatewayRequest The request to send to the API Gateway endpoint
      *
      * @return The response from the API Gateway endpoint
      * @throws IOException if the request cannot be sent
+     * @throws ResponseTooLargeException if the response body is larger than the maximum response size
+     * @throws RequestRejectedException if the deadline of the request has passed
      */
     public ApiGatewayResponse invoke(
         @NonNull ApiGatewayRequest apiGatewayRequest
     ) throws IOException {
 
-        final SdkHttpFullRequest sdkRequest = signedRequestFactory.create(apiGatewayRequest);
+        if (isPastDeadline(apiGatewayRequest)) {
+            throw new RequestRejectedException("deadline passed before sending the request: " + apiGatewayRequest.getDeadline());
+        }
+
+        if (responseCache != null && ResponseCache.isCacheable(apiGatewayRequest)) {
+            return responseCache.invoke(apiGatewayRequest, this::invokeRemote);
+        }
+
+        return invokeRemote(apiGatewayRequest);
+    }
+
+    private ApiGatewayResponse invokeRemote(final ApiGatewayRequest apiGatewayRequest) throws IOException {
+        final Span span = startSpan(tracer, apiGatewayRequest);
+        final long startNanos = System.nanoTime();
+        try {
+            final ApiGatewayResponse response = send(apiGatewayRequest, startNanos, span);
+            span.end(response, null);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            if (trafficRecorder != null) {
+                trafficRecorder.record(apiGatewayRequest, startNanos, TrafficLog.FAILED, 0);
+            }
+            span.end(null, e);
+            throw e;
+        }
+    }
+
+    private ApiGatewayResponse send(
+        final ApiGatewayRequest apiGatewayRequest,
+        final long startNanos,
+        final Span span
+    ) throws IOException {
+
+        final SdkHttpFullRequest sdkRequest = signedRequestFactory.create(apiGatewayRequest, span);
+
+        final boolean timed = span.isRecording();
+        final long sendStart = timed ? System.nanoTime() : 0;
 
         final ExecutableHttpRequest executableHttpRequest =
                 httpClient.prepareRequest(
@@ -111,16 +215,81 @@ public class ApiGatewayClient extends SignedRequestsHandler {
 
         final SdkHttpResponse httpResponse = executeResponse.httpResponse();
 
-        final Buffer buffer = new Buffer(512);
-        executeResponse.responseBody()
-            .ifPresent(buffer::transferFrom);
-
-        return SimpleApiGatewayResponse.builder()
-                .objectMapper(apiGatewayRequest.getMapper())
-                .bodyContent(buffer.asInputStream())
-                .successful(httpResponse.isSuccessful())
-                .statusCode(httpResponse.statusCode())
-                .statusText(httpResponse.statusText().orElse(null))
-            .build();
+        final long receiveStart = timed ? System.nanoTime() : 0;
+        if (timed) {
+            span.stage(Span.Stage.SEND, sendStart, receiveStart);
+            responseAttributes(span, httpResponse);
+        }
+
+        final Optional<AbortableInputStream> responseBody = executeResponse.responseBody();
+
+        final long maxSize = responseBodyStorage.maxSize(apiGatewayRequest.getMaxResponseSize());
+        final long contentLength = contentLength(httpResponse);
+        if (contentLength > maxSize) {
+            responseBody.ifPresent(AbortableInputStream::abort);
+            throw new ResponseTooLargeException(contentLength, maxSize);
+        }
+
+        final SpillableBuffer body = responseBodyStorage.newBuffer(512, apiGatewayRequest.getMaxResponseSize());
+        try {
+            if (responseBody.isPresent()) {
+                try (InputStream bodyStream = responseBody.get()) {
+                    try {
+                        body.transferFrom(bodyStream);
+                    } catch (ResponseTooLargeException e) {
+                        // not worth draining the rest of the body to reuse the connection
+                        responseBody.get().abort();
+                        throw e;
+                    }
+                }
+            }
+
+            if (timed) {
+                span.stage(Span.Stage.RECEIVE, receiveStart, System.nanoTime());
+            }
+
+            if (trafficRecorder != null) {
+                trafficRecorder.record(apiGatewayRequest, startNanos, httpResponse.statusCode(), body.size());
+            }
+
+            return SimpleApiGatewayResponse.builder()
+                    .objectMapper(apiGatewayRequest.getMapper())
+                    .body(body.asByteBuffer())
+                    .bodyResources(body)
+                    .successful(httpResponse.isSuccessful())
+                    .statusCode(httpResponse.statusCode())
+                    .statusText(httpResponse.statusText().orElse(null))
+                    .headers(httpResponse.headers())
+                .build();
+        } catch (IOException | RuntimeException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Prepares this client for its first user-facing request: loads classes, builds JSON serializers and
+     * deserializers, resolves credentials, derives signing keys and optionally opens connections.
+     *
+     * @param plan what to warm up
+     * @return how long each stage took, and what failed
+     */
+    public WarmUpReport warmUp(final @NonNull WarmUpPlan plan) {
+        final WarmUp warmUp = new WarmUp(plan);
+        warmUp.prepare(signedRequestFactory);
+
+        if (plan.isOpenConnections()) {
+            final long start = warmUp.start();
+            for (final ApiGatewayRequest request : plan.getRequests()) {
+                try {
+                    invoke(request).close();
+                } catch (IOException | RuntimeException e) {
+                    warmUp.failed(e);
+                }
+            }
+            warmUp.end(WarmUpReport.Stage.CONNECTIONS, start);
+        }
+
+        return warmUp.report();
     }
 }
@@ -0,0 +1,394 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.Value;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A group of API Gateway endpoints serving the same API, such as deployments of the API in several regions.
+ *
+ * <p>Each request is routed to one endpoint of the group, chosen by the power of two choices: two healthy endpoints
+ * are sampled at random and the one with the lowest cost is used. The cost of an endpoint grows with its exponentially
+ * weighted moving average (EWMA) latency, its requests in flight and its EWMA error rate. Endpoints failing
+ * consecutively are ejected for a while. Requests that could not connect to their endpoint, which therefore were
+ * never sent, are sent again to another endpoint, preferably in another region. Requests failing after connecting,
+ * such as on a read timeout or a reset connection, may have been processed already: only those with an idempotent
+ * method (GET, HEAD, OPTIONS) are sent again. Other failures, such as a rejection by a concurrency limit or a
+ * passed deadline, are not failed over.</p>
+ *
+ * Example:
+ * <pre>
+ *
+ *     ApiGatewayEndpointGroup group = ApiGatewayEndpointGroup.builder()
+ *         .httpClient(httpClient)
+ *         .credentialsProvider(credentialsProvider)
+ *         .endpoint(Endpoint.builder().host("api-west.example.com").region(Region.US_WEST_2).build())
+ *         .endpoint(Endpoint.builder().host("api-east.example.com").region(Region.US_EAST_1).build())
+ *         .build();
+ *
+ *     // host and port of the request are replaced with those of the chosen endpoint
+ *     ApiGatewayResponse response = group.invoke(
+ *         ApiGatewayRequest.builder("api.example.com", "/v1/items").build()
+ *     ).join();
+ *
+ * </pre>
+ */
+public class ApiGatewayEndpointGroup {
+
+    private static final double LATENCY_SMOOTHING = 0.3;
+    private static final double ERROR_SMOOTHING = 0.1;
+    private static final double MIN_SUCCESS_RATE = 0.05;
+
+    /**
+     * The endpoints of the group, with their routing statistics
+     */
+    @Getter
+    final List<EndpointState> endpoints;
+
+    final int ejectionThreshold;
+    final long ejectionNanos;
+    final int maxFailovers;
+
+    /**
+     * Creates an endpoint group
+     * @param httpClient SdkAsyncHttpClient shared by all the endpoints
+     * @param credentialsProvider credentials used for endpoints not declaring their own
+     * @param endpoints endpoints of the group
+     * @param ejectionThreshold consecutive failures after which an endpoint is ejected, defaults to 5
+     * @param ejectionTime how long an ejected endpoint is excluded from routing, defaults to 30 seconds
+     * @param maxFailovers maximum number of other endpoints tried after a connection error,
+     *                     defaults to the number of endpoints minus one
+     */
+    @Builder
+    ApiGatewayEndpointGroup(
+        final @NonNull SdkAsyncHttpClient httpClient,
+        final AwsCredentialsProvider credentialsProvider,
+        final @NonNull @Singular List<Endpoint> endpoints,
+        final Integer ejectionThreshold,
+        final Duration ejectionTime,
+        final Integer maxFailovers
+    ) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("at least one endpoint is required");
+        }
+
+        final List<EndpointState> states = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            final AwsCredentialsProvider endpointCredentials =
+                endpoint.getCredentialsProvider() == null ? credentialsProvider : endpoint.getCredentialsProvider();
+
+            states.add(
+                new EndpointState(
+                    endpoint,
+                    new ApiGatewayAsyncClient(
+                        SignedRequestFactory.builder()
+                            .signingRegion(endpoint.getRegion())
+                            .credentialsProvider(endpointCredentials)
+                        .build(),
+                        httpClient
+                    )
+                )
+            );
+        }
+
+        this.endpoints = Collections.unmodifiableList(states);
+        this.ejectionThreshold = ejectionThreshold == null ? 5 : ejectionThreshold;
+        this.ejectionNanos = (ejectionTime == null ? Duration.ofSeconds(30) : ejectionTime).toNanos();
+        this.maxFailovers = maxFailovers == null ? endpoints.size() - 1 : maxFailovers;
+    }
+
+    /**
+     * Invokes the API Gateway through one of the endpoints of the group.
+     * The host and port of the request are replaced with those of the chosen endpoint.
+     *
+     * @param apiGatewayRequest ApiGatewayRequest
+     * @return CompletableFuture from which to obtain the response
+     */
+    public CompletableFuture<ApiGatewayResponse> invoke(final @NonNull ApiGatewayRequest apiGatewayRequest) {
+        return attempt(apiGatewayRequest, new ArrayList<>(), null);
+    }
+
+    private CompletableFuture<ApiGatewayResponse> attempt(
+        final ApiGatewayRequest apiGatewayRequest,
+        final List<EndpointState> tried,
+        final Throwable previousFailure
+    ) {
+        final EndpointState endpoint = tried.isEmpty() ? choose() : failoverFrom(tried);
+        if (endpoint == null) {
+            return CompletableFuture.failedFuture(previousFailure);
+        }
+        tried.add(endpoint);
+
+        final ApiGatewayRequest routed = apiGatewayRequest.toBuilder()
+            .setHost(endpoint.getEndpoint().getHost())
+            .setPort(endpoint.getEndpoint().getPort())
+            .build();
+
+        final long start = System.nanoTime();
+        endpoint.inFlight.incrementAndGet();
+
+        CompletableFuture<ApiGatewayResponse> futureResponse;
+        try {
+            futureResponse = endpoint.client.invoke(routed);
+        } catch (RuntimeException e) {
+            futureResponse = CompletableFuture.failedFuture(e);
+        }
+
+        return futureResponse
+            .handle((response, failure) -> {
+                endpoint.inFlight.decrementAndGet();
+
+                if (failure == null) {
+                    endpoint.record(System.nanoTime() - start, response.getStatusCode() < 500);
+                    return CompletableFuture.completedFuture(response);
+                }
+
+                final Throwable cause = failure instanceof CompletionException && failure.getCause() != null ?
+                    failure.getCause() : failure;
+
+                final boolean connectFailure = isConnectFailure(cause);
+                final boolean transportFailure = connectFailure || isTransportFailure(cause);
+                if (transportFailure) {
+                    // rejections and oversized responses tell nothing about the endpoint
+                    endpoint.record(System.nanoTime() - start, false);
+                }
+
+                final boolean retriable = connectFailure ||
+                    (transportFailure && isIdempotent(apiGatewayRequest.getMethod()));
+
+                if (!retriable || tried.size() > maxFailovers) {
+                    return CompletableFuture.<ApiGatewayResponse>failedFuture(cause);
+                }
+                return attempt(apiGatewayRequest, tried, cause);
+            })
+            .thenCompose(future -> future);
+    }
+
+    /**
+     * Tells whether a request failed before reaching its endpoint, so that it can be sent to another one
+     * whatever its method
+     * @param failure the failure
+     * @return true for connection refusals, unknown hosts, unreachable networks and connect timeouts
+     */
+    static boolean isConnectFailure(final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException ||
+                cause instanceof UnknownHostException ||
+                cause instanceof NoRouteToHostException ||
+                cause instanceof HttpConnectTimeoutException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    static boolean isTransportFailure(final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ResponseTooLargeException || cause instanceof RequestRejectedException) {
+                return false;
+            }
+            if (cause instanceof IOException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIdempotent(final String method) {
+        return "GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method) || "OPTIONS".equalsIgnoreCase(method);
+    }
+
+    /**
+     * Chooses an endpoint by the power of two choices among the endpoints not ejected
+     */
+    EndpointState choose() {
+        final long now = System.nanoTime();
+
+        final List<EndpointState> available = new ArrayList<>(endpoints.size());
+        for (EndpointState endpoint : endpoints) {
+            if (!endpoint.isEjected(now)) {
+                available.add(endpoint);
+            }
+        }
+        if (available.isEmpty()) {
+            // every endpoint is ejected: route over all of them rather than failing
+            available.addAll(endpoints);
+        }
+
+        if (available.size() == 1) {
+            return available.get(0);
+        }
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(available.size());
+        int second = random.nextInt(available.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        final EndpointState a = available.get(first);
+        final EndpointState b = available.get(second);
+        return a.cost() <= b.cost() ? a : b;
+    }
+
+    /**
+     * Chooses the endpoint to fail over to, preferring the cheapest endpoint in a region not tried yet
+     */
+    private EndpointState failoverFrom(final List<EndpointState> tried) {
+        final long now = System.nanoTime();
+
+        EndpointState best = null;
+        int bestRank = Integer.MAX_VALUE;
+
+        for (EndpointState candidate : endpoints) {
+            if (tried.contains(candidate)) {
+                continue;
+            }
+
+            final boolean regionTried = tried.stream()
+                .anyMatch(previous -> previous.getEndpoint().getRegion().equals(candidate.getEndpoint().getRegion()));
+
+            final int rank = (regionTried ? 2 : 0) + (candidate.isEjected(now) ? 1 : 0);
+
+            if (best == null || rank < bestRank || (rank == bestRank && candidate.cost() < best.cost())) {
+                best = candidate;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * An API Gateway endpoint and its signing context
+     */
+    @Value
+    @Builder
+    public static class Endpoint {
+
+        /**
+         * host of the endpoint
+         */
+        @NonNull String host;
+
+        /**
+         * port of the endpoint, defaults to 443
+         */
+        @Builder.Default
+        int port = 443;
+
+        /**
+         * region used to sign requests sent to the endpoint
+         */
+        @NonNull Region region;
+
+        /**
+         * credentials used to sign requests sent to the endpoint, defaults to the credentials of the group
+         */
+        AwsCredentialsProvider credentialsProvider;
+    }
+
+    /**
+     * An endpoint of the group and its routing statistics
+     */
+    public class EndpointState {
+
+        @Getter
+        final Endpoint endpoint;
+
+        final ApiGatewayAsyncClient client;
+
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        private double latencyEwmaNanos;
+        private double errorRateEwma;
+        private int consecutiveFailures;
+        private long ejectedUntilNanos;
+        private boolean ejected;
+
+        EndpointState(final Endpoint endpoint, final ApiGatewayAsyncClient client) {
+            this.endpoint = endpoint;
+            this.client = client;
+        }
+
+        /**
+         * @return number of requests currently in flight to this endpoint
+         */
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * @return EWMA of the latency of this endpoint
+         */
+        public synchronized Duration getLatency() {
+            return Duration.ofNanos((long) latencyEwmaNanos);
+        }
+
+        /**
+         * @return EWMA of the ratio of failed requests sent to this endpoint
+         */
+        public synchronized double getErrorRate() {
+            return errorRateEwma;
+        }
+
+        /**
+         * @return true if this endpoint is currently excluded from routing
+         */
+        public boolean isEjected() {
+            return isEjected(System.nanoTime());
+        }
+
+        synchronized boolean isEjected(final long now) {
+            if (ejected && now - ejectedUntilNanos >= 0) {
+                // ejection expired: let the endpoint prove itself again
+                ejected = false;
+                consecutiveFailures = ejectionThreshold - 1;
+            }
+            return ejected;
+        }
+
+        synchronized double cost() {
+            final double successRate = Math.max(MIN_SUCCESS_RATE, 1.0 - errorRateEwma);
+            return latencyEwmaNanos * (inFlight.get() + 1) / successRate;
+        }
+
+        synchronized void record(final long latencyNanos, final boolean success) {
+            latencyEwmaNanos = latencyEwmaNanos == 0 ?
+                latencyNanos : latencyEwmaNanos + LATENCY_SMOOTHING * (latencyNanos - latencyEwmaNanos);
+
+            errorRateEwma += ERROR_SMOOTHING * ((success ? 0.0 : 1.0) - errorRateEwma);
+
+            if (success) {
+                consecutiveFailures = 0;
+            } else if (++consecutiveFailures >= ejectionThreshold) {
+                ejected = true;
+                ejectedUntilNanos = System.nanoTime() + ejectionNanos;
+            }
+        }
+    }
+}
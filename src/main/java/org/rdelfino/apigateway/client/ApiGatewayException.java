@@ -0,0 +1,27 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Exception signaled when an API Gateway endpoint returns a non-successful response where a successful
+ * one was required to proceed, such as while streaming decoded response elements.
+ */
+public class ApiGatewayException extends RuntimeException {
+
+    /**
+     * The non-successful response returned by the API Gateway endpoint
+     */
+    @Getter
+    final transient ApiGatewayResponse response;
+
+    /**
+     * Creates an ApiGatewayException for a non-successful response
+     * @param response the non-successful response
+     */
+    public ApiGatewayException(final @NonNull ApiGatewayResponse response) {
+        super("API Gateway request failed: " + response.getStatusCode() +
+            (response.getStatusText() == null ? "" : " " + response.getStatusText()));
+        this.response = response;
+    }
+}
@@ -0,0 +1,214 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over a paginated listing, prefetching the next pages while the current one is processed.
+ *
+ * Example:
+ * <pre>
+ *
+ *     ApiGatewayPaginator paginator = ApiGatewayPaginator.builder()
+ *         .client(client)
+ *         .request(ApiGatewayRequest.builder("api.example.com", "/v1/items").build())
+ *         .tokenStrategy(
+ *             PageTokenStrategy.queryParameter("nextToken", page -> page.firstMatchingHeader("x-next-token").orElse(null))
+ *         )
+ *         .prefetchDepth(2)
+ *         .build();
+ *
+ *     try (Stream&lt;Item&gt; items = paginator.items(page -&gt; page.readObjects(Item.class))) {
+ *         items.forEach(item -&gt; process(item));
+ *     }
+ *
+ * </pre>
+ */
+@Getter
+public class ApiGatewayPaginator {
+
+    final ApiGatewayAsyncClient client;
+
+    final ApiGatewayRequest request;
+
+    final PageTokenStrategy tokenStrategy;
+
+    final int prefetchDepth;
+
+    /**
+     * Creates a paginator
+     * @param client client used to fetch the pages
+     * @param request request for the first page
+     * @param tokenStrategy strategy to find and follow the continuation of each page
+     * @param prefetchDepth maximum number of pages fetched ahead of the page being processed, defaults to 1
+     */
+    @Builder
+    ApiGatewayPaginator(
+        final @NonNull ApiGatewayAsyncClient client,
+        final @NonNull ApiGatewayRequest request,
+        final @NonNull PageTokenStrategy tokenStrategy,
+        final Integer prefetchDepth
+    ) {
+        if (prefetchDepth != null && prefetchDepth < 0) {
+            throw new IllegalArgumentException("prefetchDepth must not be negative: " + prefetchDepth);
+        }
+        this.client = client;
+        this.request = request;
+        this.tokenStrategy = tokenStrategy;
+        this.prefetchDepth = prefetchDepth == null ? 1 : prefetchDepth;
+    }
+
+    /**
+     * Lazily fetches the pages of the listing. The first page is requested when the Stream is first consumed.
+     * A non-successful page terminates the Stream with an {@link ApiGatewayException}.
+     *
+     * @return Stream of pages, which should be closed to stop prefetching when not fully consumed
+     */
+    public Stream<ApiGatewayResponse> pages() {
+        final PageIterator iterator = new PageIterator();
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+                false
+            )
+            .onClose(iterator::close);
+    }
+
+    /**
+     * Lazily fetches the items of the listing. Every page is closed once its items are consumed.
+     * @param itemsExtractor function extracting the items of a page, ex: page -&gt; page.readObjects(Item.class)
+     * @param <Item> type of the items
+     * @return Stream of items, which should be closed to stop prefetching when not fully consumed
+     */
+    public <Item> Stream<Item> items(final @NonNull Function<ApiGatewayResponse, Stream<Item>> itemsExtractor) {
+        return pages().flatMap(page -> itemsExtractor.apply(page).onClose(page::close));
+    }
+
+    private class PageIterator implements Iterator<ApiGatewayResponse> {
+
+        final Deque<CompletableFuture<ApiGatewayResponse>> fetched = new ArrayDeque<>();
+
+        ApiGatewayRequest pendingRequest = request;
+        ApiGatewayRequest lastRequest;
+        String pendingToken;
+
+        boolean exhausted;
+        boolean closed;
+
+        @Override
+        public boolean hasNext() {
+            synchronized (this) {
+                if (fetched.isEmpty()) {
+                    fetchPending();
+                }
+                return !fetched.isEmpty();
+            }
+        }
+
+        @Override
+        public ApiGatewayResponse next() {
+            final CompletableFuture<ApiGatewayResponse> page;
+            synchronized (this) {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                page = fetched.poll();
+                if (fetched.size() < prefetchDepth) {
+                    fetchPending();
+                }
+            }
+
+            try {
+                return page.join();
+            } catch (CompletionException e) {
+                close();
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                pendingRequest = null;
+                pendingToken = null;
+                fetched.forEach(future -> {
+                    // pages fetched already are closed here, pages still being fetched once they arrive
+                    future.cancel(false);
+                    future.thenAccept(ApiGatewayResponse::close);
+                });
+                fetched.clear();
+            }
+        }
+
+        /**
+         * Starts fetching the page following the last fetched one, if its continuation is already known
+         */
+        private void fetchPending() {
+            if (closed || exhausted) {
+                return;
+            }
+
+            ApiGatewayRequest next = pendingRequest;
+            if (next == null && pendingToken != null) {
+                next = tokenStrategy.nextRequest(lastRequest, pendingToken);
+            }
+            if (next == null) {
+                return;
+            }
+
+            pendingRequest = null;
+            pendingToken = null;
+            lastRequest = next;
+
+            final CompletableFuture<ApiGatewayResponse> page = new CompletableFuture<>();
+            fetched.add(page);
+
+            client.invoke(next)
+                .thenApply(this::onPage)
+                .whenComplete((response, failure) -> {
+                    if (failure != null) {
+                        synchronized (this) {
+                            exhausted = true;
+                        }
+                        page.completeExceptionally(failure);
+                    } else if (!page.complete(response)) {
+                        response.close();
+                    }
+                });
+        }
+
+        private ApiGatewayResponse onPage(final ApiGatewayResponse page) {
+            if (!page.isSuccessful()) {
+                throw new ApiGatewayException(page);
+            }
+
+            final String token = tokenStrategy.nextToken(page);
+
+            synchronized (this) {
+                if (token == null) {
+                    exhausted = true;
+                } else {
+                    pendingToken = token;
+                    if (fetched.size() < prefetchDepth) {
+                        fetchPending();
+                    }
+                }
+            }
+
+            return page;
+        }
+    }
+}
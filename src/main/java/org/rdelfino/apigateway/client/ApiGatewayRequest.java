@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.TreeNode;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
@@ -11,10 +12,13 @@ import lombok.SneakyThrows;
 import lombok.ToString;
 import software.amazon.awssdk.utils.http.SdkHttpUtils;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -52,6 +56,13 @@ public class ApiGatewayRequest {
         return DEFAULT_MAPPER.copy();
     }
 
+    /**
+     * @return the default ObjectMapper itself, so that its caches may be warmed up
+     */
+    static ObjectMapper defaultMapper() {
+        return DEFAULT_MAPPER;
+    }
+
     final ObjectMapper mapper;
 
     final String host;
@@ -68,7 +79,28 @@ public class ApiGatewayRequest {
 
     final Map<String, List<String>> headers;
 
-    final InputStream payload;
+    @Getter(AccessLevel.PACKAGE)
+    final PayloadSource payloadSource;
+
+    /**
+     * priority of the request while it waits for a concurrency limit
+     */
+    final RequestPriority priority;
+
+    /**
+     * time after which the request is no longer worth sending, or null
+     */
+    final Instant deadline;
+
+    /**
+     * maximum size of the response body, overriding the one of the client, or null
+     */
+    final Long maxResponseSize;
+
+    /**
+     * credentials and region the request is signed with instead of the ones of the client, or null
+     */
+    final SigningContext signingContext;
 
     /**
      * All args constructor
@@ -91,6 +123,27 @@ public class ApiGatewayRequest {
             final @NonNull Map<String, List<String>> queryParameters,
             final @NonNull Map<String, List<String>> headers,
             final InputStream payload
+    ) {
+        this(
+            mapper, host, port, method, path, apiKey, queryParameters, headers,
+            payload == null ? null : PayloadSource.of(payload), RequestPriority.DEFAULT, null, null, null
+        );
+    }
+
+    ApiGatewayRequest(
+            final @NonNull ObjectMapper mapper,
+            final @NonNull String host,
+            final int port,
+            final @NonNull String method,
+            final @NonNull String path,
+            final String apiKey,
+            final @NonNull Map<String, List<String>> queryParameters,
+            final @NonNull Map<String, List<String>> headers,
+            final PayloadSource payloadSource,
+            final @NonNull RequestPriority priority,
+            final Instant deadline,
+            final Long maxResponseSize,
+            final SigningContext signingContext
     ) {
         this.mapper = mapper;
         this.host = host;
@@ -100,7 +153,19 @@ public class ApiGatewayRequest {
         this.apiKey = apiKey;
         this.queryParameters = queryParameters;
         this.headers = headers;
-        this.payload = payload;
+        this.payloadSource = payloadSource;
+        this.priority = priority;
+        this.deadline = deadline;
+        this.maxResponseSize = maxResponseSize;
+        this.signingContext = signingContext;
+    }
+
+    /**
+     * Gets the request payload. Every call returns a new InputStream over the whole payload.
+     * @return InputStream with the request payload, or null if the request has no payload
+     */
+    public InputStream getPayload() {
+        return payloadSource == null ? null : payloadSource.newInputStream();
     }
 
     /**
@@ -114,9 +179,14 @@ public class ApiGatewayRequest {
             .setPort(getPort())
             .setMethod(getMethod())
             .setPath(getPath())
+            .setApiKey(getApiKey())
             .setQueryParameters(getQueryParameters())
             .setHeaders(getHeaders())
-            .setPayload(getPayload());
+            .setPayloadSource(getPayloadSource())
+            .setPriority(getPriority())
+            .setDeadline(getDeadline())
+            .setMaxResponseSize(getMaxResponseSize())
+            .setSigningContext(getSigningContext());
     }
 
     static Map<String, List<String>> deepCopy(Map<String, List<String>> map) {
@@ -220,7 +290,14 @@ public class ApiGatewayRequest {
         private String apiKey;
         private Map<String, List<String>> queryParameters = new HashMap<>();
         private Map<String, List<String>> headers = new HashMap<>();
-        private InputStream payload = null;
+
+        @Getter(AccessLevel.NONE)
+        private PayloadSource payload = null;
+
+        private RequestPriority priority = RequestPriority.DEFAULT;
+        private Instant deadline;
+        private Long maxResponseSize;
+        private SigningContext signingContext;
 
         Builder() {
         }
@@ -450,16 +527,100 @@ public class ApiGatewayRequest {
             return this;
         }
 
+        /**
+         * Sets the priority of the request while it waits for the concurrency limit of a client
+         * @param priority priority of the request
+         * @return this Builder
+         */
+        public Builder setPriority(final @NonNull RequestPriority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Sets the time after which the request is dropped instead of being sent,
+         * failing with a RequestRejectedException
+         * @param deadline time after which the request is no longer worth sending, or null for none
+         * @return this Builder
+         */
+        public Builder setDeadline(final Instant deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        /**
+         * Sets the maximum size of the response body, overriding the one of the client. Larger responses are
+         * aborted, failing with a ResponseTooLargeException, instead of being buffered
+         * @param maxResponseSize maximum size of the response body in bytes, or null for the one of the client
+         * @return this Builder
+         */
+        public Builder setMaxResponseSize(final Long maxResponseSize) {
+            if (maxResponseSize != null && maxResponseSize < 0) {
+                throw new IllegalArgumentException("max response size must not be negative: " + maxResponseSize);
+            }
+            this.maxResponseSize = maxResponseSize;
+            return this;
+        }
+
+        /**
+         * Sets the credentials and region to sign the request with, instead of the ones of the client,
+         * so that a client may send the requests of many tenants
+         * @param signingContext credentials and region to sign with, or null for the ones of the client
+         * @return this Builder
+         */
+        public Builder setSigningContext(final SigningContext signingContext) {
+            this.signingContext = signingContext;
+            return this;
+        }
+
         /**
          * Sets the request payload
          * @param payload InputStream containing the request payload
          * @return this Builder
          */
         public Builder setPayload(InputStream payload) {
+            return setPayloadSource(payload == null ? null : PayloadSource.of(payload));
+        }
+
+        /**
+         * Sets the request payload to the contents of a file.
+         * The file is memory-mapped and sent without being copied to the heap,
+         * it is expected to remain unchanged while the request is in flight.
+         * @param file file containing the request payload
+         * @return this Builder
+         */
+        public Builder setPayload(final @NonNull Path file) {
+            return setPayloadSource(PayloadSource.of(file));
+        }
+
+        /**
+         * Sets the request payload to the remaining contents of a ByteBuffer.
+         * The contents are sent without being copied, and are expected to remain unchanged while the request
+         * is in flight.
+         * @param payload ByteBuffer containing the request payload
+         * @return this Builder
+         */
+        public Builder setPayload(final @NonNull ByteBuffer payload) {
+            return setPayloadSource(PayloadSource.of(payload));
+        }
+
+        /**
+         * Gets the request payload
+         * @return InputStream with the request payload, or null if there is no payload
+         */
+        public InputStream getPayload() {
+            return payload == null ? null : payload.newInputStream();
+        }
+
+        Builder setPayloadSource(final PayloadSource payload) {
             this.payload = payload;
             return this;
         }
 
+        PayloadSource getPayloadSource() {
+            return payload;
+        }
+
         /**
          * Sets the request payload, serializing it to JSON
          * @param payload object to serialize to JSON
@@ -471,7 +632,7 @@ public class ApiGatewayRequest {
                 setHeader("Content-Type", "application/json");
             }
 
-            setPayload(serialize(payload));
+            setPayloadSource(serialize(payload));
 
             return this;
         }
@@ -487,15 +648,22 @@ public class ApiGatewayRequest {
                 setHeader("Content-Type", "application/json");
             }
 
-            setPayload(serialize(payload));
+            setPayloadSource(serialize(payload));
 
             return this;
         }
 
         @SneakyThrows
-        private <Payload> ByteArrayInputStream serialize(Payload payload) {
-            return (payload == null) ? null :
-                new ByteArrayInputStream(mapper.writeValueAsBytes(payload));
+        private <Payload> PayloadSource serialize(Payload payload) {
+            if (payload == null) {
+                return null;
+            }
+            final long start = System.nanoTime();
+            final Buffer buffer = new Buffer(256);
+            final DigestOutputStream hashing = new DigestOutputStream(buffer, PayloadSource.newSha256());
+            mapper.writeValue(hashing, payload);
+            return PayloadSource.of(buffer.asByteBuffer(), hashing.getMessageDigest().digest())
+                .serialized(start, System.nanoTime());
         }
 
         /**
@@ -535,9 +703,14 @@ public class ApiGatewayRequest {
                     .setPort(request.getPort())
                     .setMethod(request.getMethod())
                     .setPath(request.getPath())
+                    .setApiKey(request.getApiKey())
                     .setQueryParameters(request.getQueryParameters())
                     .setHeaders(request.getHeaders())
-                    .setPayload(request.getPayload());
+                    .setPayloadSource(request.getPayloadSource())
+                    .setPriority(request.getPriority())
+                    .setDeadline(request.getDeadline())
+                    .setMaxResponseSize(request.getMaxResponseSize())
+                    .setSigningContext(request.getSigningContext());
         }
 
         /**
@@ -554,7 +727,11 @@ public class ApiGatewayRequest {
                 getApiKey(),
                 getQueryParameters(),
                 getHeaders(),
-                getPayload()
+                getPayloadSource(),
+                getPriority(),
+                getDeadline(),
+                getMaxResponseSize(),
+                getSigningContext()
             );
         }
     }
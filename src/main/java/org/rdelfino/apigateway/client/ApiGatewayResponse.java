@@ -6,11 +6,18 @@ import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Interface for the response returned by the API Gateway service.
+ *
+ * <p>Large response bodies may be kept in a temporary file, which is deleted when the response is closed.</p>
  */
-public interface ApiGatewayResponse {
+public interface ApiGatewayResponse extends AutoCloseable {
 
     /**
      * Returns the HTTP status text returned by the service.
@@ -35,14 +42,48 @@ public interface ApiGatewayResponse {
     boolean isSuccessful();
 
     /**
-     * Obtains the HTTP response body content
+     * Returns the HTTP headers returned by the service.
+     *
+     * @return HTTP headers returned by the service, never null.
+     */
+    Map<String, List<String>> getHeaders();
+
+    /**
+     * Returns the first value of a header, matching its name case-insensitively.
+     *
+     * @param name header name
+     * @return first value of the header, or empty if the header is not present
+     */
+    default Optional<String> firstMatchingHeader(final String name) {
+        for (Map.Entry<String, List<String>> header : getHeaders().entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+                return Optional.of(header.getValue().get(0));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Obtains the HTTP response body. Every call returns a new read-only ByteBuffer over the whole body,
+     * which may be memory-mapped when the body was kept in a temporary file.
+     *
+     * @return read-only ByteBuffer with the response body content
+     */
+    ByteBuffer getBody();
+
+    /**
+     * Obtains the HTTP response body content. Every call returns a new InputStream over the whole body,
+     * so the body can be read any number of times.
      *
      * @return the InputStream containing the response body content
      */
     InputStream getBodyContent();
 
     /**
-     * Parses a JSON TreeNode from the HTTP response body content using the ObjectMapper provided in the request
+     * Parses a JSON TreeNode from the HTTP response body content using the ObjectMapper provided in the request.
+     *
+     * <p>Parsed objects are memoized by type: reading the same type again returns the same object without parsing
+     * the body again, so it should not be modified. Replacing the ObjectMapper discards them.</p>
      *
      * @return TreeNode parsed from the HTTP response body content
      */
@@ -50,7 +91,8 @@ public interface ApiGatewayResponse {
 
 
     /**
-     * Parses an Object from the HTTP response body content using the ObjectMapper provided in the request
+     * Parses an Object from the HTTP response body content using the ObjectMapper provided in the request.
+     * Parsed objects are memoized by type, see {@link #readTreeNode()}.
      *
      * @param typeReference TypeReference describing the type of the object to be parsed
      * @param <Payload> expected type of the object to be parsed
@@ -59,7 +101,8 @@ public interface ApiGatewayResponse {
     <Payload> Payload readOject(TypeReference<Payload> typeReference);
 
     /**
-     * Parses an Object from the HTTP response body content using the ObjectMapper provided in the request
+     * Parses an Object from the HTTP response body content using the ObjectMapper provided in the request.
+     * Parsed objects are memoized by type, see {@link #readTreeNode()}.
      *
      * @param valueType JavaType describing the type of the object to be parsed
      * @param <Payload> expected type of the object to be parsed
@@ -68,7 +111,8 @@ public interface ApiGatewayResponse {
     <Payload> Payload readOject(JavaType valueType);
 
     /**
-     * Parses an Object from the HTTP response body content using the ObjectMapper provided in the request
+     * Parses an Object from the HTTP response body content using the ObjectMapper provided in the request.
+     * Parsed objects are memoized by type, see {@link #readTreeNode()}.
      *
      * @param payloadClass Class of the object to be parsed
      * @param <Payload> expected type of the object to be parsed
@@ -76,6 +120,29 @@ public interface ApiGatewayResponse {
      */
     <Payload> Payload readOject(Class<Payload> payloadClass);
 
+    /**
+     * Lazily parses the HTTP response body content as a JSON array, or as a sequence of whitespace/newline delimited
+     * JSON values (NDJSON), using the ObjectMapper provided in the request.
+     *
+     * <p>Elements are decoded one at a time as the returned Stream is consumed, so the whole list is never
+     * materialized in memory. Close the Stream to release the underlying parser early.</p>
+     *
+     * @param elementClass Class of the elements to be parsed
+     * @param <Payload> expected type of the elements to be parsed
+     * @return Stream of the elements parsed from the HTTP response body content
+     */
+    <Payload> Stream<Payload> readObjects(Class<Payload> elementClass);
+
+    /**
+     * Lazily parses the HTTP response body content into a Stream of elements
+     *
+     * @see #readObjects(Class)
+     * @param elementType JavaType describing the type of the elements to be parsed
+     * @param <Payload> expected type of the elements to be parsed
+     * @return Stream of the elements parsed from the HTTP response body content
+     */
+    <Payload> Stream<Payload> readObjects(JavaType elementType);
+
     /**
      * Obtains the ObjectMapper provided in the request, used to parse responses
      * @return the ObjectMapper instance used to parse responses
@@ -88,4 +155,11 @@ public interface ApiGatewayResponse {
      * @return this ApiGatewayResponse
      */
     ApiGatewayResponse setObjectMapper(ObjectMapper objectMapper);
+
+    /**
+     * Releases the resources holding the response body, such as a temporary file.
+     * The body content must not be read after the response is closed.
+     */
+    @Override
+    void close();
 }
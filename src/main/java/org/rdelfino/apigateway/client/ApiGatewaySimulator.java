@@ -0,0 +1,715 @@
+package org.rdelfino.apigateway.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.SneakyThrows;
+import lombok.Value;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.ExecutableHttpRequest;
+import software.amazon.awssdk.http.HttpExecuteRequest;
+import software.amazon.awssdk.http.HttpExecuteResponse;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpFullRequest;
+import software.amazon.awssdk.http.SdkHttpMethod;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.http.async.AsyncExecuteRequest;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.utils.http.SdkHttpUtils;
+
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for API Gateway, to test and benchmark clients without AWS.
+ *
+ * <p>The simulator is both a SdkHttpClient and a SdkAsyncHttpClient, so it can be handed to either client as its
+ * transport, and it can also serve loopback HTTP(S) connections. Every request goes through the same steps as
+ * in API Gateway:</p>
+ * <ol>
+ *     <li>SigV4 verification, when credentials are configured, answering 403 on invalid signatures</li>
+ *     <li>API key verification, when usage plans are configured, answering 403 on unknown keys</li>
+ *     <li>usage plan throttling, with a token bucket per API key, answering 429 when exhausted</li>
+ *     <li>routing to a handler, answering 403 "Missing Authentication Token" on unknown resources</li>
+ * </ol>
+ * <p>Latency and failures may be injected along the way, from a seeded random source so runs are reproducible.</p>
+ *
+ * Example:
+ * <pre>
+ *
+ *     ApiGatewaySimulator simulator = ApiGatewaySimulator.builder()
+ *         .credentialsProvider(credentialsProvider)
+ *         .region(Region.US_WEST_2)
+ *         .apiKey("test-key", ApiGatewaySimulator.UsagePlan.builder().rateLimit(100).burstLimit(200).build())
+ *         .route(ApiGatewaySimulator.Route.of("GET", "/items/{id}", request -&gt;
+ *             ApiGatewaySimulator.Response.json(200, Map.of("id", request.getPathParameters().get("id")))
+ *         ))
+ *         .latency(Duration.ofMillis(20))
+ *         .latencyJitter(Duration.ofMillis(10))
+ *         .errorRate(0.01)
+ *         .build();
+ *
+ *     ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+ *         .httpClient(simulator)
+ *         .credentialsProvider(credentialsProvider)
+ *         .region(Region.US_WEST_2)
+ *         .build();
+ *
+ * </pre>
+ */
+public class ApiGatewaySimulator implements SdkHttpClient, SdkAsyncHttpClient {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    final SigV4Verifier verifier;
+    final Map<String, UsagePlan> apiKeys;
+    final List<Route> routes;
+    final Duration latency;
+    final Duration latencyJitter;
+    final double errorRate;
+    final int errorStatusCode;
+    final double connectionFailureRate;
+    final Clock clock;
+
+    final Random random;
+    final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    private volatile ScheduledExecutorService scheduler;
+
+    @Getter
+    final AtomicLong requestCount = new AtomicLong();
+    @Getter
+    final AtomicLong rejectedCount = new AtomicLong();
+    @Getter
+    final AtomicLong throttledCount = new AtomicLong();
+    @Getter
+    final AtomicLong injectedFailureCount = new AtomicLong();
+
+    /**
+     * Creates a simulator
+     * @param credentialsProvider credentials requests are expected to be signed with, signatures are not verified
+     *                            when null
+     * @param region region requests are expected to be signed for, defaults to us-east-1
+     * @param apiKeys usage plan of every accepted API key, API keys are not required when empty
+     * @param routes routes to the handlers, matched in order
+     * @param latency latency added to every request, defaults to none
+     * @param latencyJitter upper bound of a uniformly distributed latency added to the base latency
+     * @param errorRate ratio of requests failed with errorStatusCode instead of reaching their handler
+     * @param errorStatusCode status code of the injected errors, defaults to 500
+     * @param connectionFailureRate ratio of requests failed with an IOException, as on a connection failure
+     * @param seed seed of the random source driving latency and failure injection
+     * @param clock clock used to verify signatures and refill usage plan buckets, defaults to the system UTC clock
+     */
+    @lombok.Builder
+    ApiGatewaySimulator(
+        final AwsCredentialsProvider credentialsProvider,
+        final Region region,
+        final @Singular Map<String, UsagePlan> apiKeys,
+        final @Singular List<Route> routes,
+        final Duration latency,
+        final Duration latencyJitter,
+        final double errorRate,
+        final Integer errorStatusCode,
+        final double connectionFailureRate,
+        final Long seed,
+        final Clock clock
+    ) {
+        this.clock = clock == null ? Clock.systemUTC() : clock;
+        this.verifier = credentialsProvider == null ? null :
+            new SigV4Verifier(credentialsProvider, region == null ? Region.US_EAST_1 : region, this.clock);
+        this.apiKeys = apiKeys;
+        this.routes = routes;
+        this.latency = latency == null ? Duration.ZERO : latency;
+        this.latencyJitter = latencyJitter == null ? Duration.ZERO : latencyJitter;
+        this.errorRate = errorRate;
+        this.errorStatusCode = errorStatusCode == null ? 500 : errorStatusCode;
+        this.connectionFailureRate = connectionFailureRate;
+        this.random = seed == null ? new Random() : new Random(seed);
+    }
+
+    @Override
+    public ExecutableHttpRequest prepareRequest(final HttpExecuteRequest request) {
+        return new ExecutableHttpRequest() {
+            @Override
+            public HttpExecuteResponse call() throws IOException {
+                final byte[] body = request.contentStreamProvider()
+                    .map(provider -> readAll(provider.newStream()))
+                    .orElseGet(() -> new byte[0]);
+
+                final long delayNanos = nextLatencyNanos();
+                if (delayNanos > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(delayNanos);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("interrupted", e);
+                    }
+                }
+
+                if (injectConnectionFailure()) {
+                    throw new IOException("simulated connection failure");
+                }
+
+                final Response response = handle(toFullRequest(request.httpRequest()), body);
+
+                return HttpExecuteResponse.builder()
+                    .response(response.toSdkHttpResponse())
+                    .responseBody(AbortableInputStream.create(new ByteArrayInputStream(response.getBody())))
+                .build();
+            }
+
+            @Override
+            public void abort() {
+            }
+        };
+    }
+
+    @Override
+    public CompletableFuture<Void> execute(final AsyncExecuteRequest request) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        request.requestContentPublisher().subscribe(new Subscriber<ByteBuffer>() {
+            final Buffer body = new Buffer(256);
+
+            @Override
+            public void onSubscribe(final Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(final ByteBuffer chunk) {
+                final ByteBuffer bytes = chunk.duplicate();
+                while (bytes.hasRemaining()) {
+                    body.write(bytes.get());
+                }
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                request.responseHandler().onError(error);
+                future.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                final long delayNanos = nextLatencyNanos();
+                if (delayNanos > 0) {
+                    scheduler().schedule(() -> respond(request, body.toByteArray(), future), delayNanos, TimeUnit.NANOSECONDS);
+                } else {
+                    respond(request, body.toByteArray(), future);
+                }
+            }
+        });
+
+        return future;
+    }
+
+    private void respond(final AsyncExecuteRequest request, final byte[] body, final CompletableFuture<Void> future) {
+        if (injectConnectionFailure()) {
+            final IOException failure = new IOException("simulated connection failure");
+            request.responseHandler().onError(failure);
+            future.completeExceptionally(failure);
+            return;
+        }
+
+        try {
+            final Response response = handle(toFullRequest(request.request()), body);
+            request.responseHandler().onHeaders(response.toSdkHttpResponse());
+            request.responseHandler().onStream(new PayloadPublisher(PayloadSource.of(ByteBuffer.wrap(response.getBody()))));
+            future.complete(null);
+        } catch (RuntimeException e) {
+            request.responseHandler().onError(e);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Handles a request as API Gateway would
+     * @param request the request
+     * @param body the request body
+     * @return the response
+     */
+    Response handle(final SdkHttpFullRequest request, final byte[] body) {
+        final Response response = dispatch(request, body);
+
+        final Map<String, List<String>> headers = new HashMap<>(response.getHeaders());
+        headers.put("x-amzn-RequestId", List.of(UUID.randomUUID().toString()));
+        request.firstMatchingHeader("X-Amzn-Trace-Id").ifPresent(trace -> headers.put("X-Amzn-Trace-Id", List.of(trace)));
+
+        return new Response(response.getStatusCode(), headers, response.getBody());
+    }
+
+    private Response dispatch(final SdkHttpFullRequest request, final byte[] body) {
+        requestCount.incrementAndGet();
+
+        if (verifier != null) {
+            final String failure = verifier.verify(request, body);
+            if (failure != null) {
+                rejectedCount.incrementAndGet();
+                return Response.message(403, failure);
+            }
+        }
+
+        final String apiKey = request.firstMatchingHeader("x-api-key").orElse(null);
+        if (!apiKeys.isEmpty()) {
+            final UsagePlan plan = apiKey == null ? null : apiKeys.get(apiKey);
+            if (plan == null) {
+                rejectedCount.incrementAndGet();
+                return Response.message(403, "Forbidden");
+            }
+            if (!buckets.computeIfAbsent(apiKey, key -> new TokenBucket(plan, clock.millis())).tryAcquire(clock.millis())) {
+                throttledCount.incrementAndGet();
+                return Response.message(429, "Too Many Requests");
+            }
+        }
+
+        for (final Route route : routes) {
+            final Map<String, String> pathParameters = route.match(request.method().name(), request.encodedPath());
+            if (pathParameters == null) {
+                continue;
+            }
+
+            if (injectError()) {
+                injectedFailureCount.incrementAndGet();
+                return Response.message(errorStatusCode, "Internal server error");
+            }
+
+            try {
+                return route.getHandler().handle(
+                    Request.builder()
+                        .method(request.method().name())
+                        .path(request.encodedPath())
+                        .pathParameters(pathParameters)
+                        .queryParameters(request.rawQueryParameters())
+                        .headers(request.headers())
+                        .apiKey(apiKey)
+                        .body(body)
+                    .build()
+                );
+            } catch (Exception e) {
+                return Response.message(502, "Internal server error");
+            }
+        }
+
+        return Response.message(403, "Missing Authentication Token");
+    }
+
+    /**
+     * Starts serving loopback HTTP connections. The clients of this library sign and send HTTPS requests, to reach
+     * the server from them use {@link #start(int, SSLContext)}.
+     *
+     * @param port port to listen on, or 0 for any free port
+     * @return the running server
+     * @throws IOException if the server cannot be started
+     */
+    public Server start(final int port) throws IOException {
+        return start(port, null);
+    }
+
+    /**
+     * Starts serving loopback connections
+     * @param port port to listen on, or 0 for any free port
+     * @param sslContext SSLContext to serve HTTPS with, or null to serve plain HTTP
+     * @return the running server
+     * @throws IOException if the server cannot be started
+     */
+    public Server start(final int port, final SSLContext sslContext) throws IOException {
+        final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+
+        final HttpServer server;
+        if (sslContext == null) {
+            server = HttpServer.create(address, 0);
+        } else {
+            final HttpsServer httpsServer = HttpsServer.create(address, 0);
+            httpsServer.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+            server = httpsServer;
+        }
+
+        server.createContext("/", exchange -> {
+            try {
+                serve(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "api-gateway-simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+
+        return new Server(server, executor);
+    }
+
+    private void serve(final HttpExchange exchange) throws IOException {
+        final byte[] body = readAll(exchange.getRequestBody());
+
+        final long delayNanos = nextLatencyNanos();
+        if (delayNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        if (injectConnectionFailure()) {
+            return;
+        }
+
+        final URI uri = exchange.getRequestURI();
+        final String hostHeader = exchange.getRequestHeaders().getFirst("Host");
+        final int colon = hostHeader == null ? -1 : hostHeader.lastIndexOf(':');
+
+        final SdkHttpFullRequest.Builder request = SdkHttpFullRequest.builder()
+            .protocol("https")
+            .method(SdkHttpMethod.fromValue(exchange.getRequestMethod()))
+            .host(hostHeader == null ? "localhost" : colon < 0 ? hostHeader : hostHeader.substring(0, colon))
+            .port(colon < 0 ? 443 : Integer.parseInt(hostHeader.substring(colon + 1)))
+            .encodedPath(uri.getRawPath())
+            .rawQueryParameters(uri.getRawQuery() == null ? Collections.emptyMap() : SdkHttpUtils.uriParams(uri));
+
+        exchange.getRequestHeaders().forEach(request::putHeader);
+
+        final Response response = handle(request.build(), body);
+
+        response.getHeaders().forEach((name, values) -> exchange.getResponseHeaders().put(name, values));
+        exchange.sendResponseHeaders(response.getStatusCode(), response.getBody().length == 0 ? -1 : response.getBody().length);
+        if (response.getBody().length > 0) {
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response.getBody());
+            }
+        }
+    }
+
+    @Override
+    public String clientName() {
+        return "ApiGatewaySimulator";
+    }
+
+    @Override
+    public void close() {
+        final ScheduledExecutorService current = scheduler;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    private ScheduledExecutorService scheduler() {
+        ScheduledExecutorService current = scheduler;
+        if (current == null) {
+            synchronized (this) {
+                current = scheduler;
+                if (current == null) {
+                    scheduler = current = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        final Thread thread = new Thread(runnable, "api-gateway-simulator-latency");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return current;
+    }
+
+    private long nextLatencyNanos() {
+        final long jitter = latencyJitter.toNanos();
+        synchronized (random) {
+            return latency.toNanos() + (jitter > 0 ? (long) (random.nextDouble() * jitter) : 0);
+        }
+    }
+
+    private boolean injectError() {
+        synchronized (random) {
+            return errorRate > 0 && random.nextDouble() < errorRate;
+        }
+    }
+
+    private boolean injectConnectionFailure() {
+        synchronized (random) {
+            if (connectionFailureRate > 0 && random.nextDouble() < connectionFailureRate) {
+                injectedFailureCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static SdkHttpFullRequest toFullRequest(final software.amazon.awssdk.http.SdkHttpRequest request) {
+        return request instanceof SdkHttpFullRequest ?
+            (SdkHttpFullRequest) request :
+            SdkHttpFullRequest.builder()
+                .protocol(request.protocol())
+                .method(request.method())
+                .host(request.host())
+                .port(request.port())
+                .encodedPath(request.encodedPath())
+                .rawQueryParameters(request.rawQueryParameters())
+                .headers(request.headers())
+            .build();
+    }
+
+    @SneakyThrows(IOException.class)
+    private static byte[] readAll(final InputStream inputStream) {
+        try (inputStream) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    /**
+     * Handles the requests routed to it
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * Handles a request
+         * @param request the request
+         * @return the response. An exception is answered with 502, as API Gateway does for failed integrations
+         * @throws Exception on failure
+         */
+        Response handle(Request request) throws Exception;
+    }
+
+    /**
+     * Route to a handler, matching a method and a path template such as /items/{id} or /files/{proxy+}
+     */
+    @Value
+    public static class Route {
+
+        String method;
+        String pathTemplate;
+        Handler handler;
+
+        /**
+         * Creates a Route
+         * @param method HTTP method, or ANY for every method
+         * @param pathTemplate path template, where {name} matches a path segment and {name+} the rest of the path
+         * @param handler handler of the matching requests
+         * @return newly created Route
+         */
+        public static Route of(final @NonNull String method, final @NonNull String pathTemplate, final @NonNull Handler handler) {
+            return new Route(method, pathTemplate, handler);
+        }
+
+        Map<String, String> match(final String requestMethod, final String path) {
+            if (!"ANY".equalsIgnoreCase(method) && !method.equalsIgnoreCase(requestMethod)) {
+                return null;
+            }
+
+            final String[] template = segments(pathTemplate);
+            final String[] actual = segments(path);
+            final Map<String, String> parameters = new HashMap<>();
+
+            for (int i = 0; i < template.length; i++) {
+                final String segment = template[i];
+                final boolean variable = segment.startsWith("{") && segment.endsWith("}");
+
+                if (variable && segment.endsWith("+}")) {
+                    if (i >= actual.length) {
+                        return null;
+                    }
+                    parameters.put(
+                        segment.substring(1, segment.length() - 2),
+                        String.join("/", List.of(actual).subList(i, actual.length))
+                    );
+                    return parameters;
+                }
+                if (i >= actual.length) {
+                    return null;
+                }
+                if (variable) {
+                    parameters.put(segment.substring(1, segment.length() - 1), SdkHttpUtils.urlDecode(actual[i]));
+                } else if (!segment.equals(actual[i])) {
+                    return null;
+                }
+            }
+
+            return template.length == actual.length ? parameters : null;
+        }
+
+        private static String[] segments(final String path) {
+            final String trimmed = path.replaceAll("^/+|/+$", "");
+            return trimmed.isEmpty() ? new String[0] : trimmed.split("/");
+        }
+    }
+
+    /**
+     * Request received by a handler
+     */
+    @Value
+    @lombok.Builder
+    public static class Request {
+        String method;
+        String path;
+        Map<String, String> pathParameters;
+        Map<String, List<String>> queryParameters;
+        Map<String, List<String>> headers;
+        String apiKey;
+        byte[] body;
+
+        /**
+         * Parses the request body as JSON
+         * @param valueType expected type of the body
+         * @param <Payload> expected type of the body
+         * @return the parsed body
+         */
+        @SneakyThrows
+        public <Payload> Payload readJson(final @NonNull Class<Payload> valueType) {
+            return MAPPER.readValue(body, valueType);
+        }
+    }
+
+    /**
+     * Response returned by a handler
+     */
+    @Value
+    @lombok.Builder
+    public static class Response {
+        int statusCode;
+        @Singular
+        Map<String, List<String>> headers;
+        @lombok.Builder.Default
+        byte[] body = new byte[0];
+
+        /**
+         * Creates a JSON response
+         * @param statusCode HTTP status code
+         * @param body object to serialize as the response body
+         * @return newly created Response
+         */
+        @SneakyThrows
+        public static Response json(final int statusCode, final Object body) {
+            return Response.builder()
+                .statusCode(statusCode)
+                .header("Content-Type", List.of("application/json"))
+                .body(MAPPER.writeValueAsBytes(body))
+            .build();
+        }
+
+        static Response message(final int statusCode, final String message) {
+            final Response response = json(statusCode, Map.of("message", message));
+            if (statusCode == 403 || statusCode == 429) {
+                final Map<String, List<String>> headers = new HashMap<>(response.getHeaders());
+                headers.put("x-amzn-ErrorType", List.of(statusCode == 429 ? "TooManyRequestsException" : "ForbiddenException"));
+                return new Response(statusCode, headers, response.getBody());
+            }
+            return response;
+        }
+
+        SdkHttpResponse toSdkHttpResponse() {
+            final Map<String, List<String>> allHeaders = new HashMap<>(headers);
+            allHeaders.put("Content-Length", List.of(String.valueOf(body.length)));
+            return SdkHttpResponse.builder()
+                .statusCode(statusCode)
+                .headers(allHeaders)
+            .build();
+        }
+    }
+
+    /**
+     * Rate and burst limits of an API key, enforced with a token bucket
+     */
+    @Value
+    @lombok.Builder
+    public static class UsagePlan {
+        /**
+         * steady-state requests per second
+         */
+        double rateLimit;
+        /**
+         * bucket capacity, the number of requests that may be sent at once
+         */
+        int burstLimit;
+    }
+
+    /**
+     * Running loopback server
+     */
+    public static class Server implements AutoCloseable {
+
+        final HttpServer server;
+        final ExecutorService executor;
+
+        Server(final HttpServer server, final ExecutorService executor) {
+            this.server = server;
+            this.executor = executor;
+        }
+
+        /**
+         * @return port the server listens on
+         */
+        public int getPort() {
+            return server.getAddress().getPort();
+        }
+
+        /**
+         * Stops the server
+         */
+        @Override
+        public void close() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private static class TokenBucket {
+
+        final double ratePerMilli;
+        final double capacity;
+
+        private double tokens;
+        private long lastRefillMillis;
+
+        TokenBucket(final UsagePlan plan, final long nowMillis) {
+            this.ratePerMilli = plan.getRateLimit() / 1000;
+            this.capacity = plan.getBurstLimit();
+            this.tokens = capacity;
+            this.lastRefillMillis = nowMillis;
+        }
+
+        synchronized boolean tryAcquire(final long nowMillis) {
+            tokens = Math.min(capacity, tokens + Math.max(0, nowMillis - lastRefillMillis) * ratePerMilli);
+            lastRefillMillis = nowMillis;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+}
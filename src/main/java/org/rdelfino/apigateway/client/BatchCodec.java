@@ -0,0 +1,61 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.NonNull;
+
+import java.util.List;
+
+/**
+ * Codec used by {@link ApiGatewayBatcher} to send many items in a single request.
+ *
+ * @param <Item> type of the items sent
+ * @param <Result> type of the result of every item
+ */
+public interface BatchCodec<Item, Result> {
+
+    /**
+     * Encodes a batch of items into a request
+     * @param items items of the batch, in the order they were submitted
+     * @return the request sending the whole batch
+     */
+    ApiGatewayRequest encode(List<Item> items);
+
+    /**
+     * Decodes the successful response to a batch into the result of every item.
+     * Item-level failures reported in the response may be decoded into results as well.
+     * @param items items of the batch, in the order they were submitted
+     * @param response the successful response to the batch
+     * @return the result of every item, in the order of the items
+     */
+    List<Result> decode(List<Item> items, ApiGatewayResponse response);
+
+    /**
+     * Creates a codec sending the items as a JSON array in the body of a request, and expecting a JSON array
+     * with the result of every item, in the same order, in the body of the response.
+     *
+     * @param template request to which the JSON array is added as payload, ex: a POST to /v1/items:batch
+     * @param resultClass Class of the results to be parsed
+     * @param <Item> type of the items sent
+     * @param <Result> type of the result of every item
+     * @return newly created BatchCodec
+     */
+    static <Item, Result> BatchCodec<Item, Result> jsonArray(
+        final @NonNull ApiGatewayRequest template,
+        final @NonNull Class<Result> resultClass
+    ) {
+        return new BatchCodec<Item, Result>() {
+            @Override
+            public ApiGatewayRequest encode(final List<Item> items) {
+                return template.toBuilder()
+                    .setJsonPayload(items)
+                    .build();
+            }
+
+            @Override
+            public List<Result> decode(final List<Item> items, final ApiGatewayResponse response) {
+                return response.readOject(
+                    response.getObjectMapper().getTypeFactory().constructCollectionType(List.class, resultClass)
+                );
+            }
+        };
+    }
+}
@@ -7,6 +7,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
  * Simple in memory buffer implementation
@@ -17,6 +18,39 @@ class Buffer extends ByteArrayOutputStream {
         super(size);
     }
 
+    @Override
+    public synchronized void write(int b) {
+        final int capacity = this.buf.length;
+        super.write(b);
+        if (this.buf.length != capacity) {
+            FlightRecorderEvents.bufferGrowth(capacity, this.buf.length);
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        final int capacity = this.buf.length;
+        super.write(b, off, len);
+        if (this.buf.length != capacity) {
+            FlightRecorderEvents.bufferGrowth(capacity, this.buf.length);
+        }
+    }
+
+    /**
+     * Writes the remaining contents of a ByteBuffer, leaving its position untouched
+     * @param source ByteBuffer to write
+     */
+    public synchronized void write(final ByteBuffer source) {
+        final int length = source.remaining();
+        final int capacity = this.buf.length;
+        if (this.count + length > capacity) {
+            this.buf = Arrays.copyOf(this.buf, Math.max(capacity << 1, this.count + length));
+            FlightRecorderEvents.bufferGrowth(capacity, this.buf.length);
+        }
+        source.duplicate().get(this.buf, this.count, length);
+        this.count += length;
+    }
+
     /**
      * @return this buffer contents as an InputStream
      */
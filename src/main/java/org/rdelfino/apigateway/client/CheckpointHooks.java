@@ -0,0 +1,68 @@
+package org.rdelfino.apigateway.client;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+
+/**
+ * Registers hooks run before a checkpoint and after a restore of the JVM, with CRaC or AWS Lambda SnapStart.
+ *
+ * <p>The org.crac API is used when on the classpath, as on Lambda, and the jdk.crac API of CRaC enabled JDKs
+ * otherwise. Both are looked up reflectively, so neither is a dependency, and nothing is registered on JVMs that
+ * have neither. The contexts of these APIs may only reference their resources weakly: the registered resource must
+ * be referenced for as long as its hooks should run.</p>
+ */
+final class CheckpointHooks {
+
+    private static final String[] APIS = {"org.crac", "jdk.crac"};
+
+    private CheckpointHooks() {
+    }
+
+    /**
+     * Registers hooks in the global context of the first checkpoint/restore API available
+     * @param beforeCheckpoint run before a checkpoint
+     * @param afterRestore run after a restore
+     * @return the registered resource, or null if no API is available
+     */
+    static Object register(final Runnable beforeCheckpoint, final Runnable afterRestore) {
+        for (final String api : APIS) {
+            try {
+                final Class<?> resourceType = Class.forName(api + ".Resource");
+                final Object context = Class.forName(api + ".Core").getMethod("getGlobalContext").invoke(null);
+
+                final Object resource = Proxy.newProxyInstance(
+                    resourceType.getClassLoader(),
+                    new Class<?>[] {resourceType},
+                    handler(beforeCheckpoint, afterRestore)
+                );
+
+                Class.forName(api + ".Context").getMethod("register", resourceType).invoke(context, resource);
+                return resource;
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                // not available, or not usable
+            }
+        }
+        return null;
+    }
+
+    private static InvocationHandler handler(final Runnable beforeCheckpoint, final Runnable afterRestore) {
+        return (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "beforeCheckpoint":
+                    beforeCheckpoint.run();
+                    return null;
+                case "afterRestore":
+                    afterRestore.run();
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return CheckpointHooks.class.getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    return null;
+            }
+        };
+    }
+}
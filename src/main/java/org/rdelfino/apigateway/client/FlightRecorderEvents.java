@@ -0,0 +1,305 @@
+package org.rdelfino.apigateway.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+
+import java.util.Map;
+
+/**
+ * JDK Flight Recorder events emitted by the clients.
+ *
+ * <p>Events are only created while a recording enables them, so the clients pay a flag check per invocation when
+ * none does. Every event can be enabled, disabled and given a threshold in the recording settings, under the
+ * names below. The invocation and buffer growth events are frequent, so they are disabled unless a recording
+ * enables them. Nothing is emitted on runtimes without the jdk.jfr module.</p>
+ *
+ * <ul>
+ *     <li>org.rdelfino.apigateway.Invocation: every invocation, with its status, bytes sent and received, and
+ *     the duration of every stage</li>
+ *     <li>org.rdelfino.apigateway.SlowInvocation: the same, only for invocations over a threshold,
+ *     1 second by default</li>
+ *     <li>org.rdelfino.apigateway.CredentialsRefresh: every time the credentials provider returns new
+ *     credentials</li>
+ *     <li>org.rdelfino.apigateway.BufferGrowth: every time an in-memory buffer grows, with its stack trace</li>
+ * </ul>
+ */
+final class FlightRecorderEvents {
+
+    static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    private static final int STAGES = Span.Stage.values().length;
+
+    private FlightRecorderEvents() {
+    }
+
+    /**
+     * Wraps the span of an invocation in one emitting its events, if enabled
+     * @param span the span opened by the tracer
+     * @param request the request being invoked
+     * @return the wrapping span, or the span itself when no invocation event is enabled
+     */
+    static Span invocationSpan(final Span span, final ApiGatewayRequest request) {
+        if (!AVAILABLE) {
+            return span;
+        }
+        return Types.INVOCATION.isEnabled() || Types.SLOW_INVOCATION.isEnabled()
+            ? new InvocationSpan(span, request)
+            : span;
+    }
+
+    /**
+     * Starts timing the resolution of credentials
+     * @return the event, or null if not enabled
+     */
+    static Object beginCredentials() {
+        if (!AVAILABLE || !Types.CREDENTIALS_REFRESH.isEnabled()) {
+            return null;
+        }
+        final CredentialsRefreshEvent event = new CredentialsRefreshEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Emits a credentials refresh event
+     * @param started the event returned by beginCredentials, or null
+     * @param provider the credentials provider
+     * @param credentials the new credentials it returned
+     */
+    static void credentialsRefresh(
+        final Object started,
+        final AwsCredentialsProvider provider,
+        final AwsCredentials credentials
+    ) {
+        if (started == null) {
+            return;
+        }
+        final CredentialsRefreshEvent event = (CredentialsRefreshEvent) started;
+        event.end();
+        event.provider = provider.getClass().getName();
+        event.accessKeyId = credentials.accessKeyId();
+        event.commit();
+    }
+
+    /**
+     * Emits a buffer growth event, if enabled
+     * @param fromCapacity capacity before growing
+     * @param toCapacity capacity after growing
+     */
+    static void bufferGrowth(final int fromCapacity, final int toCapacity) {
+        if (!AVAILABLE || !Types.BUFFER_GROWTH.isEnabled()) {
+            return;
+        }
+        final BufferGrowthEvent event = new BufferGrowthEvent();
+        event.fromCapacity = fromCapacity;
+        event.toCapacity = toCapacity;
+        event.commit();
+    }
+
+    // event types are only looked up once jdk.jfr is known to be present
+    private static final class Types {
+        static final EventType INVOCATION = EventType.getEventType(InvocationEvent.class);
+        static final EventType SLOW_INVOCATION = EventType.getEventType(SlowInvocationEvent.class);
+        static final EventType CREDENTIALS_REFRESH = EventType.getEventType(CredentialsRefreshEvent.class);
+        static final EventType BUFFER_GROWTH = EventType.getEventType(BufferGrowthEvent.class);
+    }
+
+    /**
+     * Span emitting the invocation events when ended, and forwarding everything to the span opened by the tracer
+     */
+    private static final class InvocationSpan implements Span {
+
+        final Span delegate;
+        final ApiGatewayRequest request;
+        final long[] stageNanos = new long[STAGES];
+        final InvocationEvent invocation;
+        final SlowInvocationEvent slowInvocation;
+        String requestId;
+
+        InvocationSpan(final Span delegate, final ApiGatewayRequest request) {
+            this.delegate = delegate;
+            this.request = request;
+            this.invocation = Types.INVOCATION.isEnabled() ? new InvocationEvent() : null;
+            this.slowInvocation = Types.SLOW_INVOCATION.isEnabled() ? new SlowInvocationEvent() : null;
+            if (invocation != null) {
+                invocation.begin();
+            }
+            if (slowInvocation != null) {
+                slowInvocation.begin();
+            }
+        }
+
+        @Override
+        public Map<String, String> propagationHeaders() {
+            return delegate.propagationHeaders();
+        }
+
+        @Override
+        public void stage(final Stage stage, final long startNanos, final long endNanos) {
+            stageNanos[stage.ordinal()] += endNanos - startNanos;
+            if (delegate.isRecording()) {
+                delegate.stage(stage, startNanos, endNanos);
+            }
+        }
+
+        @Override
+        public void attribute(final String name, final String value) {
+            if (REQUEST_ID.equals(name)) {
+                requestId = value;
+            }
+            if (delegate.isRecording()) {
+                delegate.attribute(name, value);
+            }
+        }
+
+        @Override
+        public void end(final ApiGatewayResponse response, final Throwable failure) {
+            try {
+                if (invocation != null) {
+                    commit(invocation, response, failure);
+                }
+                if (slowInvocation != null) {
+                    commit(slowInvocation, response, failure);
+                }
+            } finally {
+                delegate.end(response, failure);
+            }
+        }
+
+        private void commit(final AbstractInvocationEvent event, final ApiGatewayResponse response, final Throwable failure) {
+            event.end();
+            if (!event.shouldCommit()) {
+                return;
+            }
+            final PayloadSource payload = request.getPayloadSource();
+
+            event.method = request.getMethod();
+            event.host = request.getHost();
+            event.path = request.getPath();
+            event.requestId = requestId;
+            event.statusCode = response == null ? 0 : response.getStatusCode();
+            event.failure = failure == null ? null : failure.toString();
+            event.bytesOut = payload == null ? 0 : payload.size();
+            event.bytesIn = response == null ? 0 : response.getBody().remaining();
+            event.serialization = stageNanos[Stage.SERIALIZATION.ordinal()];
+            event.queue = stageNanos[Stage.QUEUE.ordinal()];
+            event.credentials = stageNanos[Stage.CREDENTIALS.ordinal()];
+            event.signing = stageNanos[Stage.SIGNING.ordinal()];
+            event.send = stageNanos[Stage.SEND.ordinal()];
+            event.receive = stageNanos[Stage.RECEIVE.ordinal()];
+            event.commit();
+        }
+    }
+
+    @Category("API Gateway Client")
+    @StackTrace(false)
+    abstract static class AbstractInvocationEvent extends Event {
+
+        @Label("Method")
+        String method;
+
+        @Label("Host")
+        String host;
+
+        @Label("Path")
+        String path;
+
+        @Label("Request Id")
+        @Description("Request id assigned by API Gateway")
+        String requestId;
+
+        @Label("Status Code")
+        @Description("HTTP status code of the response, 0 if the invocation failed")
+        int statusCode;
+
+        @Label("Failure")
+        String failure;
+
+        @Label("Bytes Out")
+        @DataAmount
+        long bytesOut;
+
+        @Label("Bytes In")
+        @DataAmount
+        long bytesIn;
+
+        @Label("Serialization")
+        @Timespan
+        long serialization;
+
+        @Label("Queue")
+        @Timespan
+        long queue;
+
+        @Label("Credentials")
+        @Timespan
+        long credentials;
+
+        @Label("Signing")
+        @Timespan
+        long signing;
+
+        @Label("Send")
+        @Description("Time until the response headers were received")
+        @Timespan
+        long send;
+
+        @Label("Receive")
+        @Description("Time receiving the response body")
+        @Timespan
+        long receive;
+    }
+
+    @Name("org.rdelfino.apigateway.Invocation")
+    @Label("API Gateway Invocation")
+    @Enabled(false)
+    static final class InvocationEvent extends AbstractInvocationEvent {
+    }
+
+    @Name("org.rdelfino.apigateway.SlowInvocation")
+    @Label("Slow API Gateway Invocation")
+    @Threshold("1 s")
+    static final class SlowInvocationEvent extends AbstractInvocationEvent {
+    }
+
+    @Name("org.rdelfino.apigateway.CredentialsRefresh")
+    @Label("Credentials Refresh")
+    @Description("Credentials provider returned new credentials")
+    @Category("API Gateway Client")
+    @StackTrace(false)
+    static final class CredentialsRefreshEvent extends Event {
+
+        @Label("Provider")
+        String provider;
+
+        @Label("Access Key Id")
+        String accessKeyId;
+    }
+
+    @Name("org.rdelfino.apigateway.BufferGrowth")
+    @Label("Buffer Growth")
+    @Description("In-memory buffer grew, copying its contents")
+    @Category("API Gateway Client")
+    @Enabled(false)
+    static final class BufferGrowthEvent extends Event {
+
+        @Label("From Capacity")
+        @DataAmount
+        int fromCapacity;
+
+        @Label("To Capacity")
+        @DataAmount
+        int toCapacity;
+    }
+}
@@ -0,0 +1,238 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.NonNull;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publisher that invokes every request emitted by an upstream Publisher and emits the responses downstream.
+ *
+ * <p>Upstream demand is bounded both by the maximum number of requests allowed in flight and by the outstanding
+ * downstream demand, so no more requests are pulled than can be dispatched and consumed.
+ * Responses are emitted in completion order. Responses that will never be emitted, because the subscription was
+ * cancelled or failed, are closed, releasing the temporary files of their bodies.</p>
+ */
+class InvokePublisher implements Publisher<ApiGatewayResponse> {
+
+    final ApiGatewayAsyncClient client;
+    final Publisher<ApiGatewayRequest> requests;
+    final int maxConcurrency;
+
+    InvokePublisher(
+        final @NonNull ApiGatewayAsyncClient client,
+        final @NonNull Publisher<ApiGatewayRequest> requests,
+        final int maxConcurrency
+    ) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        this.client = client;
+        this.requests = requests;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super ApiGatewayResponse> subscriber) {
+        final InvokeSubscription subscription = new InvokeSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        requests.subscribe(subscription);
+    }
+
+    private class InvokeSubscription implements Subscriber<ApiGatewayRequest>, Subscription {
+
+        final Subscriber<? super ApiGatewayResponse> downstream;
+
+        final Queue<ApiGatewayResponse> ready = new ConcurrentLinkedQueue<>();
+
+        final AtomicLong requested = new AtomicLong();
+        final AtomicLong upstreamPending = new AtomicLong();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger readyCount = new AtomicInteger();
+        final AtomicInteger wip = new AtomicInteger();
+
+        volatile Subscription upstream;
+        volatile boolean upstreamDone;
+        volatile boolean cancelled;
+        volatile Throwable error;
+
+        boolean terminated;
+
+        InvokeSubscription(final Subscriber<? super ApiGatewayResponse> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                onError(new IllegalArgumentException("Rule 3.9: demand must be positive, got " + n));
+                return;
+            }
+            requested.accumulateAndGet(n, (current, add) -> {
+                final long sum = current + add;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            final Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            drain();
+        }
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            if (cancelled) {
+                subscription.cancel();
+            }
+            drain();
+        }
+
+        @Override
+        public void onNext(final ApiGatewayRequest request) {
+            // counted in flight first, so that a concurrent drain never sees the request in neither count
+            inFlight.incrementAndGet();
+            upstreamPending.decrementAndGet();
+
+            CompletableFuture<ApiGatewayResponse> futureResponse;
+            try {
+                futureResponse = client.invoke(request);
+            } catch (RuntimeException e) {
+                futureResponse = CompletableFuture.failedFuture(e);
+            }
+
+            futureResponse.whenComplete((response, failure) -> {
+                if (failure != null) {
+                    onError(failure);
+                } else {
+                    ready.offer(response);
+                    readyCount.incrementAndGet();
+                }
+                inFlight.decrementAndGet();
+                drain();
+            });
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            if (error == null) {
+                error = throwable;
+            }
+            upstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            upstreamDone = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            do {
+                if (!terminated) {
+                    drainOnce();
+                } else {
+                    // responses completing after cancellation or failure
+                    discardReady();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainOnce() {
+            if (cancelled) {
+                terminated = true;
+                discardReady();
+                return;
+            }
+
+            final Throwable failure = error;
+            if (failure != null) {
+                terminate();
+                downstream.onError(failure);
+                return;
+            }
+
+            while (requested.get() > 0) {
+                final ApiGatewayResponse response = ready.poll();
+                if (response == null) {
+                    break;
+                }
+                readyCount.decrementAndGet();
+                requested.decrementAndGet();
+                downstream.onNext(response);
+                if (cancelled) {
+                    terminated = true;
+                    discardReady();
+                    return;
+                }
+            }
+
+            if (upstreamDone) {
+                if (inFlight.get() == 0 && ready.isEmpty()) {
+                    terminated = true;
+                    downstream.onComplete();
+                }
+                return;
+            }
+
+            final Subscription subscription = upstream;
+            if (subscription == null) {
+                return;
+            }
+
+            final long pending = upstreamPending.get();
+            final int running = inFlight.get();
+            final long outstanding = pending + running + readyCount.get();
+
+            final long capacity = Math.min(
+                maxConcurrency - running - pending,
+                requested.get() - outstanding
+            );
+
+            if (capacity > 0) {
+                upstreamPending.addAndGet(capacity);
+                subscription.request(capacity);
+            }
+        }
+
+        private void discardReady() {
+            ApiGatewayResponse response;
+            while ((response = ready.poll()) != null) {
+                readyCount.decrementAndGet();
+                response.close();
+            }
+        }
+
+        private void terminate() {
+            terminated = true;
+            discardReady();
+            final Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}
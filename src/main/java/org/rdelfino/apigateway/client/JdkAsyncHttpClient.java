@@ -0,0 +1,394 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Getter;
+import org.reactivestreams.FlowAdapters;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.http.SdkHttpRequest;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.http.async.AsyncExecuteRequest;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpResponseHandler;
+import software.amazon.awssdk.http.async.SdkHttpContentPublisher;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * SdkAsyncHttpClient sending requests with the java.net.http.HttpClient of the JDK, for an asynchronous client
+ * without any HTTP engine dependency.
+ *
+ * <p>Requests are sent over HTTP/2 by default, multiplexed over one connection per host, and over HTTP/1.1 to
+ * servers that do not negotiate HTTP/2. Payloads are streamed from their publisher as they are requested by the
+ * connection, and response bodies are handed to the response handler chunk by chunk, as the handler requests them,
+ * so a client that stops requesting chunks stops reading from the connection.</p>
+ *
+ * <p>The Host, Content-Length, Connection, Expect and Upgrade headers, among a few others, are set by the JDK client
+ * and are not copied from the request. The host and port the request is signed for are those of its URI, so the
+ * signature is not affected.</p>
+ *
+ * Example:
+ * <pre>
+ *
+ *     ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+ *         .httpClient(
+ *             JdkAsyncHttpClient.builder()
+ *                 .connectTimeout(Duration.ofSeconds(5))
+ *                 .requestTimeout(Duration.ofSeconds(30))
+ *                 .build()
+ *         )
+ *         .credentialsProvider(credentialsProvider)
+ *         .region(Region.US_WEST_2)
+ *         .build();
+ *
+ * </pre>
+ */
+public class JdkAsyncHttpClient implements SdkAsyncHttpClient {
+
+    // headers the JDK client sets itself, and refuses to be given
+    private static final Set<String> RESTRICTED_HEADERS = Set.of(
+        "connection", "content-length", "date", "expect", "from", "host", "origin", "referer", "upgrade", "via",
+        "warning"
+    );
+
+    /**
+     * the JDK client requests are sent with
+     */
+    @Getter
+    volatile HttpClient httpClient;
+
+    final Duration requestTimeout;
+
+    // builder of the JDK client when created here rather than given, to replace it after a restore
+    private final HttpClient.Builder httpClientBuilder;
+
+    /**
+     * Creates a JdkAsyncHttpClient
+     * @param httpClient JDK client to send requests with, by default one is created with the options below
+     * @param connectTimeout time to establish a connection, ignored when httpClient is given, no timeout by default
+     * @param requestTimeout time to receive the response headers of a request, no timeout by default
+     * @param version preferred HTTP version, ignored when httpClient is given, defaults to HTTP/2
+     * @param executor executor running the response handlers, ignored when httpClient is given, defaults to the
+     *                 executor of the JDK client
+     */
+    @lombok.Builder
+    JdkAsyncHttpClient(
+        final HttpClient httpClient,
+        final Duration connectTimeout,
+        final Duration requestTimeout,
+        final HttpClient.Version version,
+        final Executor executor
+    ) {
+        if (httpClient != null) {
+            this.httpClientBuilder = null;
+            this.httpClient = httpClient;
+        } else {
+            this.httpClientBuilder = HttpClient.newBuilder()
+                .version(version == null ? HttpClient.Version.HTTP_2 : version)
+                .followRedirects(HttpClient.Redirect.NEVER);
+            if (connectTimeout != null) {
+                httpClientBuilder.connectTimeout(connectTimeout);
+            }
+            if (executor != null) {
+                httpClientBuilder.executor(executor);
+            }
+            this.httpClient = httpClientBuilder.build();
+        }
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Replaces the JDK client created by this one with a new one, so that requests no longer use the connections
+     * it opened, which do not survive a checkpoint of the JVM. A JDK client given to the builder is kept.
+     */
+    void resetConnections() {
+        if (httpClientBuilder != null) {
+            httpClient = httpClientBuilder.build();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> execute(final AsyncExecuteRequest request) {
+        final SdkAsyncHttpResponseHandler handler = request.responseHandler();
+
+        final HttpRequest httpRequest;
+        try {
+            httpRequest = toHttpRequest(request);
+        } catch (RuntimeException e) {
+            handler.onError(e);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        httpClient.sendAsync(httpRequest, responseInfo -> {
+            handler.onHeaders(toSdkHttpResponse(responseInfo));
+            final ResponseBody body = new ResponseBody();
+            handler.onStream(body);
+            return body;
+        }).whenComplete((response, failure) -> {
+            if (failure == null) {
+                completion.complete(null);
+            } else {
+                final Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause()
+                    : failure;
+                handler.onError(cause);
+                completion.completeExceptionally(cause);
+            }
+        });
+
+        return completion;
+    }
+
+    HttpRequest toHttpRequest(final AsyncExecuteRequest request) {
+        final SdkHttpRequest sdkRequest = request.request();
+
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(sdkRequest.getUri())
+            .method(sdkRequest.method().name(), bodyPublisher(request));
+
+        if (requestTimeout != null) {
+            builder.timeout(requestTimeout);
+        }
+
+        sdkRequest.forEachHeader((name, values) -> {
+            final String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            if (!RESTRICTED_HEADERS.contains(lowerCaseName)) {
+                values.forEach(value -> builder.header(name, value));
+            } else if ("expect".equals(lowerCaseName) && values.contains("100-continue")) {
+                builder.expectContinue(true);
+            }
+        });
+
+        return builder.build();
+    }
+
+    private static HttpRequest.BodyPublisher bodyPublisher(final AsyncExecuteRequest request) {
+        final SdkHttpContentPublisher contentPublisher = request.requestContentPublisher();
+        if (contentPublisher == null) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+
+        final long contentLength = contentPublisher.contentLength()
+            .or(() -> request.request().firstMatchingHeader("Content-Length").map(Long::parseLong))
+            .orElse(-1L);
+
+        if (contentLength == 0) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+
+        final Flow.Publisher<ByteBuffer> publisher = FlowAdapters.toFlowPublisher(contentPublisher);
+        return contentLength > 0
+            ? HttpRequest.BodyPublishers.fromPublisher(publisher, contentLength)
+            : HttpRequest.BodyPublishers.fromPublisher(publisher);
+    }
+
+    private static SdkHttpResponse toSdkHttpResponse(final HttpResponse.ResponseInfo responseInfo) {
+        final Map<String, List<String>> headers = responseInfo.headers().map().entrySet().stream()
+            // HTTP/2 pseudo headers, such as :status
+            .filter(header -> !header.getKey().startsWith(":"))
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        return SdkHttpResponse.builder()
+            .statusCode(responseInfo.statusCode())
+            .headers(headers)
+            .build();
+    }
+
+    @Override
+    public String clientName() {
+        return "JdkHttpClient";
+    }
+
+    /**
+     * Nothing to close, the connections of the JDK client are closed once it is no longer referenced
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Bridges the lists of chunks the JDK client delivers to the reactive streams subscriber of the response
+     * handler, one chunk per request, requesting the next list from the connection once the last one is consumed
+     */
+    static class ResponseBody implements HttpResponse.BodySubscriber<Void>, Publisher<ByteBuffer> {
+
+        final CompletableFuture<Void> body = new CompletableFuture<>();
+
+        final ConcurrentLinkedQueue<ByteBuffer> chunks = new ConcurrentLinkedQueue<>();
+
+        final AtomicLong demand = new AtomicLong();
+
+        final AtomicInteger drains = new AtomicInteger();
+
+        volatile Flow.Subscription upstream;
+
+        volatile Subscriber<? super ByteBuffer> subscriber;
+
+        // a list of chunks was requested from the connection and has not arrived yet
+        volatile boolean awaitingChunks;
+
+        volatile boolean done;
+
+        volatile Throwable failure;
+
+        volatile boolean cancelled;
+
+        // only accessed while draining
+        private boolean terminated;
+
+        @Override
+        public CompletionStage<Void> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            upstream = subscription;
+            if (cancelled) {
+                subscription.cancel();
+            }
+            drain();
+        }
+
+        @Override
+        public void onNext(final List<ByteBuffer> items) {
+            for (final ByteBuffer item : items) {
+                if (item.hasRemaining()) {
+                    chunks.add(item);
+                }
+            }
+            awaitingChunks = false;
+            drain();
+        }
+
+        @Override
+        public void onError(final Throwable error) {
+            failure = error;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super ByteBuffer> subscriber) {
+            if (this.subscriber != null) {
+                subscriber.onSubscribe(new Subscription() {
+                    @Override
+                    public void request(final long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("response body can only be subscribed to once"));
+                return;
+            }
+
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(final long n) {
+                    if (n <= 0) {
+                        failure = new IllegalArgumentException("requested " + n + " chunks, must be positive");
+                        done = true;
+                        cancelUpstream();
+                    } else {
+                        demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+                    }
+                    drain();
+                }
+
+                @Override
+                public void cancel() {
+                    if (cancelled) {
+                        return;
+                    }
+                    cancelled = true;
+                    cancelUpstream();
+                    body.complete(null);
+                }
+            });
+            this.subscriber = subscriber;
+            drain();
+        }
+
+        private void cancelUpstream() {
+            final Flow.Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+
+        // delivers chunks from a single thread at a time, whichever thread asks while no other one is draining
+        private void drain() {
+            if (drains.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                final Subscriber<? super ByteBuffer> downstream = subscriber;
+                if (downstream != null && !terminated) {
+                    deliver(downstream);
+                }
+                missed = drains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver(final Subscriber<? super ByteBuffer> downstream) {
+            if (cancelled && failure == null) {
+                chunks.clear();
+                terminated = true;
+                return;
+            }
+
+            while (demand.get() > 0 && !chunks.isEmpty() && failure == null) {
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                downstream.onNext(chunks.poll());
+            }
+
+            if (done && (chunks.isEmpty() || failure != null)) {
+                terminated = true;
+                chunks.clear();
+                if (failure != null) {
+                    downstream.onError(failure);
+                    body.completeExceptionally(failure);
+                } else {
+                    downstream.onComplete();
+                    body.complete(null);
+                }
+                return;
+            }
+
+            final Flow.Subscription subscription = upstream;
+            if (chunks.isEmpty() && demand.get() > 0 && subscription != null && !awaitingChunks && !done) {
+                awaitingChunks = true;
+                subscription.request(1);
+            }
+        }
+    }
+}
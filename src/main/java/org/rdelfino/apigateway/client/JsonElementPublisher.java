@@ -0,0 +1,390 @@
+package org.rdelfino.apigateway.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.NonNull;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.http.async.SdkAsyncHttpResponseHandler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publisher that sends a request and decodes the response body incrementally into elements.
+ *
+ * <p>The body may either be a single JSON array, whose items are emitted, or a sequence of root-level JSON values
+ * separated by whitespace or newlines (NDJSON). A non-blocking parser is fed one body chunk at a time, and the next
+ * chunk is requested only once every element decoded from the previous chunks has been delivered downstream.</p>
+ *
+ * <p>The request is admitted like invoked ones, and the body is aborted with a {@link ResponseTooLargeException}
+ * once it exceeds the maximum response size.</p>
+ *
+ * @param <Payload> type of the decoded elements
+ */
+class JsonElementPublisher<Payload> implements Publisher<Payload> {
+
+    final ApiGatewayAsyncClient client;
+    final ApiGatewayRequest request;
+    final JavaType elementType;
+
+    JsonElementPublisher(
+        final @NonNull ApiGatewayAsyncClient client,
+        final @NonNull ApiGatewayRequest request,
+        final @NonNull JavaType elementType
+    ) {
+        this.client = client;
+        this.request = request;
+        this.elementType = elementType;
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super Payload> subscriber) {
+        final ElementSubscription subscription = new ElementSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+
+        if (subscription.cancelled) {
+            return;
+        }
+
+        try {
+            client.execute(request, subscription, subscription::statusCode)
+                .whenComplete((v, failure) -> {
+                    if (failure != null) {
+                        subscription.onError(failure);
+                    }
+                });
+        } catch (RuntimeException e) {
+            subscription.onError(e);
+        }
+    }
+
+    private class ElementSubscription implements Subscription, SdkAsyncHttpResponseHandler, Subscriber<ByteBuffer> {
+
+        final Subscriber<? super Payload> downstream;
+
+        final ObjectMapper mapper = request.getMapper();
+        final ObjectReader reader = mapper.readerFor(elementType);
+
+        final Queue<Payload> decoded = new ArrayDeque<>();
+
+        final long maxSize = client.responseBodyStorage.maxSize(request.getMaxResponseSize());
+
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+
+        volatile boolean cancelled;
+        volatile Throwable error;
+        volatile boolean bodyComplete;
+        volatile ByteBuffer pendingChunk;
+        volatile Subscription bodySubscription;
+
+        volatile SdkHttpResponse httpResponse;
+        Buffer errorBody;
+        long received;
+
+        JsonParser parser;
+        ByteArrayFeeder feeder;
+        boolean chunkRequested;
+        boolean endOfInput;
+        boolean started;
+        boolean arrayMode;
+        int depth;
+        TokenBuffer element;
+
+        boolean terminated;
+
+        ElementSubscription(final Subscriber<? super Payload> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                onError(new IllegalArgumentException("Rule 3.9: demand must be positive, got " + n));
+                return;
+            }
+            requested.accumulateAndGet(n, (current, add) -> {
+                final long sum = current + add;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        @Override
+        public void onHeaders(final SdkHttpResponse sdkHttpResponse) {
+            this.httpResponse = sdkHttpResponse;
+
+            final long contentLength = SignedRequestsHandler.contentLength(sdkHttpResponse);
+            if (contentLength > maxSize) {
+                onError(new ResponseTooLargeException(contentLength, maxSize));
+                return;
+            }
+
+            if (!sdkHttpResponse.isSuccessful()) {
+                errorBody = new Buffer(256);
+            }
+        }
+
+        @Override
+        public void onStream(final Publisher<ByteBuffer> contentPublisher) {
+            contentPublisher.subscribe(this);
+        }
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            bodySubscription = subscription;
+            if (cancelled || error != null) {
+                subscription.cancel();
+            } else if (errorBody != null) {
+                subscription.request(Long.MAX_VALUE);
+            } else {
+                drain();
+            }
+        }
+
+        @Override
+        public void onNext(final ByteBuffer byteBuffer) {
+            received += byteBuffer.remaining();
+            if (received > maxSize) {
+                onError(new ResponseTooLargeException(received, maxSize));
+                return;
+            }
+
+            if (errorBody != null) {
+                final ByteBuffer source = byteBuffer.duplicate();
+                while (source.hasRemaining()) {
+                    errorBody.write(source.get());
+                }
+                return;
+            }
+            pendingChunk = byteBuffer;
+            drain();
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            if (error == null) {
+                error = throwable;
+            }
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            if (errorBody != null) {
+                onError(
+                    new ApiGatewayException(
+                        SimpleApiGatewayResponse.builder()
+                            .objectMapper(mapper)
+                            .statusText(httpResponse.statusText().orElse(null))
+                            .statusCode(httpResponse.statusCode())
+                            .successful(false)
+                            .headers(httpResponse.headers())
+                            .body(errorBody.asByteBuffer())
+                        .build()
+                    )
+                );
+                return;
+            }
+            bodyComplete = true;
+            drain();
+        }
+
+        /**
+         * @return status code of the response, or 0 if no response was received
+         */
+        int statusCode() {
+            final SdkHttpResponse response = httpResponse;
+            return response == null ? 0 : response.statusCode();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            do {
+                if (!terminated) {
+                    try {
+                        drainOnce();
+                    } catch (IOException | RuntimeException e) {
+                        fail(e);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainOnce() throws IOException {
+            if (cancelled) {
+                release();
+                return;
+            }
+
+            final Throwable failure = error;
+            if (failure != null) {
+                fail(failure);
+                return;
+            }
+
+            while (true) {
+                while (requested.get() > 0 && !decoded.isEmpty()) {
+                    requested.decrementAndGet();
+                    downstream.onNext(decoded.poll());
+                    if (cancelled) {
+                        release();
+                        return;
+                    }
+                }
+
+                if (requested.get() == 0) {
+                    return;
+                }
+
+                final Subscription subscription = bodySubscription;
+                if (subscription == null) {
+                    return;
+                }
+
+                if (parser == null) {
+                    parser = mapper.getFactory().createNonBlockingByteArrayParser();
+                    feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+                }
+
+                final JsonToken token = parser.nextToken();
+
+                if (token == JsonToken.NOT_AVAILABLE) {
+                    if (!feed(subscription)) {
+                        return;
+                    }
+                } else if (token == null) {
+                    if (endOfInput) {
+                        terminated = true;
+                        parser.close();
+                        downstream.onComplete();
+                        return;
+                    }
+                } else {
+                    consume(token);
+                }
+            }
+        }
+
+        /**
+         * Feeds the parser with the next available body chunk.
+         * @return true if the parser has new input, false if input has to be awaited
+         */
+        private boolean feed(final Subscription subscription) throws IOException {
+            final ByteBuffer chunk = pendingChunk;
+            if (chunk != null) {
+                pendingChunk = null;
+                chunkRequested = false;
+                feedChunk(chunk);
+                return true;
+            }
+
+            if (bodyComplete) {
+                if (!endOfInput) {
+                    endOfInput = true;
+                    feeder.endOfInput();
+                }
+                return true;
+            }
+
+            if (!chunkRequested) {
+                chunkRequested = true;
+                subscription.request(1);
+            }
+            return false;
+        }
+
+        private void feedChunk(final ByteBuffer chunk) throws IOException {
+            if (chunk.hasArray()) {
+                final int start = chunk.arrayOffset() + chunk.position();
+                feeder.feedInput(chunk.array(), start, start + chunk.remaining());
+            } else {
+                final byte[] bytes = new byte[chunk.remaining()];
+                chunk.duplicate().get(bytes);
+                feeder.feedInput(bytes, 0, bytes.length);
+            }
+        }
+
+        private void consume(final JsonToken token) throws IOException {
+            if (!started) {
+                started = true;
+                if (token == JsonToken.START_ARRAY) {
+                    arrayMode = true;
+                    return;
+                }
+            }
+
+            if (arrayMode && element == null && token == JsonToken.END_ARRAY) {
+                arrayMode = false;
+                return;
+            }
+
+            if (element == null) {
+                element = new TokenBuffer(parser);
+            }
+            element.copyCurrentEvent(parser);
+
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+
+            if (depth == 0) {
+                final TokenBuffer complete = element;
+                element = null;
+
+                try (JsonParser elementParser = complete.asParser(mapper)) {
+                    final Payload value = reader.readValue(elementParser);
+                    if (value != null) {
+                        decoded.offer(value);
+                    }
+                }
+            }
+        }
+
+        private void fail(final Throwable failure) {
+            release();
+            downstream.onError(failure);
+        }
+
+        private void release() {
+            terminated = true;
+            decoded.clear();
+            final Subscription subscription = bodySubscription;
+            if (subscription != null && !bodyComplete) {
+                subscription.cancel();
+            }
+            if (parser != null) {
+                try {
+                    parser.close();
+                } catch (IOException e) {
+                    // nothing left to release
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.rdelfino.apigateway.client;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Budget of the bytes a client holds in memory for the requests in flight: their payloads, and their response
+ * bodies while they are received.
+ *
+ * <p>Requests reserve the size of their payload before being sent, waiting in arrival order while the budget is
+ * exhausted. A request larger than the whole budget is sent once nothing else is in flight. A request stops
+ * waiting, and leaves its place to the ones behind it, when cancelled or once its deadline passes. Response bodies are
+ * accounted chunk by chunk as they arrive, and a response stops requesting further chunks while the budget is
+ * exhausted, except for the oldest one being received, so that responses in progress always finish and free
+ * their bytes. The budget may thus be exceeded by one chunk per response, and by the oldest response.</p>
+ *
+ * <p>Bytes are released once their request completes: the response body then belongs to the caller.</p>
+ */
+class MemoryBudget {
+
+    final long capacity;
+
+    private long used;
+
+    private final ArrayDeque<Reservation> reservations = new ArrayDeque<>();
+
+    // receivers in the order they started receiving, the first one is never paused
+    private final LinkedHashSet<Receiver> receivers = new LinkedHashSet<>();
+
+    MemoryBudget(final long capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("memory budget must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return bytes currently accounted
+     */
+    synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * Reserves bytes, once available
+     * @param bytes number of bytes
+     * @return future completed once the bytes are reserved
+     */
+    CompletableFuture<Void> reserve(final long bytes) {
+        return reserve(bytes, null);
+    }
+
+    /**
+     * Reserves bytes, once available
+     * @param bytes number of bytes
+     * @param deadline when to stop waiting for the bytes, or null to wait until they are available
+     * @return future completed once the bytes are reserved, failed with a {@link RequestRejectedException} if the
+     *         deadline passes first, and withdrawn from the queue if cancelled
+     */
+    CompletableFuture<Void> reserve(final long bytes, final Instant deadline) {
+        final Reservation reservation;
+        synchronized (this) {
+            if (reservations.isEmpty() && fits(bytes)) {
+                used += bytes;
+                return CompletableFuture.completedFuture(null);
+            }
+            reservation = new Reservation(bytes);
+            reservations.add(reservation);
+        }
+
+        reservation.future.whenComplete((reserved, failure) -> {
+            if (failure != null) {
+                withdraw(reservation);
+            }
+        });
+
+        if (deadline != null) {
+            CompletableFuture.delayedExecutor(
+                    Math.max(0, Duration.between(Instant.now(), deadline).toNanos()),
+                    TimeUnit.NANOSECONDS
+                )
+                .execute(() -> reservation.future.completeExceptionally(
+                    new RequestRejectedException("deadline passed waiting for " + bytes + " bytes of the memory budget")
+                ));
+        }
+
+        return reservation.future;
+    }
+
+    private void withdraw(final Reservation reservation) {
+        final List<Runnable> granted;
+        synchronized (this) {
+            if (!reservations.remove(reservation)) {
+                // granted already, see grant
+                return;
+            }
+            granted = grant();
+        }
+        granted.forEach(Runnable::run);
+    }
+
+    /**
+     * Releases reserved bytes
+     * @param bytes number of bytes
+     */
+    void release(final long bytes) {
+        final List<Runnable> granted;
+        synchronized (this) {
+            used -= bytes;
+            granted = grant();
+        }
+        granted.forEach(Runnable::run);
+    }
+
+    /**
+     * @return newly registered receiver of a response body
+     */
+    synchronized Receiver receiver() {
+        final Receiver receiver = new Receiver();
+        receivers.add(receiver);
+        return receiver;
+    }
+
+    private boolean fits(final long bytes) {
+        return used == 0 || used + bytes <= capacity;
+    }
+
+    // called holding the lock, the returned actions are run outside of it
+    private List<Runnable> grant() {
+        final List<Runnable> granted = new ArrayList<>();
+
+        boolean first = true;
+        for (final Receiver receiver : receivers) {
+            if (receiver.resume != null && (first || used < capacity)) {
+                granted.add(receiver.resume);
+                receiver.resume = null;
+            }
+            first = false;
+        }
+
+        while (!reservations.isEmpty() && fits(reservations.peek().bytes)) {
+            final Reservation reservation = reservations.poll();
+            used += reservation.bytes;
+            granted.add(() -> {
+                // cancelled or expired meanwhile
+                if (!reservation.future.complete(null)) {
+                    release(reservation.bytes);
+                }
+            });
+        }
+
+        return granted;
+    }
+
+    /**
+     * Accounts the chunks of a response body as they arrive
+     */
+    class Receiver {
+
+        private long received;
+        private boolean closed;
+        private Runnable resume;
+
+        /**
+         * Accounts a chunk
+         * @param bytes size of the chunk
+         * @param requestNext requests the next chunk, run later if the budget is exhausted
+         * @return true if the next chunk may be requested right away, false if requestNext runs later instead
+         */
+        boolean received(final long bytes, final Runnable requestNext) {
+            synchronized (MemoryBudget.this) {
+                if (closed) {
+                    return true;
+                }
+                received += bytes;
+                used += bytes;
+                if (used < capacity || receivers.iterator().next() == this) {
+                    return true;
+                }
+                resume = requestNext;
+                return false;
+            }
+        }
+
+        /**
+         * Releases the bytes received, once the response completed or failed
+         */
+        void close() {
+            final List<Runnable> granted;
+            synchronized (MemoryBudget.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                resume = null;
+                receivers.remove(this);
+                used -= received;
+                granted = grant();
+            }
+            granted.forEach(Runnable::run);
+        }
+    }
+
+    private static class Reservation {
+
+        final long bytes;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Reservation(final long bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.NonNull;
+
+import java.net.URI;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Strategy used by {@link ApiGatewayPaginator} to find the continuation of a paginated listing.
+ */
+public interface PageTokenStrategy {
+
+    /**
+     * Extracts the continuation token from a page
+     * @param page response containing the page
+     * @return the continuation token, or null if this is the last page
+     */
+    String nextToken(ApiGatewayResponse page);
+
+    /**
+     * Creates the request for the next page
+     * @param previousRequest the request that fetched the previous page
+     * @param token the continuation token extracted from the previous page
+     * @return the request for the next page
+     */
+    ApiGatewayRequest nextRequest(ApiGatewayRequest previousRequest, String token);
+
+    /**
+     * Creates a strategy that passes the continuation token as a query parameter.
+     *
+     * <p>The extractor may read the token from the response headers or body.</p>
+     *
+     * @param parameterName name of the query parameter carrying the token, ex: nextToken
+     * @param tokenExtractor function returning the continuation token of a page, or null if it is the last page
+     * @return newly created PageTokenStrategy
+     */
+    static PageTokenStrategy queryParameter(
+        final @NonNull String parameterName,
+        final @NonNull Function<ApiGatewayResponse, String> tokenExtractor
+    ) {
+        return new PageTokenStrategy() {
+            @Override
+            public String nextToken(final ApiGatewayResponse page) {
+                return tokenExtractor.apply(page);
+            }
+
+            @Override
+            public ApiGatewayRequest nextRequest(final ApiGatewayRequest previousRequest, final String token) {
+                return previousRequest.toBuilder()
+                    .setQueryParameter(parameterName, token)
+                    .build();
+            }
+        };
+    }
+
+    /**
+     * Creates a strategy that follows the rel="next" target of the RFC 8288 Link response header.
+     * Relative targets are resolved against the previous request.
+     *
+     * @return newly created PageTokenStrategy
+     */
+    static PageTokenStrategy linkHeader() {
+        return LinkHeaderStrategy.INSTANCE;
+    }
+
+    /**
+     * PageTokenStrategy following the rel="next" target of the Link response header
+     */
+    final class LinkHeaderStrategy implements PageTokenStrategy {
+
+        static final LinkHeaderStrategy INSTANCE = new LinkHeaderStrategy();
+
+        private static final Pattern LINK = Pattern.compile("<([^>]*)>\\s*((?:;\\s*[^;,]+)*)");
+        private static final Pattern NEXT = Pattern.compile(";\\s*rel\\s*=\\s*\"?(?:[^\";,]*\\s)?next(?:\\s[^\";,]*)?\"?");
+
+        private LinkHeaderStrategy() {
+        }
+
+        @Override
+        public String nextToken(final ApiGatewayResponse page) {
+            return page.firstMatchingHeader("Link")
+                .map(LinkHeaderStrategy::nextTarget)
+                .orElse(null);
+        }
+
+        @Override
+        public ApiGatewayRequest nextRequest(final ApiGatewayRequest previousRequest, final String token) {
+            final URI base = URI.create("https://" + previousRequest.getHost() + ":" + previousRequest.getPort())
+                .resolve(previousRequest.getPath());
+            final URI next = base.resolve(token);
+
+            return previousRequest.toBuilder()
+                .setUri(next)
+                .setPort(next.getPort() == -1 ? previousRequest.getPort() : next.getPort())
+                .build();
+        }
+
+        static String nextTarget(final String linkHeader) {
+            final Matcher link = LINK.matcher(linkHeader);
+            while (link.find()) {
+                if (NEXT.matcher(link.group(2)).find()) {
+                    return link.group(1);
+                }
+            }
+            return null;
+        }
+    }
+}
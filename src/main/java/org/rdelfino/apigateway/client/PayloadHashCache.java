@@ -0,0 +1,115 @@
+package org.rdelfino.apigateway.client;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Cache of the SHA-256 of payloads sent repeatedly.
+ *
+ * <p>Payloads are looked up by size and CRC32C, which is several times cheaper to compute than SHA-256, and a
+ * cached digest is only reused after comparing the payload byte by byte with the payload it was computed for.
+ * Cached payloads are copied, so that the cache never holds on to the buffers or file mappings of its callers,
+ * nor sees them change, and are retained until evicted, least recently used first: with the defaults, the cache
+ * holds at most its number of entries times 1 MiB.</p>
+ */
+class PayloadHashCache {
+
+    static final int DEFAULT_MAX_PAYLOAD_SIZE = 1024 * 1024;
+
+    final int maxEntries;
+    final int maxPayloadSize;
+
+    final Map<Key, CachedDigest> entries;
+
+    PayloadHashCache(final int maxEntries, final int maxPayloadSize) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("payload hash cache size must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.maxPayloadSize = maxPayloadSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, CachedDigest> eldest) {
+                return size() > PayloadHashCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Obtains the SHA-256 of a payload, reusing the digest of a byte-identical payload hashed before
+     * @param payload the payload
+     * @return SHA-256 digest of the payload
+     */
+    byte[] sha256(final PayloadSource payload) {
+        final byte[] known = payload.knownSha256();
+        if (known != null) {
+            return known;
+        }
+
+        final ByteBuffer contents = payload.asByteBuffer();
+        if (contents.remaining() > maxPayloadSize) {
+            return payload.sha256();
+        }
+
+        final CRC32C crc = new CRC32C();
+        crc.update(contents.duplicate());
+        final Key key = new Key(contents.remaining(), crc.getValue());
+
+        final CachedDigest cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+
+        if (cached != null && cached.contents.equals(contents)) {
+            payload.knownSha256(cached.sha256);
+            return cached.sha256;
+        }
+
+        final byte[] digest = payload.sha256();
+        synchronized (entries) {
+            entries.put(key, new CachedDigest(copyOf(contents), digest));
+        }
+        return digest;
+    }
+
+    private static ByteBuffer copyOf(final ByteBuffer contents) {
+        return ByteBuffer.allocate(contents.remaining())
+            .put(contents.duplicate())
+            .flip()
+            .asReadOnlyBuffer();
+    }
+
+    private static class Key {
+
+        final int size;
+        final long crc;
+
+        Key(final int size, final long crc) {
+            this.size = size;
+            this.crc = crc;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof Key && ((Key) other).size == size && ((Key) other).crc == crc;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(crc) * 31 + size;
+        }
+    }
+
+    private static class CachedDigest {
+
+        final ByteBuffer contents;
+        final byte[] sha256;
+
+        CachedDigest(final ByteBuffer contents, final byte[] sha256) {
+            this.contents = contents;
+            this.sha256 = sha256;
+        }
+    }
+}
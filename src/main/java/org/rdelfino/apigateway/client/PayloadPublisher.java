@@ -0,0 +1,96 @@
+package org.rdelfino.apigateway.client;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.http.async.SdkHttpContentPublisher;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the contents of a PayloadSource as read-only slices of its ByteBuffer, without copying them.
+ * Every subscriber receives the whole payload.
+ */
+class PayloadPublisher implements SdkHttpContentPublisher {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Publisher of an empty payload, shared by the requests without one
+     */
+    static final PayloadPublisher EMPTY = new PayloadPublisher(null);
+
+    private static final Optional<Long> EMPTY_LENGTH = Optional.of(0L);
+
+    final PayloadSource payload;
+
+    PayloadPublisher(final PayloadSource payload) {
+        this.payload = payload;
+    }
+
+    @Override
+    public Optional<Long> contentLength() {
+        return payload == null ? EMPTY_LENGTH : Optional.of(payload.size());
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super ByteBuffer> subscriber) {
+        final ByteBuffer contents = payload == null ? ByteBuffer.allocate(0) : payload.asByteBuffer();
+        subscriber.onSubscribe(new ChunkSubscription(subscriber, contents));
+    }
+
+    private static class ChunkSubscription implements Subscription {
+
+        final Subscriber<? super ByteBuffer> subscriber;
+        final ByteBuffer contents;
+
+        final AtomicLong demand = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private boolean completed;
+
+        ChunkSubscription(final Subscriber<? super ByteBuffer> subscriber, final ByteBuffer contents) {
+            this.subscriber = subscriber;
+            this.contents = contents;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                cancelled = true;
+                subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                return;
+            }
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!cancelled && !completed && demand.get() > 0 && contents.hasRemaining()) {
+                    final int length = Math.min(CHUNK_SIZE, contents.remaining());
+                    final ByteBuffer chunk = contents.slice();
+                    chunk.limit(length);
+                    contents.position(contents.position() + length);
+                    demand.decrementAndGet();
+                    subscriber.onNext(chunk);
+                }
+                if (!cancelled && !completed && !contents.hasRemaining()) {
+                    completed = true;
+                    subscriber.onComplete();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+    }
+}
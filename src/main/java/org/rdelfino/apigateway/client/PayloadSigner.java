@@ -0,0 +1,117 @@
+package org.rdelfino.apigateway.client;
+
+import software.amazon.awssdk.auth.credentials.CredentialUtils;
+import software.amazon.awssdk.auth.signer.Aws4Signer;
+import software.amazon.awssdk.auth.signer.internal.Aws4SignerRequestParams;
+import software.amazon.awssdk.auth.signer.internal.BaseAws4Signer;
+import software.amazon.awssdk.auth.signer.internal.ContentChecksum;
+import software.amazon.awssdk.auth.signer.internal.SignerConstant;
+import software.amazon.awssdk.auth.signer.params.Aws4SignerParams;
+import software.amazon.awssdk.auth.signer.params.SignerChecksumParams;
+import software.amazon.awssdk.core.checksums.Algorithm;
+import software.amazon.awssdk.http.SdkHttpFullRequest;
+import software.amazon.awssdk.utils.BinaryUtils;
+
+/**
+ * SigV4 signer taking the SHA-256 of the payload from the caller instead of reading the payload again.
+ *
+ * <p>Requests are signed exactly as Aws4Signer signs them with a SHA-256 checksum configured for the
+ * x-amz-content-sha256 header, which carries the base64 encoded digest.</p>
+ *
+ * <p>Taking the digest relies on the internal signer the SDK builds Aws4Signer on, which is only guaranteed to be
+ * the one the library is built against. When the SDK found at runtime no longer links with it, requests are signed
+ * by Aws4Signer itself, which reads the payload again to compute its digest.</p>
+ */
+class PayloadSigner {
+
+    private static final Aws4Signer FALLBACK = Aws4Signer.create();
+
+    // spelled out rather than taken from the internal SignerConstant, which the fallback must not depend on
+    private static final SignerChecksumParams CHECKSUM_PARAMS = SignerChecksumParams.builder()
+            .algorithm(Algorithm.SHA256)
+            .isStreamingRequest(false)
+            .checksumHeaderName("x-amz-content-sha256")
+        .build();
+
+    // null once the internal signer failed to link
+    private volatile PrecomputedSigner precomputed;
+
+    PayloadSigner() {
+        this(true);
+    }
+
+    /**
+     * @param precompute whether to sign with the digest taken from the caller, if the SDK links with it
+     */
+    PayloadSigner(final boolean precompute) {
+        this.precomputed = precompute ? precomputedSigner() : null;
+    }
+
+    private static PrecomputedSigner precomputedSigner() {
+        try {
+            return new PrecomputedSigner();
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Signs a request
+     * @param request builder of the request to sign, completed with the checksum header
+     * @param signerParams signing parameters, without checksum parameters
+     * @param contentSha256 SHA-256 digest of the request payload
+     * @return signed request
+     */
+    SdkHttpFullRequest sign(
+        final SdkHttpFullRequest.Builder request,
+        final Aws4SignerParams signerParams,
+        final byte[] contentSha256
+    ) {
+        if (CredentialUtils.isAnonymous(signerParams.awsCredentials())) {
+            return request.build();
+        }
+
+        final PrecomputedSigner signer = precomputed;
+        if (signer != null) {
+            try {
+                return signer.sign(request, signerParams, contentSha256);
+            } catch (LinkageError e) {
+                precomputed = null;
+            }
+        }
+
+        return FALLBACK.sign(request.build(), withChecksum(signerParams));
+    }
+
+    private static Aws4SignerParams withChecksum(final Aws4SignerParams signerParams) {
+        return Aws4SignerParams.builder()
+                .signingName(signerParams.signingName())
+                .signingRegion(signerParams.signingRegion())
+                .awsCredentials(signerParams.awsCredentials())
+                .doubleUrlEncode(signerParams.doubleUrlEncode())
+                .normalizePath(signerParams.normalizePath())
+                .timeOffset(signerParams.timeOffset().orElse(null))
+                .signingClockOverride(signerParams.signingClockOverride().orElse(null))
+                .checksumParams(CHECKSUM_PARAMS)
+            .build();
+    }
+
+    private static final class PrecomputedSigner extends BaseAws4Signer {
+
+        SdkHttpFullRequest sign(
+            final SdkHttpFullRequest.Builder request,
+            final Aws4SignerParams signerParams,
+            final byte[] contentSha256
+        ) {
+            // added before building, instead of copying the built request to add it
+            request.putHeader(SignerConstant.X_AMZ_CONTENT_SHA256, BinaryUtils.toBase64(contentSha256));
+
+            return doSign(
+                request.build(),
+                new Aws4SignerRequestParams(signerParams),
+                signerParams,
+                new ContentChecksum(BinaryUtils.toHex(contentSha256), null)
+            ).build();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.NonNull;
+import lombok.SneakyThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Re-readable source of a request payload.
+ *
+ * <p>The contents are exposed as a read-only ByteBuffer, so both transports and the SHA-256 computed for signing
+ * read the same bytes without copying them. Files are memory-mapped, and are expected to remain unchanged while
+ * requests using them are in flight.</p>
+ */
+abstract class PayloadSource {
+
+    private volatile byte[] sha256;
+
+    private long serializationStartNanos;
+    private long serializationEndNanos;
+
+    /**
+     * Creates a PayloadSource over the remaining contents of a ByteBuffer, without copying them.
+     * The ByteBuffer is expected to remain unchanged while requests using it are in flight.
+     *
+     * @param buffer ByteBuffer with the payload
+     * @return newly created PayloadSource
+     */
+    static PayloadSource of(final @NonNull ByteBuffer buffer) {
+        return new BufferPayloadSource(buffer.slice().asReadOnlyBuffer());
+    }
+
+    /**
+     * Creates a PayloadSource over the remaining contents of a ByteBuffer whose SHA-256 is already known
+     * @param buffer ByteBuffer with the payload
+     * @param sha256 SHA-256 digest of the payload
+     * @return newly created PayloadSource
+     */
+    static PayloadSource of(final @NonNull ByteBuffer buffer, final @NonNull byte[] sha256) {
+        final PayloadSource source = of(buffer);
+        source.sha256 = sha256;
+        return source;
+    }
+
+    /**
+     * Creates a PayloadSource over the contents of a file, memory-mapped on first use
+     * @param file file with the payload
+     * @return newly created PayloadSource
+     */
+    static PayloadSource of(final @NonNull Path file) {
+        return new FilePayloadSource(file);
+    }
+
+    /**
+     * Creates a PayloadSource over the contents of an InputStream, buffered in memory on first use
+     * @param inputStream InputStream with the payload
+     * @return newly created PayloadSource
+     */
+    static PayloadSource of(final @NonNull InputStream inputStream) {
+        return new StreamPayloadSource(inputStream);
+    }
+
+    /**
+     * @return the payload contents as a read-only ByteBuffer positioned at its first byte
+     */
+    abstract ByteBuffer asByteBuffer();
+
+    /**
+     * @return size of the payload in bytes
+     */
+    long size() {
+        return asByteBuffer().remaining();
+    }
+
+    /**
+     * @return a new InputStream reading the payload contents
+     */
+    InputStream newInputStream() {
+        return new ByteBufferInputStream(asByteBuffer());
+    }
+
+    /**
+     * @return SHA-256 digest of the payload, computed on first use
+     */
+    byte[] sha256() {
+        byte[] digest = sha256;
+        if (digest == null) {
+            final MessageDigest messageDigest = newSha256();
+            messageDigest.update(asByteBuffer());
+            sha256 = digest = messageDigest.digest();
+        }
+        return digest;
+    }
+
+    /**
+     * @return SHA-256 digest of the payload if already known, or null
+     */
+    byte[] knownSha256() {
+        return sha256;
+    }
+
+    /**
+     * Records the SHA-256 digest of the payload, known to be identical to a payload hashed before
+     * @param digest SHA-256 digest of the payload
+     */
+    void knownSha256(final byte[] digest) {
+        sha256 = digest;
+    }
+
+    /**
+     * Records when the payload was serialized, to be reported to tracing spans
+     * @param startNanos System.nanoTime() when serialization started
+     * @param endNanos System.nanoTime() when serialization ended
+     * @return this PayloadSource
+     */
+    PayloadSource serialized(final long startNanos, final long endNanos) {
+        serializationStartNanos = startNanos;
+        serializationEndNanos = endNanos;
+        return this;
+    }
+
+    /**
+     * @return true if the payload was serialized by a request builder
+     */
+    boolean isSerialized() {
+        return serializationEndNanos != 0;
+    }
+
+    long serializationStartNanos() {
+        return serializationStartNanos;
+    }
+
+    long serializationEndNanos() {
+        return serializationEndNanos;
+    }
+
+    @SneakyThrows(NoSuchAlgorithmException.class)
+    static MessageDigest newSha256() {
+        return MessageDigest.getInstance("SHA-256");
+    }
+
+    private static class BufferPayloadSource extends PayloadSource {
+
+        final ByteBuffer buffer;
+
+        BufferPayloadSource(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        ByteBuffer asByteBuffer() {
+            return buffer.duplicate();
+        }
+
+        @Override
+        public String toString() {
+            return "PayloadSource(" + buffer.remaining() + " bytes)";
+        }
+    }
+
+    private static class FilePayloadSource extends PayloadSource {
+
+        final Path file;
+
+        private volatile ByteBuffer mapped;
+
+        FilePayloadSource(final Path file) {
+            this.file = file;
+        }
+
+        @Override
+        @SneakyThrows(IOException.class)
+        ByteBuffer asByteBuffer() {
+            ByteBuffer buffer = mapped;
+            if (buffer == null) {
+                synchronized (this) {
+                    buffer = mapped;
+                    if (buffer == null) {
+                        mapped = buffer = map(file);
+                    }
+                }
+            }
+            return buffer.duplicate();
+        }
+
+        private static ByteBuffer map(final Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("payload file too large to be mapped: " + file + " (" + size + " bytes)");
+                }
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "PayloadSource(" + file + ")";
+        }
+    }
+
+    private static class StreamPayloadSource extends PayloadSource {
+
+        private InputStream inputStream;
+
+        private volatile ByteBuffer buffered;
+
+        StreamPayloadSource(final InputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+
+        @Override
+        ByteBuffer asByteBuffer() {
+            ByteBuffer buffer = buffered;
+            if (buffer == null) {
+                synchronized (this) {
+                    buffer = buffered;
+                    if (buffer == null) {
+                        buffered = buffer = Buffer.from(inputStream).asByteBuffer().asReadOnlyBuffer();
+                        inputStream = null;
+                    }
+                }
+            }
+            return buffer.duplicate();
+        }
+
+        @Override
+        public String toString() {
+            return "PayloadSource(" + (buffered == null ? "stream" : buffered.remaining() + " bytes") + ")";
+        }
+    }
+}
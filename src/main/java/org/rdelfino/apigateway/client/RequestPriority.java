@@ -0,0 +1,19 @@
+package org.rdelfino.apigateway.client;
+
+/**
+ * Priority classes of requests, from the first to the last to be served while waiting for a concurrency limit
+ */
+public enum RequestPriority {
+    /**
+     * requests someone is waiting for, such as those serving user-facing calls
+     */
+    INTERACTIVE,
+    /**
+     * requests without a declared priority
+     */
+    DEFAULT,
+    /**
+     * background and batch requests, which can wait
+     */
+    BATCH
+}
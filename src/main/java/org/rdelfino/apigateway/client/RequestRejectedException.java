@@ -0,0 +1,16 @@
+package org.rdelfino.apigateway.client;
+
+/**
+ * Exception signaled when a request is rejected by the client before being sent, such as when it is shed
+ * because too many requests are already waiting for the same host.
+ */
+public class RequestRejectedException extends RuntimeException {
+
+    /**
+     * Creates a RequestRejectedException
+     * @param message why the request was rejected
+     */
+    public RequestRejectedException(final String message) {
+        super(message);
+    }
+}
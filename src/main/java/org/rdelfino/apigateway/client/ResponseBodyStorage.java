@@ -0,0 +1,96 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Value;
+
+import java.nio.file.Path;
+
+/**
+ * Describes where response bodies are buffered: in memory, or in a temporary file once they grow beyond a threshold,
+ * and how large they may grow
+ */
+@Value
+class ResponseBodyStorage {
+
+    static final ResponseBodyStorage IN_MEMORY = new ResponseBodyStorage(Long.MAX_VALUE, null, Long.MAX_VALUE);
+
+    /**
+     * size beyond which response bodies are spilled to a temporary file
+     */
+    long spillThreshold;
+
+    /**
+     * directory of the temporary files, or null for the default temporary-file directory
+     */
+    Path spillDirectory;
+
+    /**
+     * size beyond which response bodies are rejected with a ResponseTooLargeException
+     */
+    long maxSize;
+
+    /**
+     * Creates the storage configuration
+     * @param spillThreshold size beyond which response bodies are spilled to a temporary file, or null to never spill
+     * @param spillDirectory directory of the temporary files, or null for the default temporary-file directory
+     * @return newly created ResponseBodyStorage
+     */
+    static ResponseBodyStorage of(final Long spillThreshold, final Path spillDirectory) {
+        return of(spillThreshold, spillDirectory, null);
+    }
+
+    /**
+     * Creates the storage configuration
+     * @param spillThreshold size beyond which response bodies are spilled to a temporary file, or null to never spill
+     * @param spillDirectory directory of the temporary files, or null for the default temporary-file directory
+     * @param maxSize size beyond which response bodies are rejected, or null for no limit
+     * @return newly created ResponseBodyStorage
+     */
+    static ResponseBodyStorage of(final Long spillThreshold, final Path spillDirectory, final Long maxSize) {
+        if (spillThreshold == null && maxSize == null) {
+            return IN_MEMORY;
+        }
+        if (spillThreshold != null && spillThreshold < 0) {
+            throw new IllegalArgumentException("spill threshold must not be negative: " + spillThreshold);
+        }
+        if (maxSize != null && maxSize < 0) {
+            throw new IllegalArgumentException("max response size must not be negative: " + maxSize);
+        }
+        return new ResponseBodyStorage(
+            spillThreshold == null ? Long.MAX_VALUE : spillThreshold,
+            spillDirectory,
+            maxSize == null ? Long.MAX_VALUE : maxSize
+        );
+    }
+
+    /**
+     * Creates a buffer for a response body
+     * @param initialSize initial size of the in memory buffer
+     * @return newly created SpillableBuffer
+     */
+    SpillableBuffer newBuffer(final int initialSize) {
+        return newBuffer(initialSize, null);
+    }
+
+    /**
+     * Creates a buffer for the response body of a request
+     * @param initialSize initial size of the in memory buffer
+     * @param requestMaxSize maximum size of the response set on the request, overriding maxSize, or null
+     * @return newly created SpillableBuffer
+     */
+    SpillableBuffer newBuffer(final int initialSize, final Long requestMaxSize) {
+        return new SpillableBuffer(
+            (int) Math.min(initialSize, spillThreshold),
+            spillThreshold,
+            spillDirectory,
+            maxSize(requestMaxSize)
+        );
+    }
+
+    /**
+     * @param requestMaxSize maximum size of the response set on the request, or null
+     * @return the maximum size of a response body to the request
+     */
+    long maxSize(final Long requestMaxSize) {
+        return requestMaxSize == null ? maxSize : requestMaxSize;
+    }
+}
@@ -0,0 +1,987 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Getter;
+import lombok.NonNull;
+import software.amazon.awssdk.utils.BinaryUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent cache of GET responses, kept in an append-only file mapped in memory, so that a process started
+ * again serves the responses fetched by the previous one without calling API Gateway.
+ *
+ * <p>Only GET requests without a payload are cached, keyed by their method, host, port, path, query parameters,
+ * headers and API key. Only the SHA-256 digest of that key is written to the file, so API keys never are. Responses
+ * are cached when their status is 200 and their Cache-Control header does not say no-store.</p>
+ *
+ * <p>A response is fresh for the max-age of its Cache-Control header, or for the ttl of the cache when it has none,
+ * and is served without calling API Gateway while fresh. After that, it is still served for the
+ * stale-while-revalidate period of its Cache-Control header, or of the cache, while a single request in the
+ * background fetches it again. Past that period, the request waits for API Gateway. Responses with an ETag are
+ * fetched again with If-None-Match, and a 304 Not Modified renews the cached response.</p>
+ *
+ * <p>Every response stored is appended to the file, and the file is mapped in memory to serve cached bodies
+ * without copying them. The file grows in segments of doubling size, each mapped once. Records are checksummed,
+ * so a file cut short by a crash is read up to its last complete record. Expired responses are dropped when the
+ * file is opened, and whenever it has to grow: right away without an ETag, and a day after otherwise, since they
+ * may still be revalidated until then. Once most of it is no longer used, the live
+ * records are copied to a new file that replaces it, leaving the responses already returned readable. Responses
+ * are no longer stored once the live ones take 2 GiB. A file is used by one cache at a time, other processes fail
+ * to open it. Responses fetched by {@link ApiGatewayAsyncClient} are written to the file, and the file compacted,
+ * on a thread of the cache rather than on the threads of the http client.</p>
+ *
+ * <p>Responses are shared by everybody using the cache, regardless of the credentials their requests were signed
+ * with: use a separate cache for every identity whose view of the API differs. Requests with a
+ * {@link SigningContext} are kept apart by its tenant id and region, and are not cached without a tenant id.</p>
+ *
+ * Example:
+ * <pre>
+ *
+ *     try (ResponseCache cache = ResponseCache.open(Path.of("responses.cache"), Duration.ofMinutes(5), Duration.ofHours(1))) {
+ *         ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+ *             .httpClient(httpClient)
+ *             .responseCache(cache)
+ *             .build();
+ *         ...
+ *     }
+ *
+ * </pre>
+ */
+public class ResponseCache implements AutoCloseable {
+
+    static final int MAGIC = 0x41475743; // "AGWC"
+    static final int VERSION = 1;
+
+    private static final int FILE_HEADER_SIZE = 8;
+
+    // length and checksum of every record
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    // offsets within the file are kept in ints
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    // files smaller than this are not worth compacting
+    private static final long MIN_COMPACTION_SIZE = 1 << 20;
+
+    // the file grows by at least this much at a time
+    private static final long MIN_GROWTH = 1 << 20;
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    // how long expired responses with an ETag are kept to be revalidated, rather than fetched again
+    private static final long ETAG_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    final Path file;
+    final long ttlMillis;
+    final long staleWhileRevalidateMillis;
+    final Clock clock;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+
+    // guarded by this
+    private FileChannel channel;
+    private FileLock lock;
+    private long size;
+    private long liveSize;
+    private long capacity;
+    private Segment tail;
+    private ExecutorService revalidator;
+
+    /**
+     * number of requests served from the cache while fresh
+     */
+    @Getter
+    final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * number of requests served from the cache while being fetched again in the background
+     */
+    @Getter
+    final AtomicLong staleHitCount = new AtomicLong();
+
+    /**
+     * number of cacheable requests sent to API Gateway and waited for
+     */
+    @Getter
+    final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * number of cached responses renewed by a 304 Not Modified
+     */
+    @Getter
+    final AtomicLong notModifiedCount = new AtomicLong();
+
+    /**
+     * number of responses that could not be stored because the file could not be written
+     */
+    @Getter
+    final AtomicLong droppedCount = new AtomicLong();
+
+    private ResponseCache(
+        final Path file,
+        final Duration ttl,
+        final Duration staleWhileRevalidate,
+        final Clock clock
+    ) throws IOException {
+        if (ttl.isNegative() || staleWhileRevalidate.isNegative()) {
+            throw new IllegalArgumentException("ttl and staleWhileRevalidate must not be negative");
+        }
+        this.file = file;
+        this.ttlMillis = ttl.toMillis();
+        this.staleWhileRevalidateMillis = staleWhileRevalidate.toMillis();
+        this.clock = clock;
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.lock = lock(channel, file);
+            load();
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a cache, creating its file if needed
+     * @param file the file the responses are kept in
+     * @param ttl how long responses without a Cache-Control max-age are fresh
+     * @param staleWhileRevalidate how long responses are still served once stale, while fetched again, unless
+     *                             their Cache-Control header says otherwise
+     * @return newly opened ResponseCache
+     * @throws IOException if the file cannot be opened, is not a cache, or is used by another cache
+     */
+    public static ResponseCache open(
+        final @NonNull Path file,
+        final @NonNull Duration ttl,
+        final @NonNull Duration staleWhileRevalidate
+    ) throws IOException {
+        return new ResponseCache(file, ttl, staleWhileRevalidate, Clock.systemUTC());
+    }
+
+    static ResponseCache open(
+        final Path file,
+        final Duration ttl,
+        final Duration staleWhileRevalidate,
+        final Clock clock
+    ) throws IOException {
+        return new ResponseCache(file, ttl, staleWhileRevalidate, clock);
+    }
+
+    /**
+     * @return number of responses cached
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Whether a request may be served from a cache
+     * @param request the request
+     * @return true for GET requests without a payload, signed with the credentials of the client or of a tenant
+     */
+    static boolean isCacheable(final ApiGatewayRequest request) {
+        final SigningContext context = request.getSigningContext();
+        return "GET".equalsIgnoreCase(request.getMethod())
+            && request.getPayloadSource() == null
+            && (context == null || context.getTenantId() != null);
+    }
+
+    /**
+     * Invokes a request through the cache
+     * @param request a cacheable request
+     * @param remote sends a request to API Gateway
+     * @return the cached response, or the response of API Gateway
+     */
+    CompletableFuture<ApiGatewayResponse> invokeAsync(
+        final ApiGatewayRequest request,
+        final Function<ApiGatewayRequest, CompletableFuture<ApiGatewayResponse>> remote
+    ) {
+        final String key = key(request);
+        final Entry entry = entries.get(key);
+        final long now = clock.millis();
+
+        if (entry != null && now < entry.expiresAtMillis) {
+            hitCount.incrementAndGet();
+            return CompletableFuture.completedFuture(response(entry, request));
+        }
+
+        if (entry != null && now < entry.staleUntilMillis) {
+            staleHitCount.incrementAndGet();
+            if (revalidating.add(key)) {
+                CompletableFuture.completedFuture(conditional(request, entry))
+                    .thenCompose(remote)
+                    .whenComplete((response, failure) -> {
+                        try {
+                            if (response != null) {
+                                update(key, entry, response, request, true).close();
+                            }
+                        } finally {
+                            revalidating.remove(key);
+                        }
+                    });
+            }
+            return CompletableFuture.completedFuture(response(entry, request));
+        }
+
+        missCount.incrementAndGet();
+        // stored on the thread of the cache, rather than on the one completing the response
+        return remote.apply(conditional(request, entry))
+            .thenApply(response -> update(key, entry, response, request, true));
+    }
+
+    /**
+     * Sends a request to API Gateway, blocking
+     */
+    interface RemoteCall {
+        ApiGatewayResponse call(ApiGatewayRequest request) throws IOException;
+    }
+
+    /**
+     * Invokes a request through the cache, fetching stale responses again on a background thread of the cache
+     * @param request a cacheable request
+     * @param remote sends a request to API Gateway
+     * @return the cached response, or the response of API Gateway
+     * @throws IOException if API Gateway could not be invoked
+     */
+    ApiGatewayResponse invoke(final ApiGatewayRequest request, final RemoteCall remote) throws IOException {
+        final String key = key(request);
+        final Entry entry = entries.get(key);
+        final long now = clock.millis();
+
+        if (entry != null && now < entry.expiresAtMillis) {
+            hitCount.incrementAndGet();
+            return response(entry, request);
+        }
+
+        if (entry != null && now < entry.staleUntilMillis) {
+            staleHitCount.incrementAndGet();
+            if (revalidating.add(key)) {
+                try {
+                    revalidator().execute(() -> {
+                        try {
+                            update(key, entry, remote.call(conditional(request, entry)), request, false).close();
+                        } catch (IOException | RuntimeException e) {
+                            // served stale until the next attempt
+                        } finally {
+                            revalidating.remove(key);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    revalidating.remove(key);
+                }
+            }
+            return response(entry, request);
+        }
+
+        missCount.incrementAndGet();
+        return update(key, entry, remote.call(conditional(request, entry)), request, false);
+    }
+
+    private ApiGatewayRequest conditional(final ApiGatewayRequest request, final Entry entry) {
+        if (entry == null || entry.etag == null || request.getHeaders().containsKey("If-None-Match")) {
+            return request;
+        }
+        return request.toBuilder().setHeader("If-None-Match", entry.etag).build();
+    }
+
+    /**
+     * Stores a response of API Gateway, or renews the cached one on a 304 Not Modified
+     * @param inBackground whether to write the file on the thread of the cache
+     * @return the response to return for the request
+     */
+    private ApiGatewayResponse update(
+        final String key,
+        final Entry previous,
+        final ApiGatewayResponse response,
+        final ApiGatewayRequest request,
+        final boolean inBackground
+    ) {
+        final long now = clock.millis();
+
+        if (response.getStatusCode() == 304 && previous != null && previous.etag != null) {
+            final Freshness freshness = freshness(response.getHeaders(), now);
+            final Entry renewed = freshness == null ? null : store(
+                key,
+                previous.statusCode,
+                previous.headers,
+                previous.etag,
+                freshness,
+                body(previous),
+                inBackground
+            );
+            notModifiedCount.incrementAndGet();
+            response.close();
+            return response(renewed == null ? previous : renewed, request);
+        }
+
+        if (response.getStatusCode() == 200) {
+            final Freshness freshness = freshness(response.getHeaders(), now);
+            final String etag = header(response.getHeaders(), "ETag");
+            if (freshness != null && (freshness.staleUntilMillis > now || etag != null)) {
+                store(key, 200, response.getHeaders(), etag, freshness, response.getBody(), inBackground);
+            }
+        }
+
+        return response;
+    }
+
+    private ApiGatewayResponse response(final Entry entry, final ApiGatewayRequest request) {
+        return SimpleApiGatewayResponse.builder()
+                .objectMapper(request.getMapper())
+                .body(body(entry))
+                .successful(true)
+                .statusCode(entry.statusCode)
+                .headers(entry.headers)
+            .build();
+    }
+
+    /**
+     * Computes how long a response is fresh from its Cache-Control header, and the defaults of the cache
+     * @return when it expires, or null if it must not be stored
+     */
+    private Freshness freshness(final Map<String, List<String>> headers, final long now) {
+        long maxAgeMillis = ttlMillis;
+        long staleMillis = staleWhileRevalidateMillis;
+
+        final List<String> cacheControl = values(headers, "Cache-Control");
+        for (final String value : cacheControl) {
+            for (final String directive : value.split(",")) {
+                final String[] parts = directive.trim().toLowerCase(Locale.ROOT).split("=", 2);
+                switch (parts[0]) {
+                    case "no-store":
+                        return null;
+                    case "no-cache":
+                        maxAgeMillis = 0;
+                        break;
+                    case "max-age":
+                        maxAgeMillis = seconds(parts, maxAgeMillis);
+                        break;
+                    case "stale-while-revalidate":
+                        staleMillis = seconds(parts, staleMillis);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        return new Freshness(now + maxAgeMillis, now + maxAgeMillis + staleMillis);
+    }
+
+    private static long seconds(final String[] directive, final long defaultMillis) {
+        try {
+            return directive.length < 2 ? defaultMillis : Math.max(0, Long.parseLong(directive[1].trim())) * 1000;
+        } catch (NumberFormatException e) {
+            return defaultMillis;
+        }
+    }
+
+    private static List<String> values(final Map<String, List<String>> headers, final String name) {
+        for (final Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static String header(final Map<String, List<String>> headers, final String name) {
+        final List<String> values = values(headers, name);
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * Key of a request: SHA-256 digest of its method, host, port, path, query parameters, headers and API key,
+     * and of the tenant id and region of its signing context, so that tenants sharing a client never share entries
+     */
+    static String key(final ApiGatewayRequest request) {
+        final StringBuilder canonical = new StringBuilder(256)
+            .append(request.getMethod().toUpperCase(Locale.ROOT)).append('\n')
+            .append(request.getHost()).append(':').append(request.getPort()).append('\n')
+            .append(request.getPath()).append('\n');
+
+        appendSorted(canonical, request.getQueryParameters(), false);
+        appendSorted(canonical, request.getHeaders(), true);
+
+        if (request.getApiKey() != null) {
+            canonical.append(request.getApiKey());
+        }
+
+        final SigningContext context = request.getSigningContext();
+        if (context != null) {
+            canonical.append('\n')
+                .append(context.getTenantId()).append(' ')
+                .append(context.getRegion());
+        }
+
+        final MessageDigest sha256 = PayloadSource.newSha256();
+        return BinaryUtils.toHex(sha256.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void appendSorted(
+        final StringBuilder canonical,
+        final Map<String, List<String>> parameters,
+        final boolean caseInsensitive
+    ) {
+        if (parameters != null) {
+            final TreeMap<String, List<String>> sorted = new TreeMap<>();
+            parameters.forEach((name, values) -> sorted.put(caseInsensitive ? name.toLowerCase(Locale.ROOT) : name, values));
+            sorted.forEach((name, values) -> {
+                for (final String value : values) {
+                    canonical.append(name).append('=').append(value).append('&');
+                }
+            });
+        }
+        canonical.append('\n');
+    }
+
+    //////////////////////////
+    // file
+
+    private static FileLock lock(final FileChannel channel, final Path file) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            throw new IOException("response cache already in use: " + file);
+        }
+        return lock;
+    }
+
+    private synchronized void load() throws IOException {
+        final long fileSize = channel.size();
+
+        if (fileSize < FILE_HEADER_SIZE) {
+            final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            writeFully(header, 0);
+            size = FILE_HEADER_SIZE;
+            capacity = size;
+            tail = new Segment(0, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            return;
+        }
+
+        if (fileSize > MAX_FILE_SIZE) {
+            throw new IOException("response cache larger than " + MAX_FILE_SIZE + " bytes: " + file);
+        }
+
+        final MappedByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        final Segment loaded = new Segment(0, contents);
+        final int magic = contents.getInt(0);
+        final int version = contents.getInt(4);
+        if (magic != MAGIC || version != VERSION) {
+            throw new IOException("not a response cache, or unsupported version: " + Integer.toHexString(magic) + "/" + version);
+        }
+
+        long position = FILE_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= fileSize) {
+            final int length = contents.getInt((int) position);
+            final int checksum = contents.getInt((int) position + 4);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > fileSize) {
+                break;
+            }
+            final ByteBuffer record = slice(contents, position + RECORD_HEADER_SIZE, length);
+            if (checksum(record) != checksum) {
+                break;
+            }
+            final Entry entry = readEntry(record, loaded, position);
+            final Entry replaced = entries.put(entry.key, entry);
+            liveSize += entry.recordSize() - (replaced == null ? 0 : replaced.recordSize());
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        // drop what follows the last complete record, so that records are appended after it
+        size = position;
+        if (size < fileSize) {
+            channel.truncate(size);
+        }
+        capacity = size;
+        tail = loaded;
+
+        dropExpired();
+        if (isMostlyUnused()) {
+            compact();
+        }
+    }
+
+    /**
+     * Drops the responses that can no longer be served nor revalidated, or were not revalidated for too long
+     */
+    private void dropExpired() {
+        final long now = clock.millis();
+        entries.values().removeIf(entry -> {
+            final long retainedUntilMillis = entry.etag == null
+                ? entry.staleUntilMillis
+                : entry.staleUntilMillis + ETAG_RETENTION_MILLIS;
+            final boolean expired = retainedUntilMillis <= now;
+            if (expired) {
+                liveSize -= entry.recordSize();
+            }
+            return expired;
+        });
+    }
+
+    private boolean isMostlyUnused() {
+        return size > MIN_COMPACTION_SIZE && liveSize < (size - FILE_HEADER_SIZE) / 2;
+    }
+
+    /**
+     * Makes room for a record at the end of the file: compacting it if most of it is no longer used, then growing
+     * it by a newly mapped segment if needed
+     * @param recordSize size of the record, with its header
+     * @return false if the file is full
+     */
+    private boolean reserve(final long recordSize) throws IOException {
+        if (size + recordSize > capacity) {
+            dropExpired();
+        }
+        if (isMostlyUnused()) {
+            compact();
+        }
+        if (size + recordSize <= capacity) {
+            return true;
+        }
+        if (size + recordSize > MAX_FILE_SIZE) {
+            return false;
+        }
+
+        // the segment starts at the end of the last record, so that records never span segments
+        final long grown = Math.min(MAX_FILE_SIZE, Math.max(size + recordSize, Math.max(2 * capacity, MIN_GROWTH)));
+        writeFully(ByteBuffer.allocate(1), grown - 1);
+        tail = new Segment(size, channel.map(FileChannel.MapMode.READ_ONLY, size, grown - size));
+        capacity = grown;
+        return true;
+    }
+
+    /**
+     * Copies the live records to a new file, which then replaces the cache file. The previous file stays mapped
+     * until the responses read from it are gone.
+     */
+    private void compact() throws IOException {
+        final Path compacted = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".compact");
+        final FileChannel output = FileChannel.open(compacted, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final FileLock outputLock;
+        final List<Entry> moved = new ArrayList<>(entries.size());
+        try {
+            outputLock = lock(output, compacted);
+            writeFully(output, ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+
+            long position = FILE_HEADER_SIZE;
+            for (final Entry entry : entries.values()) {
+                writeFully(output, entry.record(), position);
+                moved.add(entry.movedTo(position));
+                position += entry.recordSize();
+            }
+            output.force(false);
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            output.close();
+            Files.deleteIfExists(compacted);
+            throw e;
+        }
+
+        final FileChannel previous = channel;
+        channel = output;
+        lock = outputLock;
+        size = output.size();
+        capacity = size;
+        liveSize = size - FILE_HEADER_SIZE;
+        tail = new Segment(0, output.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        for (final Entry entry : moved) {
+            entries.put(entry.key, entry.in(tail));
+        }
+
+        try {
+            previous.close();
+        } catch (IOException e) {
+            // the previous file is no longer used
+        }
+    }
+
+    private static Entry readEntry(
+        final ByteBuffer record,
+        final Segment segment,
+        final long recordOffset
+    ) throws IOException {
+        final ByteBufferInputStream stream = new ByteBufferInputStream(record);
+        final DataInputStream fields = new DataInputStream(stream);
+
+        final String key = fields.readUTF();
+        final int statusCode = fields.readInt();
+        final String etag = fields.readUTF();
+        final long expiresAtMillis = fields.readLong();
+        final long staleUntilMillis = fields.readLong();
+
+        final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        final int headerCount = fields.readInt();
+        for (int i = 0; i < headerCount; i++) {
+            final String name = fields.readUTF();
+            final int valueCount = fields.readInt();
+            final List<String> values = new ArrayList<>(valueCount);
+            for (int j = 0; j < valueCount; j++) {
+                values.add(fields.readUTF());
+            }
+            headers.put(name, values);
+        }
+
+        final int bodyLength = fields.readInt();
+        final long bodyOffset = recordOffset + RECORD_HEADER_SIZE + stream.buffer.position();
+
+        return new Entry(
+            key,
+            statusCode,
+            Collections.unmodifiableMap(headers),
+            etag.isEmpty() ? null : etag,
+            expiresAtMillis,
+            staleUntilMillis,
+            segment,
+            recordOffset,
+            bodyOffset,
+            bodyLength
+        );
+    }
+
+    /**
+     * Appends a response to the file. The record is encoded on the calling thread, so the body is no longer needed
+     * once this returns, and written either on the calling thread or on the thread of the cache.
+     * @param inBackground whether to write the file on the thread of the cache
+     * @return the entry now cached, or null if the file could not be written or is written in the background
+     */
+    private Entry store(
+        final String key,
+        final int statusCode,
+        final Map<String, List<String>> headers,
+        final String etag,
+        final Freshness freshness,
+        final ByteBuffer body,
+        final boolean inBackground
+    ) {
+        final Record record;
+        try {
+            record = new Record(key, statusCode, headers, etag, freshness, body);
+        } catch (IOException | RuntimeException e) {
+            droppedCount.incrementAndGet();
+            return null;
+        }
+
+        if (!inBackground) {
+            return append(record);
+        }
+        try {
+            revalidator().execute(() -> append(record));
+        } catch (RejectedExecutionException e) {
+            // closed
+            droppedCount.incrementAndGet();
+        }
+        return null;
+    }
+
+    /**
+     * Writes a record at the end of the file, growing or compacting it as needed
+     * @return the entry now cached, or null if the file could not be written
+     */
+    private synchronized Entry append(final Record record) {
+        try {
+            if (!reserve(RECORD_HEADER_SIZE + record.size())) {
+                droppedCount.incrementAndGet();
+                return null;
+            }
+            final long recordOffset = size;
+            writeFully(channel, record.header.duplicate(), recordOffset);
+            writeFully(channel, record.contents.duplicate(), recordOffset + RECORD_HEADER_SIZE);
+            size += RECORD_HEADER_SIZE + record.size();
+
+            final Entry entry = new Entry(
+                record.key,
+                record.statusCode,
+                record.headers,
+                record.etag,
+                record.freshness.expiresAtMillis,
+                record.freshness.staleUntilMillis,
+                tail,
+                recordOffset,
+                recordOffset + RECORD_HEADER_SIZE + record.bodyStart,
+                record.bodyLength
+            );
+            final Entry replaced = entries.put(record.key, entry);
+            liveSize += entry.recordSize() - (replaced == null ? 0 : replaced.recordSize());
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            droppedCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Waits for the responses handed to the thread of the cache to be written
+     */
+    void awaitStored() throws InterruptedException, ExecutionException {
+        revalidator().submit(() -> {}).get();
+    }
+
+    private static Map<String, List<String>> copyOf(final Map<String, List<String>> headers) {
+        final Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.forEach((name, values) -> copy.put(name, List.copyOf(values)));
+        return copy;
+    }
+
+    private void writeFully(final ByteBuffer source, final long position) throws IOException {
+        writeFully(channel, source, position);
+    }
+
+    private static void writeFully(final FileChannel target, final ByteBuffer source, final long position) throws IOException {
+        long offset = position;
+        while (source.hasRemaining()) {
+            offset += target.write(source, offset);
+        }
+    }
+
+    /**
+     * @return the body of a cached response, from the segment of the file it was mapped in
+     */
+    private static ByteBuffer body(final Entry entry) {
+        return slice(entry.segment.buffer, entry.bodyOffset - entry.segment.start, entry.bodyLength);
+    }
+
+    private static ByteBuffer slice(final ByteBuffer buffer, final long offset, final int length) {
+        final ByteBuffer slice = buffer.duplicate();
+        slice.position((int) offset).limit((int) offset + length);
+        return slice.slice();
+    }
+
+    private static int checksum(final ByteBuffer record) {
+        final CRC32 crc = new CRC32();
+        crc.update(record.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private synchronized ExecutorService revalidator() {
+        if (revalidator == null) {
+            revalidator = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "api-gateway-response-cache");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return revalidator;
+    }
+
+    /**
+     * Writes the cached responses to disk, and closes the file. Responses already returned remain readable.
+     * Responses still being stored in the background are waited for up to 5 seconds.
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        final ExecutorService background;
+        synchronized (this) {
+            background = revalidator;
+        }
+        if (background != null) {
+            background.shutdown();
+            try {
+                background.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            try {
+                // the room reserved past the last record
+                channel.truncate(size);
+                channel.force(false);
+                lock.release();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * A response encoded as a record of the file, not written yet
+     */
+    private static final class Record {
+
+        final String key;
+        final int statusCode;
+        final Map<String, List<String>> headers;
+        final String etag;
+        final Freshness freshness;
+        final ByteBuffer header;
+        final ByteBuffer contents;
+        final int bodyStart;
+        final int bodyLength;
+
+        Record(
+            final String key,
+            final int statusCode,
+            final Map<String, List<String>> headers,
+            final String etag,
+            final Freshness freshness,
+            final ByteBuffer body
+        ) throws IOException {
+            final Buffer record = new Buffer(256 + body.remaining());
+            final DataOutputStream fields = new DataOutputStream(record);
+            fields.writeUTF(key);
+            fields.writeInt(statusCode);
+            fields.writeUTF(etag == null ? "" : etag);
+            fields.writeLong(freshness.expiresAtMillis);
+            fields.writeLong(freshness.staleUntilMillis);
+            fields.writeInt(headers.size());
+            for (final Map.Entry<String, List<String>> header : headers.entrySet()) {
+                fields.writeUTF(header.getKey());
+                fields.writeInt(header.getValue().size());
+                for (final String value : header.getValue()) {
+                    fields.writeUTF(value);
+                }
+            }
+            fields.writeInt(body.remaining());
+            this.bodyStart = record.size();
+            this.bodyLength = body.remaining();
+            record.write(body.duplicate());
+
+            this.key = key;
+            this.statusCode = statusCode;
+            this.headers = Collections.unmodifiableMap(copyOf(headers));
+            this.etag = etag;
+            this.freshness = freshness;
+            this.contents = record.asByteBuffer();
+            this.header = ByteBuffer.allocate(RECORD_HEADER_SIZE)
+                .putInt(contents.remaining())
+                .putInt(checksum(contents))
+                .flip();
+        }
+
+        int size() {
+            return contents.remaining();
+        }
+    }
+
+    private static final class Freshness {
+
+        final long expiresAtMillis;
+        final long staleUntilMillis;
+
+        Freshness(final long expiresAtMillis, final long staleUntilMillis) {
+            this.expiresAtMillis = expiresAtMillis;
+            this.staleUntilMillis = staleUntilMillis;
+        }
+    }
+
+    /**
+     * A part of the file mapped in memory, from the end of a record on
+     */
+    private static final class Segment {
+
+        final long start;
+        final MappedByteBuffer buffer;
+
+        Segment(final long start, final MappedByteBuffer buffer) {
+            this.start = start;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * A cached response, its body being in the file
+     */
+    static final class Entry {
+
+        final String key;
+        final int statusCode;
+        final Map<String, List<String>> headers;
+        final String etag;
+        final long expiresAtMillis;
+        final long staleUntilMillis;
+        final Segment segment;
+        final long recordOffset;
+        final long bodyOffset;
+        final int bodyLength;
+
+        Entry(
+            final String key,
+            final int statusCode,
+            final Map<String, List<String>> headers,
+            final String etag,
+            final long expiresAtMillis,
+            final long staleUntilMillis,
+            final Segment segment,
+            final long recordOffset,
+            final long bodyOffset,
+            final int bodyLength
+        ) {
+            this.key = key;
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.etag = etag;
+            this.expiresAtMillis = expiresAtMillis;
+            this.staleUntilMillis = staleUntilMillis;
+            this.segment = segment;
+            this.recordOffset = recordOffset;
+            this.bodyOffset = bodyOffset;
+            this.bodyLength = bodyLength;
+        }
+
+        int recordSize() {
+            return (int) (bodyOffset + bodyLength - recordOffset);
+        }
+
+        /**
+         * @return the record of the response, with its header, from the segment it was mapped in
+         */
+        ByteBuffer record() {
+            return slice(segment.buffer, recordOffset - segment.start, recordSize());
+        }
+
+        Entry movedTo(final long offset) {
+            return new Entry(
+                key, statusCode, headers, etag, expiresAtMillis, staleUntilMillis,
+                segment, offset, offset + bodyOffset - recordOffset, bodyLength
+            );
+        }
+
+        Entry in(final Segment mapped) {
+            return new Entry(
+                key, statusCode, headers, etag, expiresAtMillis, staleUntilMillis,
+                mapped, recordOffset, bodyOffset, bodyLength
+            );
+        }
+    }
+}
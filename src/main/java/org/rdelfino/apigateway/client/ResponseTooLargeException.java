@@ -0,0 +1,28 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a response body is larger than the maximum response size, so that it is aborted instead of being
+ * buffered. The body is rejected as soon as its Content-Length, or the bytes received so far, exceed the maximum.
+ */
+public class ResponseTooLargeException extends IOException {
+
+    /**
+     * the maximum response size exceeded
+     */
+    @Getter
+    final long maxResponseSize;
+
+    /**
+     * Creates a ResponseTooLargeException
+     * @param size size of the response body, or bytes received so far
+     * @param maxResponseSize the maximum response size exceeded
+     */
+    public ResponseTooLargeException(final long size, final long maxResponseSize) {
+        super("response body of at least " + size + " bytes exceeds the maximum of " + maxResponseSize);
+        this.maxResponseSize = maxResponseSize;
+    }
+}
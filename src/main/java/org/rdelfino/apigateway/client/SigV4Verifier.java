@@ -0,0 +1,153 @@
+package org.rdelfino.apigateway.client;
+
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.auth.signer.Aws4Signer;
+import software.amazon.awssdk.auth.signer.params.Aws4SignerParams;
+import software.amazon.awssdk.http.SdkHttpFullRequest;
+import software.amazon.awssdk.regions.Region;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Verifies SigV4 signed requests the way API Gateway does, by signing them again with the expected credentials
+ * at the time they claim to have been signed, and comparing both signatures.
+ */
+class SigV4Verifier {
+
+    static final Duration MAX_CLOCK_SKEW = Duration.ofMinutes(5);
+
+    private static final Aws4Signer SIGNER = Aws4Signer.create();
+
+    private static final DateTimeFormatter AMZ_DATE =
+        DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private static final Set<String> ADDED_BY_SIGNER = Set.of("host", "x-amz-date", "x-amz-security-token");
+
+    final AwsCredentialsProvider credentialsProvider;
+    final Region region;
+    final Clock clock;
+
+    SigV4Verifier(final AwsCredentialsProvider credentialsProvider, final Region region, final Clock clock) {
+        this.credentialsProvider = credentialsProvider;
+        this.region = region;
+        this.clock = clock;
+    }
+
+    /**
+     * Verifies the signature of a request
+     * @param request the received request, with host and port taken from its Host header
+     * @param body the received body
+     * @return null if the signature is valid, otherwise the message API Gateway would respond with
+     */
+    String verify(final SdkHttpFullRequest request, final byte[] body) {
+        final String authorization = request.firstMatchingHeader("Authorization").orElse(null);
+        if (authorization == null || !authorization.startsWith("AWS4-HMAC-SHA256 ")) {
+            return "Missing Authentication Token";
+        }
+
+        final String credential = field(authorization, "Credential");
+        final String signedHeaders = field(authorization, "SignedHeaders");
+        final String signature = field(authorization, "Signature");
+        final String amzDate = request.firstMatchingHeader("X-Amz-Date").orElse(null);
+
+        if (credential == null || signedHeaders == null || signature == null || amzDate == null) {
+            return "Authorization header requires 'Credential', 'SignedHeaders' and 'Signature', and X-Amz-Date is required";
+        }
+
+        final String[] scope = credential.split("/");
+        if (scope.length != 5) {
+            return "Credential should be scoped to a valid region, not '" + credential + "'";
+        }
+
+        final AwsCredentials credentials = credentialsProvider.resolveCredentials();
+        if (!credentials.accessKeyId().equals(scope[0])) {
+            return "The security token included in the request is invalid.";
+        }
+        if (!region.id().equals(scope[2])) {
+            return "Credential should be scoped to a valid region, not '" + scope[2] + "'";
+        }
+        if (!"execute-api".equals(scope[3])) {
+            return "Credential should be scoped to correct service: 'execute-api'";
+        }
+
+        final Instant signedAt;
+        try {
+            signedAt = AMZ_DATE.parse(amzDate, Instant::from);
+        } catch (DateTimeParseException e) {
+            return "Invalid X-Amz-Date: " + amzDate;
+        }
+
+        if (Duration.between(signedAt, clock.instant()).abs().compareTo(MAX_CLOCK_SKEW) > 0) {
+            return "Signature expired: " + amzDate + " is now earlier than the allowed clock skew";
+        }
+
+        final Set<String> signed = new HashSet<>(Arrays.asList(signedHeaders.split(";")));
+
+        final SdkHttpFullRequest.Builder unsigned = request.toBuilder()
+            .clearHeaders()
+            .contentStreamProvider(() -> new ByteArrayInputStream(body));
+
+        request.headers().forEach((name, values) -> {
+            final String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            if (signed.contains(lowerCaseName) && !ADDED_BY_SIGNER.contains(lowerCaseName)) {
+                unsigned.putHeader(name, values);
+            }
+        });
+
+        if (credentials instanceof AwsSessionCredentials &&
+            !request.firstMatchingHeader("X-Amz-Security-Token")
+                .map(((AwsSessionCredentials) credentials).sessionToken()::equals)
+                .orElse(false)
+        ) {
+            return "The security token included in the request is invalid.";
+        }
+
+        final SdkHttpFullRequest expected = SIGNER.sign(
+            unsigned.build(),
+            Aws4SignerParams.builder()
+                .signingName("execute-api")
+                .signingRegion(region)
+                .awsCredentials(credentials)
+                .signingClockOverride(Clock.fixed(signedAt, ZoneOffset.UTC))
+            .build()
+        );
+
+        final String expectedAuthorization = expected.firstMatchingHeader("Authorization").orElse("");
+
+        if (!MessageDigest.isEqual(
+            signature.getBytes(),
+            String.valueOf(field(expectedAuthorization, "Signature")).getBytes()
+        )) {
+            return "The request signature we calculated does not match the signature you provided.";
+        }
+
+        if (!signedHeaders.equals(field(expectedAuthorization, "SignedHeaders"))) {
+            return "The request signature we calculated does not match the signature you provided.";
+        }
+
+        return null;
+    }
+
+    private static String field(final String authorization, final String name) {
+        final int start = authorization.indexOf(name + "=");
+        if (start < 0) {
+            return null;
+        }
+        final int valueStart = start + name.length() + 1;
+        final int end = authorization.indexOf(',', valueStart);
+        return authorization.substring(valueStart, end < 0 ? authorization.length() : end).trim();
+    }
+}
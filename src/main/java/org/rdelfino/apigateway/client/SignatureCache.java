@@ -0,0 +1,199 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.NonNull;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.http.SdkHttpFullRequest;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of signed bodiless requests, keyed by their canonical form.
+ *
+ * <p>A signed request stays valid for API Gateway while its X-Amz-Date is within the SigV4 clock skew allowance
+ * of 5 minutes, so identical requests may reuse it for a while instead of being hashed and signed again.
+ * Entries are discarded once older than the configured time to live, or when the credentials resolved for
+ * the request no longer match the credentials used to sign the entry.</p>
+ */
+class SignatureCache {
+
+    /**
+     * Longest time to live allowed, kept well inside the 5 minutes SigV4 clock skew allowance
+     */
+    static final Duration MAX_TIME_TO_LIVE = Duration.ofMinutes(4);
+
+    static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    final long timeToLiveMillis;
+    final int maxEntries;
+    final Clock clock;
+
+    final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    SignatureCache(final @NonNull Duration timeToLive, final int maxEntries, final @NonNull Clock clock) {
+        if (timeToLive.isNegative() || timeToLive.isZero() || timeToLive.compareTo(MAX_TIME_TO_LIVE) > 0) {
+            throw new IllegalArgumentException(
+                "signature cache time to live must be positive and at most " + MAX_TIME_TO_LIVE + ": " + timeToLive
+            );
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("signature cache size must be positive: " + maxEntries);
+        }
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * Tells whether the signature of a request may be reused
+     * @param method HTTP method
+     * @param hasPayload whether the request has a payload
+     * @return true for bodiless GET and HEAD requests
+     */
+    static boolean isCacheable(final String method, final boolean hasPayload) {
+        return !hasPayload && ("GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method));
+    }
+
+    /**
+     * Builds the canonical key of a request, independent of the order of its headers and query parameters
+     */
+    static String key(
+        final String method,
+        final String host,
+        final int port,
+        final String path,
+        final Map<String, List<String>> queryParameters,
+        final Map<String, List<String>> headers
+    ) {
+        final StringBuilder key = new StringBuilder(128)
+            .append(method.toUpperCase(Locale.ROOT)).append(' ')
+            .append(host).append(':').append(port)
+            .append(path).append('?');
+
+        for (final Map.Entry<String, List<String>> parameter : sorted(queryParameters, null)) {
+            key.append(parameter.getKey()).append('=');
+            appendValues(key, parameter.getValue());
+            key.append('&');
+        }
+
+        key.append('\n');
+
+        for (final Map.Entry<String, List<String>> header : sorted(headers, String.CASE_INSENSITIVE_ORDER)) {
+            key.append(header.getKey().toLowerCase(Locale.ROOT)).append(':');
+            appendValues(key, header.getValue());
+            key.append('\n');
+        }
+
+        return key.toString();
+    }
+
+    // maps of a single entry, the most common, need no sorting
+    private static Iterable<Map.Entry<String, List<String>>> sorted(
+        final Map<String, List<String>> map,
+        final Comparator<String> order
+    ) {
+        if (map.size() <= 1) {
+            return map.entrySet();
+        }
+        final Map<String, List<String>> sortedMap = new TreeMap<>(order);
+        sortedMap.putAll(map);
+        return sortedMap.entrySet();
+    }
+
+    private static void appendValues(final StringBuilder key, final List<String> values) {
+        key.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                key.append(", ");
+            }
+            key.append(values.get(i));
+        }
+        key.append(']');
+    }
+
+    /**
+     * Obtains a cached signed request
+     * @param key canonical key of the request
+     * @param credentials credentials currently resolved for the request
+     * @return the cached signed request, or null if absent, expired, or signed with other credentials
+     */
+    SdkHttpFullRequest get(final String key, final AwsCredentials credentials) {
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (clock.millis() >= entry.expiresAtMillis || !sameCredentials(entry.credentials, credentials)) {
+            entries.remove(key, entry);
+            return null;
+        }
+
+        return entry.signedRequest;
+    }
+
+    /**
+     * Caches a signed request
+     * @param key canonical key of the request
+     * @param credentials credentials used to sign the request
+     * @param signedRequest the signed request
+     */
+    void put(final String key, final AwsCredentials credentials, final SdkHttpFullRequest signedRequest) {
+        final long now = clock.millis();
+
+        if (entries.size() >= maxEntries) {
+            entries.values().removeIf(entry -> now >= entry.expiresAtMillis);
+            if (entries.size() >= maxEntries) {
+                entries.clear();
+            }
+        }
+
+        entries.put(key, new Entry(signedRequest, credentials, now + timeToLiveMillis));
+    }
+
+    /**
+     * Discards every cached signed request
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return true if both credentials have the same access key, secret and session token
+     */
+    static boolean sameCredentials(final AwsCredentials a, final AwsCredentials b) {
+        if (a == b) {
+            return true;
+        }
+
+        // anonymous credentials have neither
+        return Objects.equals(a.accessKeyId(), b.accessKeyId()) &&
+            Objects.equals(a.secretAccessKey(), b.secretAccessKey()) &&
+            Objects.equals(sessionToken(a), sessionToken(b));
+    }
+
+    private static String sessionToken(final AwsCredentials credentials) {
+        return credentials instanceof AwsSessionCredentials ?
+            ((AwsSessionCredentials) credentials).sessionToken() : null;
+    }
+
+    private static class Entry {
+
+        final SdkHttpFullRequest signedRequest;
+        final AwsCredentials credentials;
+        final long expiresAtMillis;
+
+        Entry(final SdkHttpFullRequest signedRequest, final AwsCredentials credentials, final long expiresAtMillis) {
+            this.signedRequest = signedRequest;
+            this.credentials = credentials;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -3,39 +3,29 @@ package org.rdelfino.apigateway.client;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
-import software.amazon.awssdk.auth.signer.Aws4Signer;
-import software.amazon.awssdk.auth.signer.internal.SignerConstant;
 import software.amazon.awssdk.auth.signer.params.Aws4SignerParams;
-import software.amazon.awssdk.auth.signer.params.SignerChecksumParams;
-import software.amazon.awssdk.core.checksums.Algorithm;
 import software.amazon.awssdk.http.ContentStreamProvider;
 import software.amazon.awssdk.http.SdkHttpFullRequest;
 import software.amazon.awssdk.http.SdkHttpMethod;
 import software.amazon.awssdk.regions.Region;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 /**
  * Factory for creating signed requests for the ApiGatewayClient
  */
-@Builder
-@RequiredArgsConstructor
 class SignedRequestFactory {
 
-    private static final Aws4Signer SIGNER = Aws4Signer.create();
+    private static final PayloadSigner SIGNER = new PayloadSigner();
 
-    private static final SignerChecksumParams SIGNER_CHECKSUM_PARAMS =
-        SignerChecksumParams.builder()
-            .algorithm(Algorithm.SHA256)
-            .isStreamingRequest(false)
-            .checksumHeaderName(SignerConstant.X_AMZ_CONTENT_SHA256)
-        .build();
+    private static final byte[] EMPTY_SHA256 = PayloadSource.newSha256().digest();
 
     @Getter
     final @NonNull Region signingRegion;
@@ -43,18 +33,193 @@ class SignedRequestFactory {
     @Getter
     final @NonNull AwsCredentialsProvider credentialsProvider;
 
+    @Getter
+    final @NonNull Clock clock;
+
+    final SignatureCache signatureCache;
+
+    final PayloadHashCache payloadHashCache;
+
+    final SigningContextCache signingContexts;
+
+    // signing parameters of the credentials last returned by the provider, rebuilt when they change
+    private volatile Aws4SignerParams signerParams;
+
+    SignedRequestFactory(
+        final @NonNull Region signingRegion,
+        final @NonNull AwsCredentialsProvider credentialsProvider
+    ) {
+        this(signingRegion, credentialsProvider, null, null, null, null, null, null);
+    }
+
+    /**
+     * Creates a SignedRequestFactory
+     * @param signingRegion region used to sign requests
+     * @param credentialsProvider provider of the credentials used to sign requests
+     * @param signatureCacheTtl enables reuse of the signature of identical bodiless GET and HEAD requests
+     *                          for this long, at most 4 minutes, unless traced. Disabled when null
+     * @param signatureCacheSize maximum number of cached signatures, defaults to 1024
+     * @param payloadHashCacheSize enables reuse of the SHA-256 of byte-identical payloads of up to 1 MiB,
+     *                             remembering this many payloads. Disabled when null
+     * @param clock clock used as signing time, defaults to the system UTC clock
+     * @param maxSigningContexts maximum number of signing contexts of requests whose signing parameters are kept,
+     *                           defaults to 1024
+     * @param signingContextTtl time the signing parameters of an unused signing context are kept,
+     *                          defaults to 15 minutes
+     */
+    @Builder
+    SignedRequestFactory(
+        final @NonNull Region signingRegion,
+        final @NonNull AwsCredentialsProvider credentialsProvider,
+        final Duration signatureCacheTtl,
+        final Integer signatureCacheSize,
+        final Integer payloadHashCacheSize,
+        final Clock clock,
+        final Integer maxSigningContexts,
+        final Duration signingContextTtl
+    ) {
+        this.signingRegion = signingRegion;
+        this.credentialsProvider = credentialsProvider;
+        this.clock = clock == null ? Clock.systemUTC() : clock;
+        this.signatureCache = signatureCacheTtl == null ? null :
+            new SignatureCache(
+                signatureCacheTtl,
+                signatureCacheSize == null ? SignatureCache.DEFAULT_MAX_ENTRIES : signatureCacheSize,
+                this.clock
+            );
+        this.payloadHashCache = payloadHashCacheSize == null ? null :
+            new PayloadHashCache(payloadHashCacheSize, PayloadHashCache.DEFAULT_MAX_PAYLOAD_SIZE);
+        this.signingContexts = new SigningContextCache(
+            maxSigningContexts == null ? SigningContextCache.DEFAULT_MAX_ENTRIES : maxSigningContexts,
+            signingContextTtl == null ? SigningContextCache.DEFAULT_TIME_TO_LIVE : signingContextTtl,
+            this.clock
+        );
+    }
+
+    /**
+     * Discards the signing parameters of the last credentials, of every signing context, and the cached signatures,
+     * so that the next request resolves credentials again and is signed from scratch
+     */
+    void invalidate() {
+        signerParams = null;
+        signingContexts.clear();
+        if (signatureCache != null) {
+            signatureCache.clear();
+        }
+    }
+
     /**
      * Create a signed request for the given ApiGatewayRequest.
      * @param apiGatewayRequest ApiGatewayRequest
      * @return signed SdkHttpFullRequest instance
      */
     SdkHttpFullRequest create(ApiGatewayRequest apiGatewayRequest) {
+        return create(apiGatewayRequest, Span.NOOP);
+    }
+
+    /**
+     * Create a signed request for the given ApiGatewayRequest, reporting the credentials and signing stages
+     * to a span, and adding its propagation headers.
+     * @param apiGatewayRequest ApiGatewayRequest
+     * @param span span of the invocation
+     * @return signed SdkHttpFullRequest instance
+     */
+    SdkHttpFullRequest create(ApiGatewayRequest apiGatewayRequest, Span span) {
+
+        final PayloadSource payload = apiGatewayRequest.getPayloadSource();
+
+        final Map<String, String> propagationHeaders = span.propagationHeaders();
+        final Map<String, List<String>> headers = finalHeaders(apiGatewayRequest, payload, propagationHeaders);
 
-        final Buffer payloadBuffer = Optional.ofNullable(apiGatewayRequest.getPayload())
-                .map(Buffer::from)
-                .orElse(null);
+        final boolean timed = span.isRecording();
+        final long credentialsStart = timed ? System.nanoTime() : 0;
+        final Object credentialsEvent = FlightRecorderEvents.beginCredentials();
+        final SigningContext context = apiGatewayRequest.getSigningContext();
+        final AwsCredentialsProvider provider = context == null ? credentialsProvider : context.getCredentialsProvider();
+        final AwsCredentials credentials = provider.resolveCredentials();
+        Aws4SignerParams params = context == null ? signerParams : signingContexts.get(context);
+        // compared by value: providers such as the environment variables one build new credentials on every call
+        if (params == null || !SignatureCache.sameCredentials(params.awsCredentials(), credentials)) {
+            params = Aws4SignerParams.builder()
+                .signingName("execute-api")
+                .signingRegion(context == null || context.getRegion() == null ? signingRegion : context.getRegion())
+                .awsCredentials(credentials)
+                .signingClockOverride(clock)
+            .build();
+            if (context == null) {
+                signerParams = params;
+            } else {
+                signingContexts.put(context, params);
+            }
+            FlightRecorderEvents.credentialsRefresh(credentialsEvent, provider, credentials);
+        }
+        final long signingStart = timed ? System.nanoTime() : 0;
+
+        if (timed) {
+            span.stage(Span.Stage.CREDENTIALS, credentialsStart, signingStart);
+        }
 
-        final ContentStreamProvider contentStreamProvider = payloadBuffer == null ? null : payloadBuffer::asInputStream;
+        // propagation headers differ on every invocation, signatures of requests carrying them are never reused
+        final SdkHttpFullRequest signed = propagationHeaders.isEmpty()
+            ? create(apiGatewayRequest, payload, headers, params)
+            : sign(apiGatewayRequest, payload, headers, params);
+
+        if (timed) {
+            span.stage(Span.Stage.SIGNING, signingStart, System.nanoTime());
+        }
+
+        return signed;
+    }
+
+    private SdkHttpFullRequest create(
+        final ApiGatewayRequest apiGatewayRequest,
+        final PayloadSource payload,
+        final Map<String, List<String>> headers,
+        final Aws4SignerParams params
+    ) {
+        if (signatureCache == null || !SignatureCache.isCacheable(apiGatewayRequest.getMethod(), payload != null)) {
+            return sign(apiGatewayRequest, payload, headers, params);
+        }
+
+        final String canonical = SignatureCache.key(
+            apiGatewayRequest.getMethod(),
+            apiGatewayRequest.getHost(),
+            apiGatewayRequest.getPort(),
+            apiGatewayRequest.getPath(),
+            nonNull(apiGatewayRequest.getQueryParameters()),
+            headers
+        );
+        // signatures of the same credentials for another region differ
+        final String key = signingRegion.equals(params.signingRegion())
+            ? canonical
+            : params.signingRegion().id() + ' ' + canonical;
+
+        final SdkHttpFullRequest cached = signatureCache.get(key, params.awsCredentials());
+        if (cached != null) {
+            return cached;
+        }
+
+        final SdkHttpFullRequest signed = sign(apiGatewayRequest, null, headers, params);
+        signatureCache.put(key, params.awsCredentials(), signed);
+        return signed;
+    }
+
+    /**
+     * Discards every cached signature, if signature caching is enabled
+     */
+    void clearSignatureCache() {
+        if (signatureCache != null) {
+            signatureCache.clear();
+        }
+    }
+
+    private SdkHttpFullRequest sign(
+        final ApiGatewayRequest apiGatewayRequest,
+        final PayloadSource payload,
+        final Map<String, List<String>> headers,
+        final Aws4SignerParams params
+    ) {
+        final ContentStreamProvider contentStreamProvider = payload == null ? null : payload::newInputStream;
 
         final SdkHttpFullRequest.Builder builder = SdkHttpFullRequest.builder()
                 .protocol("https")
@@ -63,32 +228,38 @@ class SignedRequestFactory {
                 .port(apiGatewayRequest.getPort())
                 .encodedPath(apiGatewayRequest.getPath())
                 .contentStreamProvider(contentStreamProvider)
-                .headers(
-                    finalHeaders(apiGatewayRequest, payloadBuffer)
-                )
+                .headers(headers)
                 .rawQueryParameters(
                     nonNull(apiGatewayRequest.getQueryParameters())
                 );
 
-        return SIGNER.sign(
-            builder.build(),
-            Aws4SignerParams.builder()
-                .signingName("execute-api")
-                .signingRegion(signingRegion)
-                .awsCredentials(credentialsProvider.resolveCredentials())
-                .checksumParams(SIGNER_CHECKSUM_PARAMS)
-            .build()
-        );
+        return SIGNER.sign(builder, params, sha256(payload));
+    }
+
+    private byte[] sha256(final PayloadSource payload) {
+        if (payload == null) {
+            return EMPTY_SHA256;
+        }
+        return payloadHashCache == null ? payload.sha256() : payloadHashCache.sha256(payload);
     }
 
     private Map<String, List<String>> finalHeaders(
         final ApiGatewayRequest apiGatewayRequest,
-        final Buffer payloadBuffer
+        final PayloadSource payload,
+        final Map<String, String> propagationHeaders
     ) {
         final Map<String, List<String>> result = new HashMap<>(nonNull(apiGatewayRequest.getHeaders()));
 
-        if (payloadBuffer != null) {
-            result.put("Content-Length", List.of(String.valueOf(payloadBuffer.size())));
+        if (!propagationHeaders.isEmpty()) {
+            propagationHeaders.forEach((name, value) -> {
+                if (result.keySet().stream().noneMatch(name::equalsIgnoreCase)) {
+                    result.put(name, List.of(value));
+                }
+            });
+        }
+
+        if (payload != null) {
+            result.put("Content-Length", List.of(String.valueOf(payload.size())));
         }
 
         final String apiKey = apiGatewayRequest.getApiKey();
@@ -99,15 +270,7 @@ class SignedRequestFactory {
         return result;
     }
 
-    private ContentStreamProvider contentProvider(final ApiGatewayRequest parameters) {
-        return Optional.ofNullable(parameters.getPayload())
-                .map(Buffer::from)
-                .map(buffer->(ContentStreamProvider)buffer::asInputStream)
-                .orElse(null);
-    }
-
-    private Map<String, List<String>> nonNull(final Map<String, List<String>> map) {
-        return Optional.ofNullable(map)
-            .orElseGet(Collections::emptyMap);
+    private static Map<String, List<String>> nonNull(final Map<String, List<String>> map) {
+        return map == null ? Collections.emptyMap() : map;
     }
 }
@@ -4,8 +4,11 @@ import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.http.SdkHttpResponse;
 import software.amazon.awssdk.regions.Region;
 
+import java.time.Instant;
+
 @AllArgsConstructor(access = AccessLevel.PACKAGE)
 class SignedRequestsHandler {
 
@@ -26,4 +29,69 @@ class SignedRequestsHandler {
     public AwsCredentialsProvider getCredentialsProvider() {
         return signedRequestFactory.getCredentialsProvider();
     }
+
+    /**
+     * Registers the hooks run before a checkpoint and after a restore of the JVM, if it supports them
+     * @param warmUp what to prepare before a checkpoint, only classes are loaded when null
+     * @param resetConnections drops the connections opened before the checkpoint, run after a restore
+     * @return the registered resource, to be referenced by the client, or null
+     */
+    Object registerCheckpointHooks(final WarmUpPlan warmUp, final Runnable resetConnections) {
+        return CheckpointHooks.register(() -> beforeCheckpoint(warmUp), () -> afterRestore(resetConnections));
+    }
+
+    void beforeCheckpoint(final WarmUpPlan warmUp) {
+        new WarmUp(warmUp == null ? WarmUpPlan.builder().build() : warmUp).prepare(signedRequestFactory);
+        // credentials and the signatures derived from them are not worth keeping in the snapshot
+        signedRequestFactory.invalidate();
+    }
+
+    void afterRestore(final Runnable resetConnections) {
+        signedRequestFactory.invalidate();
+        resetConnections.run();
+    }
+
+    /**
+     * Tells whether a request is no longer worth sending
+     * @param apiGatewayRequest the request
+     * @return true if the deadline of the request has passed
+     */
+    static boolean isPastDeadline(final ApiGatewayRequest apiGatewayRequest) {
+        return apiGatewayRequest.getDeadline() != null && !Instant.now().isBefore(apiGatewayRequest.getDeadline());
+    }
+
+    /**
+     * Opens the span of an invocation, reporting the serialization of its payload
+     * @param tracer the tracer of the client
+     * @param apiGatewayRequest the request
+     * @return the span
+     */
+    static Span startSpan(final Tracer tracer, final ApiGatewayRequest apiGatewayRequest) {
+        final Span span = FlightRecorderEvents.invocationSpan(tracer.startSpan(apiGatewayRequest), apiGatewayRequest);
+        final PayloadSource payload = apiGatewayRequest.getPayloadSource();
+        if (span.isRecording() && payload != null && payload.isSerialized()) {
+            span.stage(Span.Stage.SERIALIZATION, payload.serializationStartNanos(), payload.serializationEndNanos());
+        }
+        return span;
+    }
+
+    /**
+     * @param response the response headers
+     * @return the Content-Length of a response, or -1 if unknown
+     */
+    static long contentLength(final SdkHttpResponse response) {
+        final String contentLength = response.firstMatchingHeader("Content-Length").orElse(null);
+        return contentLength == null ? -1 : Long.parseLong(contentLength);
+    }
+
+    /**
+     * Attaches the ids API Gateway assigned to a request to its span
+     * @param span the span
+     * @param response the response headers
+     */
+    static void responseAttributes(final Span span, final SdkHttpResponse response) {
+        response.firstMatchingHeader("x-amzn-RequestId").ifPresent(id -> span.attribute(Span.REQUEST_ID, id));
+        response.firstMatchingHeader("x-amz-apigw-id").ifPresent(id -> span.attribute(Span.EXTENDED_REQUEST_ID, id));
+        response.firstMatchingHeader("X-Amzn-Trace-Id").ifPresent(id -> span.attribute(Span.XRAY_TRACE_ID, id));
+    }
 }
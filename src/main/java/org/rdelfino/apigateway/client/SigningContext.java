@@ -0,0 +1,108 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * Credentials provider and region a request is signed with, instead of the ones of the client.
+ *
+ * <p>Lets a single client, and its connection pool, serve many tenants, each with its own credentials such as
+ * an assumed role. The signing state derived for a context is kept by the client in a bounded cache, discarded
+ * once unused for a while, so contexts are cheap to create: two contexts with the same credentials provider
+ * instance, region and tenant id share that state.</p>
+ *
+ * <p>The tenant id is a stable identity of the tenant, such as the ARN of the role it assumes. Response caches
+ * keep the responses of each tenant id apart, and never serve requests of a context without one, since the
+ * credentials of a tenant rotate and cannot identify it.</p>
+ *
+ * Example:
+ * <pre>
+ *
+ *     ApiGatewayRequest request = ApiGatewayRequest.builder(host, "/orders")
+ *         .setSigningContext(SigningContext.of(tenantRoleArn, tenantCredentialsProvider))
+ *         .build();
+ *
+ * </pre>
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class SigningContext {
+
+    /**
+     * stable identity of the tenant, such as the ARN of the role it assumes, or null
+     */
+    final String tenantId;
+
+    /**
+     * provider of the credentials the request is signed with
+     */
+    final AwsCredentialsProvider credentialsProvider;
+
+    /**
+     * region the request is signed for, or null for the one of the client
+     */
+    final Region region;
+
+    private SigningContext(
+        final String tenantId,
+        final AwsCredentialsProvider credentialsProvider,
+        final Region region
+    ) {
+        this.tenantId = tenantId;
+        this.credentialsProvider = credentialsProvider;
+        this.region = region;
+    }
+
+    /**
+     * Creates a SigningContext without a tenant id, signing for the region of the client. Its requests are never
+     * served from a response cache.
+     * @param credentialsProvider provider of the credentials to sign with
+     * @return newly created SigningContext
+     */
+    public static SigningContext of(final @NonNull AwsCredentialsProvider credentialsProvider) {
+        return new SigningContext(null, credentialsProvider, null);
+    }
+
+    /**
+     * Creates a SigningContext without a tenant id. Its requests are never served from a response cache.
+     * @param credentialsProvider provider of the credentials to sign with
+     * @param region region to sign for, or null for the one of the client
+     * @return newly created SigningContext
+     */
+    public static SigningContext of(final @NonNull AwsCredentialsProvider credentialsProvider, final Region region) {
+        return new SigningContext(null, credentialsProvider, region);
+    }
+
+    /**
+     * Creates a SigningContext signing for the region of the client
+     * @param tenantId stable identity of the tenant, such as the ARN of the role it assumes
+     * @param credentialsProvider provider of the credentials to sign with
+     * @return newly created SigningContext
+     */
+    public static SigningContext of(
+        final @NonNull String tenantId,
+        final @NonNull AwsCredentialsProvider credentialsProvider
+    ) {
+        return new SigningContext(tenantId, credentialsProvider, null);
+    }
+
+    /**
+     * Creates a SigningContext
+     * @param tenantId stable identity of the tenant, such as the ARN of the role it assumes
+     * @param credentialsProvider provider of the credentials to sign with
+     * @param region region to sign for, or null for the one of the client
+     * @return newly created SigningContext
+     */
+    public static SigningContext of(
+        final @NonNull String tenantId,
+        final @NonNull AwsCredentialsProvider credentialsProvider,
+        final Region region
+    ) {
+        return new SigningContext(tenantId, credentialsProvider, region);
+    }
+}
@@ -0,0 +1,115 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.NonNull;
+import software.amazon.awssdk.auth.signer.params.Aws4SignerParams;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Signing parameters of the signing contexts of requests, one entry per context.
+ *
+ * <p>Entries unused for longer than the time to live are discarded when looked up or when other entries are
+ * added, and the least recently used entry is evicted once the cache is full, so the memory held for tenants
+ * that stopped sending requests is bounded however many of them a client served.</p>
+ */
+class SigningContextCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(15);
+
+    final int maxEntries;
+    final long timeToLiveMillis;
+    final Clock clock;
+
+    final Map<SigningContext, CachedParams> entries;
+
+    SigningContextCache(final int maxEntries, final @NonNull Duration timeToLive, final @NonNull Clock clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("signing context cache size must be positive: " + maxEntries);
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("signing context time to live must be positive: " + timeToLive);
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<SigningContext, CachedParams> eldest) {
+                return size() > SigningContextCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Obtains the signing parameters of a context, renewing its time to live
+     * @param context the signing context
+     * @return the signing parameters last put for the context, or null if absent or expired
+     */
+    Aws4SignerParams get(final SigningContext context) {
+        final long now = clock.millis();
+        synchronized (entries) {
+            final CachedParams entry = entries.get(context);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.lastUsedMillis >= timeToLiveMillis) {
+                entries.remove(context);
+                return null;
+            }
+            entry.lastUsedMillis = now;
+            return entry.signerParams;
+        }
+    }
+
+    /**
+     * Caches the signing parameters of a context
+     * @param context the signing context
+     * @param signerParams its signing parameters
+     */
+    void put(final SigningContext context, final Aws4SignerParams signerParams) {
+        final long now = clock.millis();
+        synchronized (entries) {
+            // least recently used first: drops the expired entries, stopping at the first live one
+            final Iterator<CachedParams> eldest = entries.values().iterator();
+            while (eldest.hasNext() && now - eldest.next().lastUsedMillis >= timeToLiveMillis) {
+                eldest.remove();
+            }
+            entries.put(context, new CachedParams(signerParams, now));
+        }
+    }
+
+    /**
+     * @return number of cached contexts
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Discards every cached context
+     */
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private static class CachedParams {
+
+        final Aws4SignerParams signerParams;
+        long lastUsedMillis;
+
+        CachedParams(final Aws4SignerParams signerParams, final long lastUsedMillis) {
+            this.signerParams = signerParams;
+            this.lastUsedMillis = lastUsedMillis;
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package org.rdelfino.apigateway.client;
 
 import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -12,7 +14,19 @@ import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.ToString;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Getter
 @Builder
@@ -21,40 +35,122 @@ import java.io.InputStream;
 @AllArgsConstructor
 class SimpleApiGatewayResponse implements ApiGatewayResponse {
 
+    private static final ByteBuffer EMPTY_BODY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    private static final Object TREE_NODE = new Object();
+    private static final Object NULL = new Object();
+
     ObjectMapper objectMapper;
 
     final String statusText;
     final int statusCode;
     final boolean successful;
-    final InputStream bodyContent;
+    @Builder.Default
+    final Map<String, List<String>> headers = Collections.emptyMap();
+
+    /**
+     * the response body
+     */
+    @Builder.Default
+    final ByteBuffer body = EMPTY_BODY;
+
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    final Closeable bodyResources;
+
+    /**
+     * objects already parsed from the body, by JavaType, or TREE_NODE for the TreeNode
+     */
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Builder.Default
+    final Map<Object, Object> parsed = new ConcurrentHashMap<>();
+
+    @Override
+    public ByteBuffer getBody() {
+        return body.asReadOnlyBuffer();
+    }
+
+    @Override
+    public InputStream getBodyContent() {
+        return new ByteBufferInputStream(getBody());
+    }
 
     @Override
-    @SneakyThrows
     public TreeNode readTreeNode() {
-        return objectMapper.readTree(getBodyContent());
+        return parse(TREE_NODE);
     }
 
     @Override
-    @SneakyThrows
     public <Payload> Payload readOject(final @NonNull Class<Payload> payloadClass) {
-        return objectMapper.readValue(getBodyContent(), payloadClass);
+        return parse(objectMapper.constructType(payloadClass));
     }
 
     @Override
-    @SneakyThrows
     public <Payload> Payload readOject(final @NonNull TypeReference<Payload> typeReference){
-        return objectMapper.readValue(getBodyContent(), typeReference);
+        return parse(objectMapper.getTypeFactory().constructType(typeReference));
     }
 
     @Override
-    @SneakyThrows
     public <Payload> Payload readOject(final @NonNull JavaType valueType){
-        return objectMapper.readValue(getBodyContent(), valueType);
+        return parse(valueType);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <Payload> Payload parse(final Object key) {
+        final Object value = parsed.computeIfAbsent(key, this::doParse);
+        return value == NULL ? null : (Payload) value;
+    }
+
+    @SneakyThrows
+    private Object doParse(final Object key) {
+        final Object value = key == TREE_NODE
+            ? objectMapper.readTree(getBodyContent())
+            : objectMapper.readValue(getBodyContent(), (JavaType) key);
+        return value == null ? NULL : value;
+    }
+
+    @Override
+    public <Payload> Stream<Payload> readObjects(final @NonNull Class<Payload> elementClass) {
+        return readObjects(objectMapper.constructType(elementClass));
+    }
+
+    @Override
+    @SneakyThrows
+    public <Payload> Stream<Payload> readObjects(final @NonNull JavaType elementType) {
+        final MappingIterator<Payload> iterator = objectMapper.readerFor(elementType).readValues(getBodyContent());
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED),
+                false
+            )
+            .onClose(() -> closeQuietly(iterator));
+    }
+
+    private static void closeQuietly(final MappingIterator<?> iterator) {
+        try {
+            iterator.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
     }
 
     @Override
     public ApiGatewayResponse setObjectMapper(final @NonNull ObjectMapper mapper) {
         this.objectMapper = mapper;
+        parsed.clear();
         return this;
     }
+
+    @Override
+    public void close() {
+        if (bodyResources != null) {
+            try {
+                bodyResources.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 }
@@ -0,0 +1,111 @@
+package org.rdelfino.apigateway.client;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Span of an invocation, opened by a {@link Tracer}.
+ *
+ * <p>The client reports how long every stage of the invocation took, attaches the metadata of the response, and
+ * ends the span when the response body has been received or the invocation failed. Times are System.nanoTime()
+ * values. Stages are only timed when the span is recording. Decoding the response happens when the caller reads
+ * it, after the span has ended.</p>
+ */
+public interface Span {
+
+    /**
+     * Span recording nothing
+     */
+    Span NOOP = new Span() {
+        @Override
+        public boolean isRecording() {
+            return false;
+        }
+    };
+
+    /**
+     * Stages of an invocation, in the order they happen
+     */
+    enum Stage {
+        /**
+         * serializing the JSON payload, when the request was built
+         */
+        SERIALIZATION,
+        /**
+         * waiting for a permit of the concurrency limiter
+         */
+        QUEUE,
+        /**
+         * resolving the credentials
+         */
+        CREDENTIALS,
+        /**
+         * hashing the payload and signing the request
+         */
+        SIGNING,
+        /**
+         * sending the request until the first byte of the response, its headers, is received
+         */
+        SEND,
+        /**
+         * receiving the response body
+         */
+        RECEIVE
+    }
+
+    /**
+     * Name of the attribute holding the request id assigned by API Gateway
+     */
+    String REQUEST_ID = "aws.request_id";
+
+    /**
+     * Name of the attribute holding the extended request id assigned by API Gateway
+     */
+    String EXTENDED_REQUEST_ID = "aws.apigateway.extended_request_id";
+
+    /**
+     * Name of the attribute holding the X-Ray trace header returned by API Gateway
+     */
+    String XRAY_TRACE_ID = "aws.xray.trace_id";
+
+    /**
+     * @return false if the span records nothing, so that stages need not be timed
+     */
+    default boolean isRecording() {
+        return true;
+    }
+
+    /**
+     * Headers propagating the trace to API Gateway, such as traceparent and X-Amzn-Trace-Id,
+     * added to the request unless already present
+     * @return the headers, by name
+     */
+    default Map<String, String> propagationHeaders() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Reports a stage of the invocation
+     * @param stage the stage
+     * @param startNanos System.nanoTime() when the stage started
+     * @param endNanos System.nanoTime() when the stage ended
+     */
+    default void stage(Stage stage, long startNanos, long endNanos) {
+    }
+
+    /**
+     * Attaches metadata to the span
+     * @param name name of the attribute
+     * @param value value of the attribute
+     */
+    default void attribute(String name, String value) {
+    }
+
+    /**
+     * Ends the span
+     * @param response the response, or null if the invocation failed
+     * @param failure why the invocation failed, or null
+     */
+    default void end(ApiGatewayResponse response, Throwable failure) {
+    }
+}
@@ -0,0 +1,228 @@
+package org.rdelfino.apigateway.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffer kept in memory until it grows beyond a threshold, and spilled to a temporary file afterwards.
+ *
+ * <p>Spilled contents are read back through a read-only memory mapping of the file, and the file is deleted
+ * when the buffer is closed. Buffers never closed have their file deleted once garbage collected instead.
+ * File.deleteOnExit is not used: it remembers every path until the JVM exits, growing without bound in a
+ * long-running process that spills often.</p>
+ */
+class SpillableBuffer extends OutputStream implements Closeable {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    final long threshold;
+    final Path directory;
+    final long maxSize;
+
+    private Buffer memory;
+
+    private Path file;
+    private FileChannel channel;
+    private long size;
+
+    private ByteBuffer mapped;
+
+    private Cleaner.Cleanable cleanable;
+
+    /**
+     * Creates a buffer
+     * @param initialSize initial size of the in memory buffer
+     * @param threshold size beyond which the contents are spilled to a temporary file
+     * @param directory directory of the temporary file, or null for the default temporary-file directory
+     */
+    SpillableBuffer(final int initialSize, final long threshold, final Path directory) {
+        this(initialSize, threshold, directory, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a buffer rejecting contents beyond a maximum size
+     * @param initialSize initial size of the in memory buffer
+     * @param threshold size beyond which the contents are spilled to a temporary file
+     * @param directory directory of the temporary file, or null for the default temporary-file directory
+     * @param maxSize size beyond which writes fail with a ResponseTooLargeException
+     */
+    SpillableBuffer(final int initialSize, final long threshold, final Path directory, final long maxSize) {
+        this.memory = new Buffer(initialSize);
+        this.threshold = threshold;
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return true if the contents were spilled to a temporary file
+     */
+    boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * @return number of bytes written
+     */
+    long size() {
+        return memory != null ? memory.size() : size;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        write(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * Writes the remaining contents of a ByteBuffer, leaving its position untouched
+     * @param source ByteBuffer to write
+     * @throws ResponseTooLargeException if the contents would grow beyond the maximum size
+     * @throws IOException if the contents cannot be spilled to the temporary file
+     */
+    void write(final ByteBuffer source) throws IOException {
+        final int length = source.remaining();
+
+        if (size() + (long) length > maxSize) {
+            throw new ResponseTooLargeException(size() + (long) length, maxSize);
+        }
+
+        if (memory != null && memory.size() + (long) length > threshold) {
+            spill();
+        }
+
+        if (memory != null) {
+            if (source.hasArray()) {
+                memory.write(source.array(), source.arrayOffset() + source.position(), length);
+            } else {
+                memory.write(source);
+            }
+            return;
+        }
+
+        final ByteBuffer bytes = source.duplicate();
+        while (bytes.hasRemaining()) {
+            size += channel.write(bytes);
+        }
+    }
+
+    /**
+     * Transfers the contents of an InputStream into this buffer
+     * @param inputStream the InputStream to transfer from
+     * @throws IOException if the InputStream cannot be read or the contents cannot be spilled
+     */
+    void transferFrom(final InputStream inputStream) throws IOException {
+        inputStream.transferTo(this);
+    }
+
+    /**
+     * @return this buffer contents as a read-only ByteBuffer, memory-mapped when spilled
+     * @throws IOException if the temporary file cannot be mapped
+     */
+    ByteBuffer asByteBuffer() throws IOException {
+        if (memory != null) {
+            return memory.asByteBuffer().asReadOnlyBuffer();
+        }
+
+        if (mapped == null) {
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("response body too large to be mapped: " + size + " bytes");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return mapped.duplicate();
+    }
+
+    /**
+     * @return this buffer contents as an InputStream, reading from a memory mapping when spilled
+     * @throws IOException if the temporary file cannot be read
+     */
+    InputStream asInputStream() throws IOException {
+        if (memory != null) {
+            return memory.asInputStream();
+        }
+        if (size > Integer.MAX_VALUE) {
+            return Files.newInputStream(file);
+        }
+        return new ByteBufferInputStream(asByteBuffer());
+    }
+
+    /**
+     * Deletes the temporary file, if any
+     */
+    @Override
+    public void close() throws IOException {
+        mapped = null;
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            try {
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            } finally {
+                if (cleanable != null) {
+                    // already closed and deleted: only unregisters it
+                    cleanable.clean();
+                }
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        file = directory == null ?
+            Files.createTempFile("api-gateway-response", ".body") :
+            Files.createTempFile(directory, "api-gateway-response", ".body");
+
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        cleanable = CLEANER.register(this, new TemporaryFile(file, channel));
+
+        final ByteBuffer contents = memory.asByteBuffer();
+        memory = null;
+
+        while (contents.hasRemaining()) {
+            size += channel.write(contents);
+        }
+    }
+
+    /**
+     * Closes and deletes the temporary file of a buffer, referencing neither the buffer nor its mapping
+     */
+    private static class TemporaryFile implements Runnable {
+
+        final Path file;
+        final FileChannel channel;
+
+        TemporaryFile(final Path file, final FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // deleted anyway
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+    }
+}
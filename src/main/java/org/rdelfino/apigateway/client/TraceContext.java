@@ -0,0 +1,118 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Trace and span ids in the formats understood by API Gateway, to help {@link Span} implementations produce
+ * their propagation headers: W3C traceparent, and AWS X-Ray X-Amzn-Trace-Id.
+ *
+ * <p>Trace ids start with the epoch second they were created at, as X-Ray requires, so that the same id is
+ * valid in both formats.</p>
+ */
+@Value
+public class TraceContext {
+
+    /**
+     * W3C trace context header
+     */
+    public static final String TRACEPARENT = "traceparent";
+
+    /**
+     * AWS X-Ray trace header
+     */
+    public static final String X_AMZN_TRACE_ID = "X-Amzn-Trace-Id";
+
+    /**
+     * trace id, 32 lowercase hex digits
+     */
+    String traceId;
+
+    /**
+     * id of the span, 16 lowercase hex digits
+     */
+    String spanId;
+
+    /**
+     * whether the trace is sampled
+     */
+    boolean sampled;
+
+    /**
+     * Starts a new trace
+     * @param sampled whether the trace is sampled
+     * @return context of the root span of the new trace
+     */
+    public static TraceContext newTrace(final boolean sampled) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final String traceId = String.format(
+            "%08x%08x%016x",
+            System.currentTimeMillis() / 1000,
+            random.nextInt(),
+            random.nextLong()
+        );
+        return new TraceContext(traceId, newSpanId(), sampled);
+    }
+
+    /**
+     * Parses a W3C traceparent header
+     * @param traceparent the header value
+     * @return the context it carries, or null if it is not valid
+     */
+    public static TraceContext fromTraceparent(final @NonNull String traceparent) {
+        final String[] fields = traceparent.trim().split("-");
+        if (fields.length < 4 || fields[1].length() != 32 || fields[2].length() != 16 || fields[3].length() != 2) {
+            return null;
+        }
+        try {
+            return new TraceContext(fields[1], fields[2], (Integer.parseInt(fields[3], 16) & 1) == 1);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return context of a new span of the same trace
+     */
+    public TraceContext newChild() {
+        return new TraceContext(traceId, newSpanId(), sampled);
+    }
+
+    /**
+     * @return this context as a W3C traceparent header value
+     */
+    public String toTraceparent() {
+        return "00-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+    }
+
+    /**
+     * @return this context as an AWS X-Ray X-Amzn-Trace-Id header value
+     */
+    public String toXrayTraceId() {
+        return "Root=1-" + traceId.substring(0, 8) + "-" + traceId.substring(8) +
+            ";Parent=" + spanId +
+            ";Sampled=" + (sampled ? "1" : "0");
+    }
+
+    /**
+     * @return traceparent and X-Amzn-Trace-Id headers carrying this context
+     */
+    public Map<String, String> toHeaders() {
+        final Map<String, String> headers = new LinkedHashMap<>(2);
+        headers.put(TRACEPARENT, toTraceparent());
+        headers.put(X_AMZN_TRACE_ID, toXrayTraceId());
+        return headers;
+    }
+
+    private static String newSpanId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return String.format("%016x", id);
+    }
+}
@@ -0,0 +1,33 @@
+package org.rdelfino.apigateway.client;
+
+/**
+ * Tracing SPI of the clients: opens a {@link Span} for every invocation.
+ *
+ * <p>Implementations adapt the clients to a tracing library, typically opening spans as children of the current
+ * context of the calling thread. The default tracer, {@link #NOOP}, opens no span at all and costs nothing.</p>
+ *
+ * Example:
+ * <pre>
+ *
+ *     ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+ *         .httpClient(httpClient)
+ *         .tracer(request -&gt; new MySpan(request))
+ *         .build();
+ *
+ * </pre>
+ */
+@FunctionalInterface
+public interface Tracer {
+
+    /**
+     * Tracer opening no span
+     */
+    Tracer NOOP = request -> Span.NOOP;
+
+    /**
+     * Opens the span of an invocation
+     * @param request the request being invoked
+     * @return the span, ended once the invocation completes
+     */
+    Span startSpan(ApiGatewayRequest request);
+}
@@ -0,0 +1,173 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Value;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary format of traffic logs.
+ *
+ * <p>A log starts with the magic number and format version, followed by records appended one after the other.
+ * Every record is prefixed by its length, so a log cut short by a crash is read up to its last complete
+ * record. Strings are written in modified UTF-8, as DataOutputStream does.</p>
+ */
+class TrafficLog {
+
+    static final int MAGIC = 0x41475754; // "AGWT"
+    static final int VERSION = 1;
+
+    static final int FAILED = -1;
+
+    private TrafficLog() {
+    }
+
+    /**
+     * A recorded call
+     */
+    @Value
+    static class Entry {
+        long startEpochMicros;
+        long durationNanos;
+        int statusCode;
+        long responseSize;
+        String method;
+        String host;
+        int port;
+        String path;
+        Map<String, List<String>> queryParameters;
+        Map<String, List<String>> headers;
+        boolean apiKey;
+        byte[] payload;
+    }
+
+    static void writeHeader(final DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+    }
+
+    static void readHeader(final DataInputStream input) throws IOException {
+        final int magic = input.readInt();
+        final int version = input.readInt();
+        if (magic != MAGIC || version != VERSION) {
+            throw new IOException("not a traffic log, or unsupported version: " + Integer.toHexString(magic) + "/" + version);
+        }
+    }
+
+    /**
+     * Appends a record
+     * @param output the log
+     * @param entry the record
+     * @throws IOException if the log cannot be written
+     */
+    static void write(final DataOutputStream output, final Entry entry) throws IOException {
+        final Buffer record = new Buffer(256 + (entry.getPayload() == null ? 0 : entry.getPayload().length));
+        writeFields(new DataOutputStream(record), entry);
+        output.writeInt(record.size());
+        record.writeTo(output);
+    }
+
+    private static void writeFields(final DataOutputStream output, final Entry entry) throws IOException {
+        output.writeLong(entry.getStartEpochMicros());
+        output.writeLong(entry.getDurationNanos());
+        output.writeInt(entry.getStatusCode());
+        output.writeLong(entry.getResponseSize());
+        output.writeUTF(entry.getMethod());
+        output.writeUTF(entry.getHost());
+        output.writeInt(entry.getPort());
+        output.writeUTF(entry.getPath());
+        writeMultiMap(output, entry.getQueryParameters());
+        writeMultiMap(output, entry.getHeaders());
+        output.writeBoolean(entry.isApiKey());
+        if (entry.getPayload() == null) {
+            output.writeInt(-1);
+        } else {
+            output.writeInt(entry.getPayload().length);
+            output.write(entry.getPayload());
+        }
+    }
+
+    /**
+     * Reads the next record
+     * @param input log positioned at the start of a record
+     * @return the record, or null at the end of the log or of its last complete record
+     * @throws IOException if the log cannot be read
+     */
+    static Entry read(final DataInputStream input) throws IOException {
+        final int length;
+        try {
+            length = input.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+
+        final byte[] record = new byte[length];
+        try {
+            input.readFully(record);
+        } catch (EOFException e) {
+            return null;
+        }
+
+        final DataInputStream fields = new DataInputStream(new ByteArrayInputStream(record));
+
+        final long startEpochMicros = fields.readLong();
+        final long durationNanos = fields.readLong();
+        final int statusCode = fields.readInt();
+        final long responseSize = fields.readLong();
+        final String method = fields.readUTF();
+        final String host = fields.readUTF();
+        final int port = fields.readInt();
+        final String path = fields.readUTF();
+        final Map<String, List<String>> queryParameters = readMultiMap(fields);
+        final Map<String, List<String>> headers = readMultiMap(fields);
+        final boolean apiKey = fields.readBoolean();
+        final int payloadLength = fields.readInt();
+        byte[] payload = null;
+        if (payloadLength >= 0) {
+            payload = new byte[payloadLength];
+            fields.readFully(payload);
+        }
+
+        return new Entry(
+            startEpochMicros, durationNanos, statusCode, responseSize,
+            method, host, port, path, queryParameters, headers, apiKey, payload
+        );
+    }
+
+    private static void writeMultiMap(final DataOutputStream output, final Map<String, List<String>> map) throws IOException {
+        output.writeInt(map.size());
+        for (final Map.Entry<String, List<String>> entry : map.entrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeInt(entry.getValue().size());
+            for (final String value : entry.getValue()) {
+                output.writeUTF(value);
+            }
+        }
+    }
+
+    private static Map<String, List<String>> readMultiMap(final DataInputStream input) throws IOException {
+        final int size = input.readInt();
+        if (size == 0) {
+            return Collections.emptyMap();
+        }
+        final Map<String, List<String>> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            final String name = input.readUTF();
+            final int count = input.readInt();
+            final List<String> values = new ArrayList<>(count);
+            for (int j = 0; j < count; j++) {
+                values.add(input.readUTF());
+            }
+            map.put(name, values);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,243 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Records the calls made by a client to an append-only binary log, to be replayed by {@link TrafficReplayer}.
+ *
+ * <p>Every call is recorded with its method, host, port, path, query parameters, headers, and optionally its
+ * payload, along with its start time, duration, response status and response size. API keys are never recorded,
+ * only whether the request had one. Records are encoded on the calling thread and appended through a buffer, so
+ * they reach the file when the buffer fills, on {@link #flush()}, and on {@link #close()}.</p>
+ *
+ * <p>Logs are meant to be moved around for offline replay, so headers likely to carry secrets are left out of
+ * them: Authorization, Proxy-Authorization, Cookie, X-Amz-Security-Token, and every header whose name contains
+ * token, secret, password, credential, session, auth, cookie, api-key, api_key or apikey, or signature. Query
+ * parameters matching the same names, such as the X-Amz-Signature and X-Amz-Credential of presigned URLs or an
+ * access_token, are left out as well. Headers and query parameters known to be harmless despite their name can be
+ * recorded anyway by listing them as allowed headers.</p>
+ *
+ * Example:
+ * <pre>
+ *
+ *     try (TrafficRecorder recorder = TrafficRecorder.open(Path.of("traffic.log"), true)) {
+ *         ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+ *             .httpClient(httpClient)
+ *             .trafficRecorder(recorder)
+ *             .build();
+ *         ...
+ *     }
+ *
+ * </pre>
+ */
+public class TrafficRecorder implements AutoCloseable {
+
+    static final Set<String> SENSITIVE_HEADERS = Set.of(
+        "authorization", "proxy-authorization", "cookie", "x-amz-security-token"
+    );
+
+    static final List<String> SENSITIVE_HEADER_PARTS = List.of(
+        "token", "secret", "password", "credential", "session", "auth", "cookie", "api-key", "api_key", "apikey", "signature"
+    );
+
+    final Path file;
+    final boolean recordPayloads;
+
+    /**
+     * lower case names of the headers recorded even though their name looks sensitive
+     */
+    final Set<String> allowedHeaders;
+
+    private final DataOutputStream output;
+
+    private final long baseEpochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    private final long baseNanos = System.nanoTime();
+
+    /**
+     * number of calls recorded
+     */
+    @Getter
+    final AtomicLong recordedCount = new AtomicLong();
+
+    /**
+     * number of calls that could not be recorded because the log could not be written
+     */
+    @Getter
+    final AtomicLong droppedCount = new AtomicLong();
+
+    private TrafficRecorder(
+        final Path file,
+        final boolean recordPayloads,
+        final Collection<String> allowedHeaders
+    ) throws IOException {
+        this.file = file;
+        this.recordPayloads = recordPayloads;
+        this.allowedHeaders = allowedHeaders.stream()
+            .map(name -> name.toLowerCase(Locale.ROOT))
+            .collect(Collectors.toUnmodifiableSet());
+
+        final boolean empty = !Files.exists(file) || Files.size(file) == 0;
+
+        this.output = new DataOutputStream(
+            new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                64 * 1024
+            )
+        );
+
+        if (empty) {
+            TrafficLog.writeHeader(output);
+        }
+    }
+
+    /**
+     * Opens a log for appending, creating it if needed
+     * @param file the log
+     * @param recordPayloads whether to record request payloads
+     * @return newly created TrafficRecorder
+     * @throws IOException if the log cannot be opened
+     */
+    public static TrafficRecorder open(final @NonNull Path file, final boolean recordPayloads) throws IOException {
+        return new TrafficRecorder(file, recordPayloads, Set.of());
+    }
+
+    /**
+     * Opens a log for appending, creating it if needed, recording some headers left out by default
+     * @param file the log
+     * @param recordPayloads whether to record request payloads
+     * @param allowedHeaders names of headers and query parameters to record even though their name looks sensitive,
+     *                       in any case
+     * @return newly created TrafficRecorder
+     * @throws IOException if the log cannot be opened
+     */
+    public static TrafficRecorder open(
+        final @NonNull Path file,
+        final boolean recordPayloads,
+        final @NonNull Collection<String> allowedHeaders
+    ) throws IOException {
+        return new TrafficRecorder(file, recordPayloads, allowedHeaders);
+    }
+
+    /**
+     * Records a call
+     * @param request the request
+     * @param startNanos System.nanoTime() when the call started
+     * @param statusCode status code of the response, or TrafficLog.FAILED if the call failed
+     * @param responseSize size of the response body
+     */
+    void record(
+        final ApiGatewayRequest request,
+        final long startNanos,
+        final int statusCode,
+        final long responseSize
+    ) {
+        final long durationNanos = System.nanoTime() - startNanos;
+
+        final TrafficLog.Entry entry = new TrafficLog.Entry(
+            baseEpochMicros + TimeUnit.NANOSECONDS.toMicros(startNanos - baseNanos),
+            durationNanos,
+            statusCode,
+            responseSize,
+            request.getMethod(),
+            request.getHost(),
+            request.getPort(),
+            request.getPath(),
+            recorded(request.getQueryParameters()),
+            recorded(request.getHeaders()),
+            request.getApiKey() != null,
+            recordPayloads ? payload(request.getPayloadSource()) : null
+        );
+
+        try {
+            synchronized (output) {
+                TrafficLog.write(output, entry);
+            }
+            recordedCount.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Writes the buffered records to the log
+     * @throws IOException if the log cannot be written
+     */
+    public void flush() throws IOException {
+        synchronized (output) {
+            output.flush();
+        }
+    }
+
+    /**
+     * Writes the buffered records to the log, and closes it
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (output) {
+            output.close();
+        }
+    }
+
+    /**
+     * Tells whether a header or query parameter is left out of the log
+     * @param name header or query parameter name
+     * @return true if it may carry a secret and was not allowed
+     */
+    boolean isRedacted(final String name) {
+        final String lowerCase = name.toLowerCase(Locale.ROOT);
+        if (allowedHeaders.contains(lowerCase)) {
+            return false;
+        }
+        if (SENSITIVE_HEADERS.contains(lowerCase)) {
+            return true;
+        }
+        for (final String part : SENSITIVE_HEADER_PARTS) {
+            if (lowerCase.contains(part)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, List<String>> recorded(final Map<String, List<String>> parameters) {
+        if (parameters == null || parameters.keySet().stream().noneMatch(this::isRedacted)) {
+            return parameters;
+        }
+        final Map<String, List<String>> recorded = new LinkedHashMap<>();
+        parameters.forEach((name, values) -> {
+            if (!isRedacted(name)) {
+                recorded.put(name, values);
+            }
+        });
+        return recorded;
+    }
+
+    private static byte[] payload(final PayloadSource payloadSource) {
+        if (payloadSource == null) {
+            return null;
+        }
+        final ByteBuffer contents = payloadSource.asByteBuffer();
+        final byte[] bytes = new byte[contents.remaining()];
+        contents.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,370 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays a log written by {@link TrafficRecorder} through an {@link ApiGatewayAsyncClient}, sending every call
+ * at the same offset from the start of the replay as it had from the start of the recording, divided by the speedup.
+ *
+ * <p>Calls are sent whether or not the previous ones have completed, so the replay reproduces the recorded rate
+ * rather than the recorded concurrency. Calls recorded with an API key are replayed with the configured one,
+ * since keys are not recorded; calls recorded without their payloads are replayed with empty ones.</p>
+ *
+ * <p>The log is read as the replay goes, and every call is scheduled at most a second before it is due, so logs of
+ * any length are replayed in bounded memory. Since records are appended as calls complete, calls are put back in
+ * the order they started within a window of 1024 records; a call completed further than that after calls started
+ * later is sent as soon as it is read.</p>
+ *
+ * Example:
+ * <pre>
+ *
+ *     TrafficReplayer.Report report = TrafficReplayer.builder()
+ *             .client(client)
+ *             .log(Path.of("traffic.log"))
+ *             .host("localhost")
+ *             .port(8080)
+ *             .speedup(10)
+ *         .build()
+ *         .replay()
+ *         .join();
+ *
+ * </pre>
+ */
+public class TrafficReplayer {
+
+    // calls are sent in the order they started within this many records of the log
+    static final int REORDER_BUFFER_SIZE = 1024;
+
+    // calls are scheduled at most this long before they are due
+    private static final long SCHEDULE_AHEAD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    final ApiGatewayAsyncClient client;
+    final Path log;
+    final double speedup;
+    final String host;
+    final Integer port;
+    final String apiKey;
+
+    /**
+     * Creates a TrafficReplayer
+     * @param client client sending the calls
+     * @param log log written by a TrafficRecorder
+     * @param speedup how many times faster than recorded to send the calls, defaults to 1
+     * @param host host to send the calls to instead of the recorded one
+     * @param port port to send the calls to instead of the recorded one
+     * @param apiKey API key of the calls that were recorded with one
+     */
+    @Builder
+    TrafficReplayer(
+        final @NonNull ApiGatewayAsyncClient client,
+        final @NonNull Path log,
+        final Double speedup,
+        final String host,
+        final Integer port,
+        final String apiKey
+    ) {
+        if (speedup != null && !(speedup > 0)) {
+            throw new IllegalArgumentException("speedup must be positive: " + speedup);
+        }
+        this.client = client;
+        this.log = log;
+        this.speedup = speedup == null ? 1 : speedup;
+        this.host = host;
+        this.port = port;
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Outcome of a replay
+     */
+    @Value
+    public static class Report {
+
+        /**
+         * number of calls sent
+         */
+        long sentCount;
+
+        /**
+         * number of calls that failed without a response
+         */
+        long failedCount;
+
+        /**
+         * number of responses by status code
+         */
+        Map<Integer, Long> statusCodes;
+
+        /**
+         * time from the first call sent to the last response received
+         */
+        Duration elapsed;
+
+        /**
+         * largest delay between the time a call was due and the time it was sent
+         */
+        Duration maxSendLag;
+    }
+
+    /**
+     * Replays the log
+     * @return future completed with a report once every call has completed, or exceptionally if the log could not
+     * be read to its end
+     * @throws IOException if the log cannot be opened
+     */
+    public CompletableFuture<Report> replay() throws IOException {
+        final EntryReader reader = new EntryReader(log);
+
+        final TrafficLog.Entry first;
+        try {
+            first = reader.next();
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+
+        if (first == null) {
+            reader.close();
+            return CompletableFuture.completedFuture(
+                new Report(0, 0, Collections.emptyMap(), Duration.ZERO, Duration.ZERO)
+            );
+        }
+
+        return new Replay(reader, first).start();
+    }
+
+    /**
+     * Reads the calls of the log
+     * @return the calls, in the order they started
+     * @throws IOException if the log cannot be read
+     */
+    List<TrafficLog.Entry> readEntries() throws IOException {
+        final List<TrafficLog.Entry> entries = new ArrayList<>();
+        try (EntryReader reader = new EntryReader(log)) {
+            for (TrafficLog.Entry entry = reader.next(); entry != null; entry = reader.next()) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Computes when to send a call
+     * @param firstEpochMicros start of the first call of the log
+     * @param entry the call
+     * @return offset from the start of the replay the call is sent at, in nanoseconds
+     */
+    long delayNanos(final long firstEpochMicros, final TrafficLog.Entry entry) {
+        final long offsetMicros = entry.getStartEpochMicros() - firstEpochMicros;
+        return (long) (TimeUnit.MICROSECONDS.toNanos(offsetMicros) / speedup);
+    }
+
+    /**
+     * A replay in progress: the log is read on the thread of the replay, as its calls come within the schedule window
+     */
+    private class Replay {
+
+        final EntryReader reader;
+        final long firstEpochMicros;
+
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "traffic-replayer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final Map<Integer, AtomicLong> statusCodes = new ConcurrentHashMap<>();
+        final AtomicLong sentCount = new AtomicLong();
+        final AtomicLong failedCount = new AtomicLong();
+        final AtomicLong maxSendLagNanos = new AtomicLong();
+
+        // calls scheduled and not completed yet, plus one while the log is being read
+        final AtomicLong pending = new AtomicLong(1);
+
+        final CompletableFuture<Report> report = new CompletableFuture<>();
+
+        // accessed by the thread of the replay only
+        TrafficLog.Entry next;
+        long startNanos;
+
+        Replay(final EntryReader reader, final TrafficLog.Entry first) {
+            this.reader = reader;
+            this.firstEpochMicros = first.getStartEpochMicros();
+            this.next = first;
+        }
+
+        CompletableFuture<Report> start() {
+            startNanos = System.nanoTime();
+            scheduler.execute(this::read);
+            return report;
+        }
+
+        /**
+         * Schedules the calls due within the schedule window, then waits for the next one to come within it
+         */
+        private void read() {
+            try {
+                final long horizonNanos = System.nanoTime() - startNanos + SCHEDULE_AHEAD_NANOS;
+                while (next != null) {
+                    final long delayNanos = delayNanos(firstEpochMicros, next);
+                    if (delayNanos > horizonNanos) {
+                        scheduler.schedule(this::read, delayNanos - horizonNanos, TimeUnit.NANOSECONDS);
+                        return;
+                    }
+                    schedule(next, delayNanos);
+                    next = reader.next();
+                }
+                reader.close();
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(reader);
+                scheduler.shutdownNow();
+                report.completeExceptionally(e);
+                return;
+            }
+            completed();
+        }
+
+        private void schedule(final TrafficLog.Entry entry, final long delayNanos) {
+            pending.incrementAndGet();
+            sentCount.incrementAndGet();
+
+            scheduler.schedule(
+                () -> {
+                    maxSendLagNanos.accumulateAndGet(System.nanoTime() - startNanos - delayNanos, Math::max);
+                    try {
+                        client.invoke(toRequest(entry)).whenComplete((response, failure) -> {
+                            if (failure == null) {
+                                response.close();
+                                statusCodes.computeIfAbsent(response.getStatusCode(), status -> new AtomicLong())
+                                    .incrementAndGet();
+                            } else {
+                                failedCount.incrementAndGet();
+                            }
+                            completed();
+                        });
+                    } catch (RuntimeException e) {
+                        failedCount.incrementAndGet();
+                        completed();
+                    }
+                },
+                delayNanos - (System.nanoTime() - startNanos),
+                TimeUnit.NANOSECONDS
+            );
+        }
+
+        private void completed() {
+            if (pending.decrementAndGet() != 0) {
+                return;
+            }
+            scheduler.shutdown();
+
+            final Map<Integer, Long> counts = new TreeMap<>();
+            statusCodes.forEach((status, count) -> counts.put(status, count.get()));
+
+            report.complete(new Report(
+                sentCount.get(),
+                failedCount.get(),
+                Collections.unmodifiableMap(counts),
+                Duration.ofNanos(System.nanoTime() - startNanos),
+                Duration.ofNanos(Math.max(0, maxSendLagNanos.get()))
+            ));
+        }
+    }
+
+    /**
+     * Reads the calls of a log in the order they started, as far as a buffer of {@link #REORDER_BUFFER_SIZE}
+     * records allows: records are appended as calls complete, not as they start
+     */
+    private static final class EntryReader implements Closeable {
+
+        final DataInputStream input;
+        final PriorityQueue<TrafficLog.Entry> buffer = new PriorityQueue<>(
+            REORDER_BUFFER_SIZE,
+            Comparator.comparingLong(TrafficLog.Entry::getStartEpochMicros)
+        );
+        boolean exhausted;
+
+        EntryReader(final Path log) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(log), 64 * 1024));
+            try {
+                TrafficLog.readHeader(input);
+            } catch (IOException | RuntimeException e) {
+                input.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return the next call, or null once every call was read
+         */
+        TrafficLog.Entry next() throws IOException {
+            while (!exhausted && buffer.size() < REORDER_BUFFER_SIZE) {
+                final TrafficLog.Entry entry = TrafficLog.read(input);
+                if (entry == null) {
+                    exhausted = true;
+                } else {
+                    buffer.add(entry);
+                }
+            }
+            return buffer.poll();
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing left to read
+        }
+    }
+
+    private ApiGatewayRequest toRequest(final TrafficLog.Entry entry) {
+        final ApiGatewayRequest.Builder builder = ApiGatewayRequest.builder(
+                host == null ? entry.getHost() : host,
+                entry.getPath()
+            )
+            .setMethod(entry.getMethod())
+            .setPort(port == null ? entry.getPort() : port)
+            .setQueryParameters(entry.getQueryParameters())
+            .setHeaders(entry.getHeaders());
+
+        if (entry.isApiKey() && apiKey != null) {
+            builder.setApiKey(apiKey);
+        }
+
+        if (entry.getPayload() != null) {
+            builder.setPayloadSource(PayloadSource.of(ByteBuffer.wrap(entry.getPayload())));
+        }
+
+        return builder.build();
+    }
+}
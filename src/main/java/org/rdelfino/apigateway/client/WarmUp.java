@@ -0,0 +1,130 @@
+package org.rdelfino.apigateway.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Runs the stages of a warm-up and collects their durations and failures
+ */
+class WarmUp {
+
+    private static final byte[] SAMPLE_BODY = "[{\"warm\":\"up\"}]".getBytes(StandardCharsets.UTF_8);
+
+    final WarmUpPlan plan;
+    final ObjectMapper mapper;
+
+    final Map<WarmUpReport.Stage, Duration> stageDurations = Collections.synchronizedMap(new EnumMap<>(WarmUpReport.Stage.class));
+    final List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+    WarmUp(final WarmUpPlan plan) {
+        this.plan = plan;
+        this.mapper = plan.getMapper() == null ? ApiGatewayRequest.defaultMapper() : plan.getMapper();
+    }
+
+    /**
+     * Runs the stages that do not send requests
+     * @param signedRequestFactory factory used to sign the requests of the plan
+     */
+    void prepare(final SignedRequestFactory signedRequestFactory) {
+
+        run(WarmUpReport.Stage.CLASS_LOADING, this::loadClasses);
+
+        run(WarmUpReport.Stage.SERIALIZERS, () -> {
+            for (final Class<?> payloadType : plan.getPayloadTypes()) {
+                attempt(() -> {
+                    mapper.writerFor(payloadType);
+                    mapper.readerFor(payloadType);
+                });
+            }
+        });
+
+        run(WarmUpReport.Stage.CREDENTIALS, () ->
+            attempt(() -> signedRequestFactory.getCredentialsProvider().resolveCredentials())
+        );
+
+        run(WarmUpReport.Stage.SIGNING, () -> {
+            for (final ApiGatewayRequest request : plan.getRequests()) {
+                attempt(() -> signedRequestFactory.create(request));
+            }
+        });
+    }
+
+    /**
+     * @return nanoTime at which a stage starts
+     */
+    long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a stage
+     * @param stage the stage
+     * @param startNanos nanoTime at which the stage started
+     */
+    void end(final WarmUpReport.Stage stage, final long startNanos) {
+        stageDurations.put(stage, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    void failed(final Throwable failure) {
+        failures.add(failure);
+    }
+
+    WarmUpReport report() {
+        synchronized (stageDurations) {
+            return new WarmUpReport(
+                Collections.unmodifiableMap(new EnumMap<>(stageDurations)),
+                List.copyOf(failures)
+            );
+        }
+    }
+
+    private void run(final WarmUpReport.Stage stage, final Runnable work) {
+        final long start = start();
+        work.run();
+        end(stage, start);
+    }
+
+    private void attempt(final Runnable work) {
+        try {
+            work.run();
+        } catch (RuntimeException e) {
+            failed(e);
+        }
+    }
+
+    private void loadClasses() {
+        attempt(() -> {
+            PayloadSource.of(ByteBuffer.wrap(SAMPLE_BODY)).sha256();
+
+            final SpillableBuffer body = ResponseBodyStorage.IN_MEMORY.newBuffer(SAMPLE_BODY.length);
+            try (body) {
+                body.write(ByteBuffer.wrap(SAMPLE_BODY));
+
+                final ApiGatewayResponse response = SimpleApiGatewayResponse.builder()
+                        .objectMapper(mapper)
+                        .statusCode(200)
+                        .successful(true)
+                        .body(body.asByteBuffer())
+                        .bodyResources(body)
+                    .build();
+
+                try (Stream<JsonNode> elements = response.readObjects(JsonNode.class)) {
+                    elements.forEach(element -> element.get("warm"));
+                }
+            } catch (IOException e) {
+                failed(e);
+            }
+        });
+    }
+}
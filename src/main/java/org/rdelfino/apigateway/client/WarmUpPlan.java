@@ -0,0 +1,55 @@
+package org.rdelfino.apigateway.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Describes the work a client should do ahead of its first user-facing request.
+ *
+ * Example:
+ * <pre>
+ *
+ *     WarmUpReport report = client.warmUp(
+ *         WarmUpPlan.builder()
+ *             .request(ApiGatewayRequest.builder("api.example.com", "/v1/health").build())
+ *             .payloadType(Item.class)
+ *             .payloadType(ItemList.class)
+ *             .openConnections(true)
+ *             .build()
+ *     );
+ *
+ * </pre>
+ */
+@Value
+@Builder
+public class WarmUpPlan {
+
+    /**
+     * Requests shaped like those the application will send. They are signed, to resolve credentials and derive
+     * signing keys, and are only sent when openConnections is set.
+     */
+    @Singular
+    List<ApiGatewayRequest> requests;
+
+    /**
+     * Types of the payloads the application will send and receive, for which JSON serializers and deserializers
+     * are built ahead of time
+     */
+    @Singular
+    List<Class<?>> payloadTypes;
+
+    /**
+     * ObjectMapper used for the payload types, defaults to the default ObjectMapper of the requests
+     */
+    ObjectMapper mapper;
+
+    /**
+     * Whether to send the requests, opening connections and completing TLS handshakes with their hosts.
+     * The requests should then be idempotent, such as GET requests to a health check resource.
+     */
+    boolean openConnections;
+}
@@ -0,0 +1,58 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a warm-up: how long each stage took, and what failed along the way.
+ * Warm-up failures are reported rather than thrown, so that they never prevent an application from starting.
+ */
+@Value
+public class WarmUpReport {
+
+    /**
+     * Stages of a warm-up, in the order they run
+     */
+    public enum Stage {
+        /**
+         * loading the classes of the request and response paths
+         */
+        CLASS_LOADING,
+        /**
+         * building JSON serializers and deserializers for the payload types
+         */
+        SERIALIZERS,
+        /**
+         * resolving credentials
+         */
+        CREDENTIALS,
+        /**
+         * signing the requests, deriving the signing keys
+         */
+        SIGNING,
+        /**
+         * sending the requests, opening connections to their hosts
+         */
+        CONNECTIONS
+    }
+
+    /**
+     * Duration of each stage that ran
+     */
+    Map<Stage, Duration> stageDurations;
+
+    /**
+     * Failures found during the warm-up
+     */
+    List<Throwable> failures;
+
+    /**
+     * @return total duration of the warm-up
+     */
+    public Duration getTotalDuration() {
+        return stageDurations.values().stream().reduce(Duration.ZERO, Duration::plus);
+    }
+}
@@ -0,0 +1,298 @@
+package org.rdelfino.apigateway.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Value;
+import software.amazon.awssdk.utils.http.SdkHttpUtils;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client of the connections of an API Gateway WebSocket API, sending messages to its clients through the
+ * {@code @connections} resource of its management endpoint.
+ *
+ * <p>Connections that no longer exist are answered with 410 Gone, reported as false or empty results rather than
+ * as failures. Other non-successful responses fail with an {@link ApiGatewayException}.</p>
+ *
+ * <p>A broadcast sends a message to many connections, keeping at most maxConcurrency requests in flight. The
+ * message is wrapped once and shared by every request, so its SHA-256 is computed once for all of them, and the
+ * signing key is derived once per day and credentials by the signer.</p>
+ *
+ * Example:
+ * <pre>
+ *
+ *     WebSocketConnectionsClient connections = WebSocketConnectionsClient.builder()
+ *         .client(asyncClient)
+ *         .endpoint(URI.create("https://abc123.execute-api.us-west-2.amazonaws.com/production"))
+ *         .maxConcurrency(256)
+ *         .build();
+ *
+ *     connections.broadcast(connectionIds, ByteBuffer.wrap(message))
+ *         .thenAccept(result -> removeConnections(result.getGoneConnectionIds()));
+ *
+ * </pre>
+ */
+public class WebSocketConnectionsClient {
+
+    private static final int GONE = 410;
+
+    /**
+     * the client the requests are sent with
+     */
+    @Getter
+    final ApiGatewayAsyncClient client;
+
+    final URI endpoint;
+
+    // path of the @connections resource, without the trailing slash
+    final String connectionsPath;
+
+    @Getter
+    final int maxConcurrency;
+
+    /**
+     * Creates a WebSocketConnectionsClient
+     * @param client the client to send requests with, signing them for the execute-api service
+     * @param endpoint management endpoint of the WebSocket API, including its stage, such as
+     *                 https://{api-id}.execute-api.{region}.amazonaws.com/{stage}
+     * @param maxConcurrency maximum number of requests in flight during a broadcast, defaults to 64
+     */
+    @Builder
+    WebSocketConnectionsClient(
+        final @NonNull ApiGatewayAsyncClient client,
+        final @NonNull URI endpoint,
+        final Integer maxConcurrency
+    ) {
+        if (maxConcurrency != null && maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        this.client = client;
+        this.endpoint = endpoint;
+        this.connectionsPath = (endpoint.getRawPath() == null ? "" : endpoint.getRawPath().replaceAll("/+$", ""))
+            + "/@connections/";
+        this.maxConcurrency = maxConcurrency == null ? 64 : maxConcurrency;
+    }
+
+    /**
+     * Sends a message to a connection
+     * @param connectionId the connection
+     * @param data the message
+     * @return future completed with true once sent, or false if the connection is gone
+     */
+    public CompletableFuture<Boolean> postToConnection(final @NonNull String connectionId, final @NonNull ByteBuffer data) {
+        return post(connectionId, PayloadSource.of(data.asReadOnlyBuffer()));
+    }
+
+    /**
+     * Obtains the details of a connection
+     * @param connectionId the connection
+     * @return future completed with the connection, or empty if it is gone
+     */
+    public CompletableFuture<Optional<WebSocketConnection>> getConnection(final @NonNull String connectionId) {
+        return client.invoke(request("GET", connectionId).build())
+            .thenApply(response -> {
+                try (response) {
+                    if (response.getStatusCode() == GONE) {
+                        return Optional.empty();
+                    }
+                    checkSuccessful(response);
+                    return Optional.of(WebSocketConnection.from(connectionId, (JsonNode) response.readTreeNode()));
+                }
+            });
+    }
+
+    /**
+     * Disconnects a connection
+     * @param connectionId the connection
+     * @return future completed with true once disconnected, or false if it was already gone
+     */
+    public CompletableFuture<Boolean> deleteConnection(final @NonNull String connectionId) {
+        return client.invoke(request("DELETE", connectionId).build())
+            .thenApply(WebSocketConnectionsClient::delivered);
+    }
+
+    /**
+     * Sends a message to many connections, keeping at most maxConcurrency requests in flight. Failures of
+     * individual connections are reported in the result, the returned future does not fail because of them.
+     *
+     * @param connectionIds the connections, iterated as requests are sent
+     * @param data the message
+     * @return future completed once the message was sent to every connection, or failed to
+     */
+    public CompletableFuture<BroadcastResult> broadcast(
+        final @NonNull Iterable<String> connectionIds,
+        final @NonNull ByteBuffer data
+    ) {
+        final Broadcast broadcast = new Broadcast(connectionIds.iterator(), PayloadSource.of(data.asReadOnlyBuffer()));
+        broadcast.sendMore();
+        return broadcast.result;
+    }
+
+    private CompletableFuture<Boolean> post(final String connectionId, final PayloadSource payload) {
+        return client.invoke(request("POST", connectionId).setPayloadSource(payload).build())
+            .thenApply(WebSocketConnectionsClient::delivered);
+    }
+
+    private ApiGatewayRequest.Builder request(final String method, final String connectionId) {
+        return ApiGatewayRequest.builder(endpoint)
+            .setPath(connectionsPath + SdkHttpUtils.urlEncode(connectionId))
+            .setMethod(method);
+    }
+
+    private static boolean delivered(final ApiGatewayResponse response) {
+        try (response) {
+            if (response.getStatusCode() == GONE) {
+                return false;
+            }
+            checkSuccessful(response);
+            return true;
+        }
+    }
+
+    private static void checkSuccessful(final ApiGatewayResponse response) {
+        if (!response.isSuccessful()) {
+            throw new ApiGatewayException(response);
+        }
+    }
+
+    /**
+     * Sends a message to the connections of a broadcast, starting a request whenever one completes
+     */
+    private class Broadcast {
+
+        final Iterator<String> connectionIds;
+        final PayloadSource payload;
+
+        final CompletableFuture<BroadcastResult> result = new CompletableFuture<>();
+
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger delivered = new AtomicInteger();
+        final List<String> gone = Collections.synchronizedList(new ArrayList<>());
+        final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+
+        // requests completing while more are being sent leave it to the thread already sending them
+        final AtomicInteger sending = new AtomicInteger();
+
+        private boolean exhausted;
+
+        Broadcast(final Iterator<String> connectionIds, final PayloadSource payload) {
+            this.connectionIds = connectionIds;
+            this.payload = payload;
+        }
+
+        void sendMore() {
+            if (sending.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!exhausted && inFlight.get() < maxConcurrency) {
+                    final String connectionId;
+                    try {
+                        if (!connectionIds.hasNext()) {
+                            exhausted = true;
+                            break;
+                        }
+                        connectionId = connectionIds.next();
+                    } catch (RuntimeException e) {
+                        exhausted = true;
+                        result.completeExceptionally(e);
+                        break;
+                    }
+                    inFlight.incrementAndGet();
+                    send(connectionId);
+                }
+                if (exhausted && inFlight.get() == 0) {
+                    result.complete(
+                        new BroadcastResult(delivered.get(), List.copyOf(gone), Map.copyOf(failures))
+                    );
+                }
+            } while (sending.decrementAndGet() != 0);
+        }
+
+        private void send(final String connectionId) {
+            CompletableFuture<Boolean> sent;
+            try {
+                sent = post(connectionId, payload);
+            } catch (RuntimeException e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            sent.whenComplete((posted, failure) -> {
+                if (failure != null) {
+                    failures.put(connectionId, failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause()
+                        : failure);
+                } else if (posted) {
+                    delivered.incrementAndGet();
+                } else {
+                    gone.add(connectionId);
+                }
+                inFlight.decrementAndGet();
+                sendMore();
+            });
+        }
+    }
+
+    /**
+     * Outcome of a broadcast
+     */
+    @Value
+    public static class BroadcastResult {
+
+        /**
+         * number of connections the message was sent to
+         */
+        int delivered;
+
+        /**
+         * connections that are gone, to be forgotten
+         */
+        List<String> goneConnectionIds;
+
+        /**
+         * connections the message could not be sent to, with the reason
+         */
+        Map<String, Throwable> failures;
+    }
+
+    /**
+     * Details of a connection
+     */
+    @Value
+    public static class WebSocketConnection {
+
+        String connectionId;
+        Instant connectedAt;
+        Instant lastActiveAt;
+        String sourceIp;
+        String userAgent;
+
+        static WebSocketConnection from(final String connectionId, final JsonNode json) {
+            final JsonNode identity = json.path("identity");
+            return new WebSocketConnection(
+                connectionId,
+                instant(json.path("connectedAt")),
+                instant(json.path("lastActiveAt")),
+                identity.path("sourceIp").asText(null),
+                identity.path("userAgent").asText(null)
+            );
+        }
+
+        private static Instant instant(final JsonNode value) {
+            return value.isTextual() ? Instant.parse(value.asText()) : null;
+        }
+    }
+}
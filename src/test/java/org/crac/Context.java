@@ -0,0 +1,12 @@
+package org.crac;
+
+/**
+ * Test double of the org.crac API
+ */
+public abstract class Context<R extends Resource> implements Resource {
+
+    protected Context() {
+    }
+
+    public abstract void register(R resource);
+}
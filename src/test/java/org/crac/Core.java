@@ -0,0 +1,54 @@
+package org.crac;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test double of the org.crac API, running the hooks of the registered resources on checkpointRestore
+ */
+public class Core {
+
+    static final List<Resource> RESOURCES = Collections.synchronizedList(new ArrayList<>());
+
+    private static final Context<Resource> GLOBAL_CONTEXT = new Context<Resource>() {
+        @Override
+        public void register(Resource resource) {
+            RESOURCES.add(resource);
+        }
+
+        @Override
+        public void beforeCheckpoint(Context<? extends Resource> context) throws Exception {
+            for (Resource resource : List.copyOf(RESOURCES)) {
+                resource.beforeCheckpoint(this);
+            }
+        }
+
+        @Override
+        public void afterRestore(Context<? extends Resource> context) throws Exception {
+            for (Resource resource : List.copyOf(RESOURCES)) {
+                resource.afterRestore(this);
+            }
+        }
+    };
+
+    private Core() {
+    }
+
+    public static Context<Resource> getGlobalContext() {
+        return GLOBAL_CONTEXT;
+    }
+
+    public static void checkpointRestore() throws Exception {
+        GLOBAL_CONTEXT.beforeCheckpoint(null);
+        GLOBAL_CONTEXT.afterRestore(null);
+    }
+
+    public static List<Resource> resources() {
+        return List.copyOf(RESOURCES);
+    }
+
+    public static void reset() {
+        RESOURCES.clear();
+    }
+}
@@ -0,0 +1,11 @@
+package org.crac;
+
+/**
+ * Test double of the org.crac API
+ */
+public interface Resource {
+
+    void beforeCheckpoint(Context<? extends Resource> context) throws Exception;
+
+    void afterRestore(Context<? extends Resource> context) throws Exception;
+}
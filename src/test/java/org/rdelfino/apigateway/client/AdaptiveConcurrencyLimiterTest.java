@@ -0,0 +1,229 @@
+package org.rdelfino.apigateway.client;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "456"));
+
+    ApiGatewayRequest request = ApiGatewayRequest.builder("api.example.com", "/items").build();
+
+    @Test
+    public void testQueuesAndShedsOverLimit() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(2)
+                .maxQueueSize(1)
+                .maxQueueTime(Duration.ofSeconds(5))
+            .build();
+
+        ApiGatewayAsyncClient client = client(simulator(null).latency(Duration.ofMillis(100)).build(), limiter);
+
+        List<CompletableFuture<ApiGatewayResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            responses.add(client.invoke(request));
+        }
+
+        AdaptiveConcurrencyLimiter.HostLimit hostLimit = limiter.getHostLimits().get("api.example.com:443");
+        assertEquals(2, hostLimit.getInFlight());
+        assertEquals(1, hostLimit.getQueueDepth());
+
+        CompletionException shed = assertThrows(CompletionException.class, () -> responses.get(3).join());
+        assertInstanceOf(RequestRejectedException.class, shed.getCause());
+        assertEquals(1, hostLimit.getShedCount().get());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, responses.get(i).join().getStatusCode());
+        }
+        assertEquals(0, hostLimit.getInFlight());
+        assertEquals(0, hostLimit.getQueueDepth());
+    }
+
+    @Test
+    public void testExpiresQueuedRequests() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(1)
+                .maxQueueTime(Duration.ofMillis(20))
+            .build();
+
+        ApiGatewayAsyncClient client = client(simulator(null).latency(Duration.ofMillis(200)).build(), limiter);
+
+        CompletableFuture<ApiGatewayResponse> first = client.invoke(request);
+        CompletableFuture<ApiGatewayResponse> second = client.invoke(request);
+
+        CompletionException expired = assertThrows(CompletionException.class, second::join);
+        assertInstanceOf(RequestRejectedException.class, expired.getCause());
+        assertEquals(200, first.join().getStatusCode());
+    }
+
+    @Test
+    public void testAdaptsToThrottling() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(10)
+            .build();
+
+        ApiGatewayAsyncClient client = client(simulator(null).latency(Duration.ofMillis(2)).build(), limiter);
+
+        for (int i = 0; i < 20; i++) {
+            CompletableFuture.allOf(
+                client.invoke(request), client.invoke(request), client.invoke(request), client.invoke(request),
+                client.invoke(request), client.invoke(request), client.invoke(request), client.invoke(request)
+            ).join();
+        }
+
+        AdaptiveConcurrencyLimiter.HostLimit hostLimit = limiter.getHostLimits().get("api.example.com:443");
+        assertTrue(hostLimit.getLimit() > 10, "limit grows while latency holds: " + hostLimit.getLimit());
+
+        ApiGatewayAsyncClient throttled = client(simulator(429).build(), limiter);
+        int before = hostLimit.getLimit();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(429, throttled.invoke(request).join().getStatusCode());
+        }
+        assertTrue(hostLimit.getLimit() < before / 2, "limit backs off on throttling: " + hostLimit.getLimit());
+    }
+
+    @Test
+    public void testIgnoresCancelledAndRejectedRequests() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(10)
+            .build();
+
+        limiter.acquire(request).join().release(null, 200);
+        AdaptiveConcurrencyLimiter.HostLimit hostLimit = limiter.getHostLimits().get("api.example.com:443");
+        int before = hostLimit.getLimit();
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(request).join().release(new CancellationException(), 0);
+            limiter.acquire(request).join().release(new CompletionException(new RequestRejectedException("rejected")), 0);
+        }
+        assertEquals(before, hostLimit.getLimit());
+        assertEquals(0, hostLimit.getInFlight());
+
+        // requests rejected by the memory budget while holding a permit never reached the host either
+        ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+                .httpClient(simulator(null).build())
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .concurrencyLimiter(limiter)
+                .maxInFlightBytes(100L)
+            .build();
+        client.memoryBudget.reserve(100).join();
+
+        ApiGatewayRequest post = request.toBuilder()
+                .setMethod("POST")
+                .setJsonPayload(Map.of("name", "item"))
+                .setDeadline(Instant.now().plusMillis(20))
+            .build();
+        CompletionException rejected = assertThrows(CompletionException.class, () -> client.invoke(post).join());
+        assertInstanceOf(RequestRejectedException.class, rejected.getCause());
+        assertEquals(before, hostLimit.getLimit());
+        assertEquals(0, hostLimit.getInFlight());
+
+        limiter.acquire(request).join().release(new CompletionException(new IOException("connection reset")), 0);
+        assertTrue(hostLimit.getLimit() < before, "limit backs off on transport failures: " + hostLimit.getLimit());
+    }
+
+    @Test
+    public void testServesByPriority() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(1)
+                .maxQueueSize(2)
+                .maxQueueTime(Duration.ofSeconds(5))
+                .agingInterval(Duration.ofSeconds(5))
+            .build();
+
+        ApiGatewayAsyncClient client = client(simulator(null).latency(Duration.ofMillis(20)).build(), limiter);
+        List<String> served = Collections.synchronizedList(new ArrayList<>());
+
+        CompletableFuture<ApiGatewayResponse> first = client.invoke(request);
+        CompletableFuture<ApiGatewayResponse> batch1 = invoke(client, RequestPriority.BATCH, "batch1", served);
+        CompletableFuture<ApiGatewayResponse> batch2 = invoke(client, RequestPriority.BATCH, "batch2", served);
+        CompletableFuture<ApiGatewayResponse> interactive = invoke(client, RequestPriority.INTERACTIVE, "interactive", served);
+
+        // the queue was full, the last batch request gave way to the interactive one
+        CompletionException shed = assertThrows(CompletionException.class, batch2::join);
+        assertInstanceOf(RequestRejectedException.class, shed.getCause());
+
+        CompletableFuture.allOf(first, batch1, interactive).join();
+        assertEquals(List.of("interactive", "batch1"), served);
+    }
+
+    @Test
+    public void testDropsRequestsPastDeadline() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(1)
+                .maxQueueTime(Duration.ofSeconds(5))
+            .build();
+
+        ApiGatewaySimulator simulator = simulator(null).latency(Duration.ofMillis(200)).build();
+        ApiGatewayAsyncClient client = client(simulator, limiter);
+
+        CompletionException late = assertThrows(
+            CompletionException.class,
+            () -> client.invoke(request.toBuilder().setDeadline(Instant.now().minusMillis(1)).build()).join()
+        );
+        assertInstanceOf(RequestRejectedException.class, late.getCause());
+        assertEquals(0, simulator.getRequestCount().get());
+
+        CompletableFuture<ApiGatewayResponse> first = client.invoke(request);
+        CompletableFuture<ApiGatewayResponse> expiring =
+            client.invoke(request.toBuilder().setDeadline(Instant.now().plusMillis(20)).build());
+
+        CompletionException expired = assertThrows(CompletionException.class, expiring::join);
+        assertInstanceOf(RequestRejectedException.class, expired.getCause());
+        assertEquals(1, limiter.getHostLimits().get("api.example.com:443").getExpiredCount().get());
+
+        assertEquals(200, first.join().getStatusCode());
+        assertEquals(1, simulator.getRequestCount().get());
+    }
+
+    private CompletableFuture<ApiGatewayResponse> invoke(
+        ApiGatewayAsyncClient client,
+        RequestPriority priority,
+        String name,
+        List<String> served
+    ) {
+        return client.invoke(request.toBuilder().setPriority(priority).build())
+            .whenComplete((response, failure) -> {
+                if (failure == null) {
+                    served.add(name);
+                }
+            });
+    }
+
+    private ApiGatewayAsyncClient client(ApiGatewaySimulator simulator, AdaptiveConcurrencyLimiter limiter) {
+        return ApiGatewayAsyncClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .concurrencyLimiter(limiter)
+            .build();
+    }
+
+    private ApiGatewaySimulator.ApiGatewaySimulatorBuilder simulator(Integer statusCode) {
+        return ApiGatewaySimulator.builder()
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .route(ApiGatewaySimulator.Route.of("GET", "/items", request ->
+                    ApiGatewaySimulator.Response.json(statusCode == null ? 200 : statusCode, Map.of())
+                ));
+    }
+}
@@ -0,0 +1,288 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.ExecutableHttpRequest;
+import software.amazon.awssdk.http.HttpExecuteRequest;
+import software.amazon.awssdk.http.HttpExecuteResponse;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.http.async.AsyncExecuteRequest;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Bytes allocated per invoke, for representative requests on both clients, against the budgets checked in
+ * allocation-budgets.properties. A change allocating more than a budget fails here: either it is fixed, or the
+ * budget is raised in the same change, explaining why.
+ *
+ * <p>Requests are built, signed and sent, and their responses read, on the calling thread, through transports
+ * that answer from memory, so that the allocation counter of the thread sees every allocation of an invoke.</p>
+ */
+class AllocationBudgetTest {
+
+    static final int WARM_UP_INVOKES = 20_000;
+    static final int MEASURED_INVOKES = 10_000;
+
+    static final int LARGE_PAYLOAD_SIZE = 256 * 1024;
+
+    static Properties budgets;
+
+    static com.sun.management.ThreadMXBean threads;
+
+    static final byte[] RESPONSE = "{\"id\":\"123\",\"status\":\"created\"}".getBytes(StandardCharsets.UTF_8);
+
+    static final SdkHttpResponse RESPONSE_HEADERS = SdkHttpResponse.builder()
+            .statusCode(200)
+            .putHeader("Content-Type", "application/json")
+            .putHeader("Content-Length", String.valueOf(RESPONSE.length))
+        .build();
+
+    StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "456"));
+
+    ByteBuffer largePayload = ByteBuffer.allocateDirect(LARGE_PAYLOAD_SIZE);
+
+    @BeforeAll
+    @SneakyThrows
+    static void loadBudgets() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        budgets = new Properties();
+        try (InputStream in = AllocationBudgetTest.class.getResourceAsStream("/allocation-budgets.properties")) {
+            assertNotNull(in, "allocation-budgets.properties not found");
+            budgets.load(in);
+        }
+    }
+
+    @Test
+    public void testAsyncGet() {
+        ApiGatewayAsyncClient client = asyncClient();
+        assertWithinBudget("async.get", () -> client.invoke(get()).join().close());
+    }
+
+    @Test
+    public void testAsyncCachedGet() {
+        ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+                .httpClient(new InMemoryAsyncHttpClient())
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .signatureCacheTtl(Duration.ofMinutes(1))
+            .build();
+        ApiGatewayRequest request = get();
+        assertWithinBudget("async.get.cached", () -> client.invoke(request).join().close());
+    }
+
+    @Test
+    public void testAsyncGetWithFreshCredentials() {
+        // as the environment variables provider, new credentials with the same values on every call
+        ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+                .httpClient(new InMemoryAsyncHttpClient())
+                .credentialsProvider(() -> AwsBasicCredentials.create("123", "456"))
+                .region(Region.US_WEST_2)
+            .build();
+        assertWithinBudget("async.get.fresh.credentials", () -> client.invoke(get()).join().close());
+    }
+
+    @Test
+    public void testAsyncSmallJsonPost() {
+        ApiGatewayAsyncClient client = asyncClient();
+        assertWithinBudget("async.post.json", () -> client.invoke(smallJsonPost()).join().close());
+    }
+
+    @Test
+    public void testAsyncLargePayload() {
+        ApiGatewayAsyncClient client = asyncClient();
+        assertWithinBudget("async.put.large", () -> client.invoke(largePut()).join().close());
+    }
+
+    @Test
+    @SneakyThrows
+    public void testSyncGet() {
+        ApiGatewayClient client = syncClient();
+        assertWithinBudget("sync.get", () -> client.invoke(get()).close());
+    }
+
+    @Test
+    @SneakyThrows
+    public void testSyncSmallJsonPost() {
+        ApiGatewayClient client = syncClient();
+        assertWithinBudget("sync.post.json", () -> client.invoke(smallJsonPost()).close());
+    }
+
+    @Test
+    @SneakyThrows
+    public void testSyncLargePayload() {
+        ApiGatewayClient client = syncClient();
+        assertWithinBudget("sync.put.large", () -> client.invoke(largePut()).close());
+    }
+
+    private ApiGatewayRequest get() {
+        return ApiGatewayRequest.builder("api.example.com", "/items/123")
+                .setQueryParameter("fields", "id,status")
+            .build();
+    }
+
+    private ApiGatewayRequest smallJsonPost() {
+        return ApiGatewayRequest.builder("api.example.com", "/items")
+                .setMethod("POST")
+                .setJsonPayload(Map.of("name", "item", "quantity", 3))
+            .build();
+    }
+
+    // a new payload each time, hashed each time
+    private ApiGatewayRequest largePut() {
+        return ApiGatewayRequest.builder("api.example.com", "/items/123/contents")
+                .setMethod("PUT")
+                .setHeader("Content-Type", "application/octet-stream")
+                .setPayload(largePayload.duplicate())
+            .build();
+    }
+
+    private void assertWithinBudget(final String shape, final Invocation invoke) {
+        final String budget = budgets.getProperty(shape);
+        assertNotNull(budget, "no allocation budget for " + shape);
+
+        try {
+            for (int i = 0; i < WARM_UP_INVOKES / invokesDivisor(shape); i++) {
+                invoke.run();
+            }
+
+            final long thread = Thread.currentThread().getId();
+            final int measured = MEASURED_INVOKES / invokesDivisor(shape);
+            final long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < measured; i++) {
+                invoke.run();
+            }
+            final long perInvoke = (threads.getThreadAllocatedBytes(thread) - before) / measured;
+
+            assertTrue(
+                perInvoke <= Long.parseLong(budget.trim()),
+                shape + " allocated " + perInvoke + " bytes per invoke, over its budget of " + budget
+            );
+        } catch (Exception e) {
+            throw new AssertionError(shape + " failed", e);
+        }
+    }
+
+    // large payloads take longer to hash, fewer of them are enough
+    private static int invokesDivisor(final String shape) {
+        return shape.endsWith(".large") ? 20 : 1;
+    }
+
+    private ApiGatewayAsyncClient asyncClient() {
+        return ApiGatewayAsyncClient.builder()
+                .httpClient(new InMemoryAsyncHttpClient())
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+            .build();
+    }
+
+    private ApiGatewayClient syncClient() {
+        return ApiGatewayClient.builder()
+                .httpClient(new InMemoryHttpClient())
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+            .build();
+    }
+
+    interface Invocation {
+        void run() throws Exception;
+    }
+
+    /**
+     * Reads the whole request payload, and answers with a small JSON response, on the calling thread
+     */
+    static class InMemoryAsyncHttpClient implements SdkAsyncHttpClient {
+
+        final CompletableFuture<Void> executed = CompletableFuture.completedFuture(null);
+
+        @Override
+        public CompletableFuture<Void> execute(final AsyncExecuteRequest request) {
+            request.requestContentPublisher().subscribe(new Subscriber<ByteBuffer>() {
+                @Override
+                public void onSubscribe(final Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(final ByteBuffer chunk) {
+                    chunk.position(chunk.limit());
+                }
+
+                @Override
+                public void onError(final Throwable t) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+            request.responseHandler().onHeaders(RESPONSE_HEADERS);
+            request.responseHandler().onStream(new PayloadPublisher(PayloadSource.of(ByteBuffer.wrap(RESPONSE))));
+            return executed;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Reads the whole request payload, and answers with a small JSON response
+     */
+    static class InMemoryHttpClient implements SdkHttpClient {
+
+        final byte[] drain = new byte[8192];
+
+        @Override
+        public ExecutableHttpRequest prepareRequest(final HttpExecuteRequest request) {
+            return new ExecutableHttpRequest() {
+                @Override
+                @SneakyThrows
+                public HttpExecuteResponse call() {
+                    if (request.contentStreamProvider().isPresent()) {
+                        try (InputStream payload = request.contentStreamProvider().get().newStream()) {
+                            while (payload.read(drain) >= 0) {
+                                // discarded
+                            }
+                        }
+                    }
+                    return HttpExecuteResponse.builder()
+                            .response(RESPONSE_HEADERS)
+                            .responseBody(AbortableInputStream.create(new ByteArrayInputStream(RESPONSE)))
+                        .build();
+                }
+
+                @Override
+                public void abort() {
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.rdelfino.apigateway.client;
 
 import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,26 +12,35 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 import software.amazon.awssdk.http.SdkHttpFullRequest;
 import software.amazon.awssdk.http.SdkHttpResponse;
 import software.amazon.awssdk.http.async.AsyncExecuteRequest;
 import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
 import software.amazon.awssdk.http.async.SdkAsyncHttpResponseHandler;
+import software.amazon.awssdk.http.async.SdkHttpContentPublisher;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 public class ApiGatewayAsyncClientTest {
@@ -85,7 +95,7 @@ public class ApiGatewayAsyncClientTest {
         final TreeNode bodyContent = response.readTreeNode();
         assertEquals(value, defaultMapperConfiguration.treeToValue(bodyContent, Something.class));
 
-        verify(mockRequestFactory).create(testRequest);
+        verify(mockRequestFactory).create(eq(testRequest), any(Span.class));
         verify(mockHttpClient).execute(httpExecuteRequestArgumentCaptor.capture());
 
         AsyncExecuteRequest actualRequest = httpExecuteRequestArgumentCaptor.getValue();
@@ -113,10 +123,313 @@ public class ApiGatewayAsyncClientTest {
         assertEquals("", bodyCnotent);
     }
 
+    @Test
+    @SneakyThrows
+    public void testInvokeAll() {
+        ApiGatewayAsyncClient client = scenario("{}", true, 200, "OK");
+
+        int count = 10;
+        int maxConcurrency = 3;
+
+        AtomicLong maxRequested = new AtomicLong();
+
+        Publisher<ApiGatewayRequest> requests = subscriber -> subscriber.onSubscribe(
+            new Subscription() {
+                int emitted = 0;
+                boolean emitting = false;
+                long demand = 0;
+
+                @Override
+                public void request(long n) {
+                    maxRequested.accumulateAndGet(n, Math::max);
+                    demand += n;
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (demand > 0 && emitted < count) {
+                        demand--;
+                        emitted++;
+                        subscriber.onNext(ApiGatewayRequest.builder("localhost").build());
+                    }
+                    emitting = false;
+                    if (emitted == count) {
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                }
+            }
+        );
+
+        List<ApiGatewayResponse> responses = new ArrayList<>();
+        AtomicInteger completions = new AtomicInteger();
+
+        client.invokeAll(requests, maxConcurrency).subscribe(new Subscriber<>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ApiGatewayResponse response) {
+                responses.add(response);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new AssertionError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completions.incrementAndGet();
+            }
+        });
+
+        assertEquals(count, responses.size());
+        assertEquals(1, completions.get());
+        assertTrue(maxRequested.get() <= maxConcurrency);
+        verify(mockHttpClient, times(count)).execute(any(AsyncExecuteRequest.class));
+    }
+
+    @Test
+    public void testInvokeAllClosesDiscardedResponses() {
+        ApiGatewayAsyncClient client = Mockito.mock(ApiGatewayAsyncClient.class);
+        List<CompletableFuture<ApiGatewayResponse>> futures = new ArrayList<>();
+        doAnswer(invocation -> {
+            CompletableFuture<ApiGatewayResponse> future = new CompletableFuture<>();
+            futures.add(future);
+            return future;
+        }).when(client).invoke(any(ApiGatewayRequest.class));
+
+        Publisher<ApiGatewayRequest> requests = subscriber -> subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                for (long i = 0; i < n; i++) {
+                    subscriber.onNext(ApiGatewayRequest.builder("localhost").build());
+                }
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+
+        List<ApiGatewayResponse> received = new ArrayList<>();
+        Subscription[] subscription = new Subscription[1];
+        new InvokePublisher(client, requests, 3).subscribe(new Subscriber<>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription[0] = s;
+                s.request(3);
+            }
+
+            @Override
+            public void onNext(ApiGatewayResponse response) {
+                received.add(response);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new AssertionError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertEquals(3, futures.size());
+
+        ApiGatewayResponse emitted = Mockito.mock(ApiGatewayResponse.class);
+        futures.get(0).complete(emitted);
+        assertEquals(List.of(emitted), received);
+
+        subscription[0].cancel();
+
+        // completing after cancellation: never emitted, closed instead
+        ApiGatewayResponse late = Mockito.mock(ApiGatewayResponse.class);
+        futures.get(1).complete(late);
+        verify(late).close();
+
+        ApiGatewayResponse later = Mockito.mock(ApiGatewayResponse.class);
+        futures.get(2).complete(later);
+        verify(later).close();
+
+        verify(emitted, times(0)).close();
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    @SneakyThrows
+    public void testInvokeForObjects() {
+        String message = "[{\"a\":1,\"b\":\"x\"},{\"a\":2,\"b\":{\"nested\":[1,2]}},{\"a\":3}]";
+
+        ApiGatewayAsyncClient client = scenario(message, true, 200, "OK");
+
+        ApiGatewayRequest testRequest = ApiGatewayRequest.builder("localhost")
+                .build();
+
+        List<Integer> values = new ArrayList<>();
+        AtomicInteger completions = new AtomicInteger();
+
+        client.invokeForObjects(testRequest, JsonNode.class).subscribe(new Subscriber<>() {
+            Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(JsonNode element) {
+                values.add(element.get("a").asInt());
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new AssertionError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completions.incrementAndGet();
+            }
+        });
+
+        assertEquals(List.of(1, 2, 3), values);
+        assertEquals(1, completions.get());
+    }
+
+    @Test
+    @SneakyThrows
+    public void testInvokeForObjectsIsAdmittedLikeInvoke() {
+        scenario("[1,2,3]", true, 200, "OK");
+
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder().build();
+        ApiGatewayAsyncClient client = new ApiGatewayAsyncClient(
+            mockRequestFactory, mockHttpClient, ResponseBodyStorage.IN_MEMORY, null, limiter, null, null, null
+        );
+
+        ApiGatewayRequest testRequest = ApiGatewayRequest.builder("localhost").build();
+
+        assertEquals(List.of(1, 2, 3), collect(client.invokeForObjects(testRequest, Integer.class)));
+        assertEquals(0, limiter.getHostLimits().get("localhost:443").getInFlight());
+
+        Throwable late = collectFailure(
+            client.invokeForObjects(testRequest.toBuilder().setDeadline(Instant.now().minusSeconds(1)).build(), Integer.class)
+        );
+        assertTrue(late instanceof RequestRejectedException, String.valueOf(late));
+
+        Throwable tooLarge = collectFailure(
+            client.invokeForObjects(testRequest.toBuilder().setMaxResponseSize(4L).build(), Integer.class)
+        );
+        assertTrue(tooLarge instanceof ResponseTooLargeException, String.valueOf(tooLarge));
+
+        verify(mockHttpClient, times(2)).execute(any(AsyncExecuteRequest.class));
+    }
+
+    private static <T> List<T> collect(Publisher<T> publisher) {
+        List<T> values = new ArrayList<>();
+        Throwable failure = subscribe(publisher, values);
+        if (failure != null) {
+            throw new AssertionError(failure);
+        }
+        return values;
+    }
+
+    private static Throwable collectFailure(Publisher<?> publisher) {
+        return subscribe(publisher, new ArrayList<>());
+    }
+
+    private static <T> Throwable subscribe(Publisher<T> publisher, List<? super T> values) {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        publisher.subscribe(new Subscriber<>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T value) {
+                values.add(value);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                failure.set(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        return failure.get();
+    }
+
+    @Test
+    @SneakyThrows
+    public void testInvokeByteBufferPayload() {
+        ApiGatewayAsyncClient client = scenario("{}", true, 200, "OK");
+
+        ByteBuffer payload = ByteBuffer.allocateDirect(PayloadPublisher.CHUNK_SIZE * 2 + 10);
+        for (int i = 0; payload.hasRemaining(); i++) {
+            payload.put((byte) i);
+        }
+        payload.flip();
+
+        ApiGatewayRequest testRequest = ApiGatewayRequest.builder("localhost")
+                .setMethod("POST")
+                .setPayload(payload)
+            .build();
+
+        client.invoke(testRequest).join();
+
+        verify(mockHttpClient).execute(httpExecuteRequestArgumentCaptor.capture());
+        SdkHttpContentPublisher published = httpExecuteRequestArgumentCaptor.getValue().requestContentPublisher();
+
+        assertEquals(payload.remaining(), published.contentLength().orElseThrow());
+
+        List<ByteBuffer> chunks = new ArrayList<>();
+        published.subscribe(new Subscriber<>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer chunk) {
+                chunks.add(chunk);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new AssertionError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        assertEquals(3, chunks.size());
+        ByteBuffer received = ByteBuffer.allocate(payload.remaining());
+        for (ByteBuffer chunk : chunks) {
+            assertTrue(chunk.isDirect());
+            assertTrue(chunk.isReadOnly());
+            received.put(chunk);
+        }
+        assertEquals(payload, received.flip());
+    }
+
     private ApiGatewayAsyncClient scenario(String responseData, boolean successful, int statusCode, String statusText) {
         doReturn(mocSignedRequest)
             .when(mockRequestFactory)
-                .create(any(ApiGatewayRequest.class));
+                .create(any(ApiGatewayRequest.class), any(Span.class));
 
         doAnswer(invocation -> {
 
@@ -0,0 +1,99 @@
+package org.rdelfino.apigateway.client;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ApiGatewayBatcherTest {
+
+    StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "456"));
+
+    ApiGatewaySimulator simulator = ApiGatewaySimulator.builder()
+            .credentialsProvider(credentials)
+            .region(Region.US_WEST_2)
+            .route(ApiGatewaySimulator.Route.of("POST", "/squares", request -> {
+                List<Integer> squares = new ArrayList<>();
+                for (Object value : request.readJson(List.class)) {
+                    squares.add((Integer) value * (Integer) value);
+                }
+                return ApiGatewaySimulator.Response.json(200, squares);
+            }))
+            .route(ApiGatewaySimulator.Route.of("POST", "/broken", request ->
+                ApiGatewaySimulator.Response.json(500, Map.of("message", "Internal server error"))
+            ))
+        .build();
+
+    ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+            .httpClient(simulator)
+            .credentialsProvider(credentials)
+            .region(Region.US_WEST_2)
+        .build();
+
+    @Test
+    public void testBatchesBySizeAndDelay() {
+        ApiGatewayBatcher<Integer, Integer> batcher = ApiGatewayBatcher.<Integer, Integer>builder()
+                .client(client)
+                .codec(BatchCodec.jsonArray(
+                    ApiGatewayRequest.builder("api.example.com", "/squares").setMethod("POST").build(),
+                    Integer.class
+                ))
+                .maxBatchSize(10)
+                .maxDelay(Duration.ofMillis(20))
+            .build();
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            results.add(batcher.submit(i));
+        }
+
+        // two full batches were sent right away, the last one is sent once its delay expires
+        assertEquals(2, batcher.getBatchCount().get());
+
+        for (int i = 0; i < 25; i++) {
+            assertEquals(i * i, results.get(i).join());
+        }
+        assertEquals(3, batcher.getBatchCount().get());
+        assertEquals(3, simulator.getRequestCount().get());
+
+        batcher.close();
+        assertThrows(IllegalStateException.class, () -> batcher.submit(1));
+    }
+
+    @Test
+    public void testFailsEveryItemOfFailedBatch() {
+        ApiGatewayBatcher<Integer, Integer> batcher = ApiGatewayBatcher.<Integer, Integer>builder()
+                .client(client)
+                .codec(BatchCodec.jsonArray(
+                    ApiGatewayRequest.builder("api.example.com", "/broken").setMethod("POST").build(),
+                    Integer.class
+                ))
+                .maxDelay(Duration.ofSeconds(10))
+            .build();
+
+        CompletableFuture<Integer> first = batcher.submit(1);
+        CompletableFuture<Integer> second = batcher.submit(2);
+        batcher.flush();
+
+        for (CompletableFuture<Integer> result : List.of(first, second)) {
+            CompletionException failure = assertThrows(CompletionException.class, result::join);
+            assertInstanceOf(ApiGatewayException.class, failure.getCause());
+            ApiGatewayResponse response = ((ApiGatewayException) failure.getCause()).getResponse();
+            assertEquals(500, response.getStatusCode());
+            // a copy, readable once the batch response was released
+            assertEquals("Internal server error", response.readOject(Map.class).get("message"));
+        }
+        assertEquals(1, simulator.getRequestCount().get());
+    }
+}
@@ -1,14 +1,18 @@
 package org.rdelfino.apigateway.client;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.http.AbortableInputStream;
 import software.amazon.awssdk.http.ExecutableHttpRequest;
 import software.amazon.awssdk.http.HttpExecuteRequest;
@@ -16,13 +20,21 @@ import software.amazon.awssdk.http.HttpExecuteResponse;
 import software.amazon.awssdk.http.SdkHttpClient;
 import software.amazon.awssdk.http.SdkHttpFullRequest;
 import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.regions.Region;
 
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.verify;
@@ -80,7 +92,7 @@ class ApiGatewayClientTest {
         final Something bodyContent = response.readOject(Something.class);
         assertEquals(value, bodyContent);
 
-        verify(mockRequestFactory).create(testRequest);
+        verify(mockRequestFactory).create(eq(testRequest), any(Span.class));
         verify(mockHttpClient).prepareRequest(httpExecuteRequestArgumentCaptor.capture());
 
         HttpExecuteRequest actualRequest = httpExecuteRequestArgumentCaptor.getValue();
@@ -108,10 +120,104 @@ class ApiGatewayClientTest {
         assertEquals("", bodyCnotent);
     }
 
+    @Test
+    @SneakyThrows
+    public void testRereadsBody() {
+        ApiGatewayResponse response = scenario("{\"a\":7,\"b\":\"x\"}", true, 200, "OK")
+            .invoke(ApiGatewayRequest.builder("localhost").build());
+
+        assertEquals(7, ((JsonNode) response.readTreeNode()).get("a").asInt());
+
+        Something first = response.readOject(Something.class);
+        assertEquals(7, first.getA());
+        assertSame(first, response.readOject(Something.class));
+
+        assertEquals("{\"a\":7,\"b\":\"x\"}", Buffer.from(response.getBodyContent()).asString(StandardCharsets.UTF_8));
+        assertEquals(response.getBody(), response.getBody());
+        assertTrue(response.getBody().isReadOnly());
+
+        response.setObjectMapper(ApiGatewayRequest.getDefaultMapperConfiguration());
+        assertNotSame(first, response.readOject(Something.class));
+    }
+
+    @Test
+    @SneakyThrows
+    public void testReadObjects() {
+        ApiGatewayRequest testRequest = ApiGatewayRequest.builder("localhost")
+                .build();
+
+        String array = "[{\"a\":1,\"b\":\"x\"},{\"a\":2,\"b\":\"y\"}]";
+        String ndjson = "{\"a\":1,\"b\":\"x\"}\n{\"a\":2,\"b\":\"y\"}\n";
+
+        for (String message : List.of(array, ndjson)) {
+            ApiGatewayResponse response = scenario(message, true, 200, "OK").invoke(testRequest);
+
+            try (Stream<Something> elements = response.readObjects(Something.class)) {
+                List<Integer> values = elements.map(Something::getA).collect(Collectors.toList());
+                assertEquals(List.of(1, 2), values);
+            }
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    public void testInvokeSpillsLargeBody(@TempDir Path spillDirectory) {
+        ApiGatewayRequest testRequest = ApiGatewayRequest.builder("localhost")
+                .build();
+
+        String message = "[{\"a\":1,\"b\":\"x\"},{\"a\":2,\"b\":\"y\"}]";
+        scenario(message, true, 200, "OK");
+
+        ApiGatewayClient client = new ApiGatewayClient(
+            mockRequestFactory,
+            mockHttpClient,
+            ResponseBodyStorage.of(8L, spillDirectory)
+        );
+
+        try (ApiGatewayResponse response = client.invoke(testRequest)) {
+            try (Stream<Path> files = Files.list(spillDirectory)) {
+                assertEquals(1, files.count());
+            }
+            Something[] values = response.readOject(Something[].class);
+            assertEquals(2, values.length);
+            assertEquals("y", values[1].b);
+        }
+
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    public void testWarmUp() {
+        scenario("{}", true, 200, "OK");
+
+        ApiGatewayClient client = new ApiGatewayClient(
+            new SignedRequestFactory(
+                Region.US_WEST_2,
+                StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "456"))
+            ),
+            mockHttpClient
+        );
+
+        WarmUpReport report = client.warmUp(
+            WarmUpPlan.builder()
+                .request(ApiGatewayRequest.builder("localhost", "/health").build())
+                .payloadType(Something.class)
+                .openConnections(true)
+            .build()
+        );
+
+        assertEquals(List.of(), report.getFailures());
+        assertEquals(EnumSet.allOf(WarmUpReport.Stage.class), report.getStageDurations().keySet());
+        verify(mockHttpClient).prepareRequest(any(HttpExecuteRequest.class));
+    }
+
     private ApiGatewayClient scenario(String message, boolean successful, int statusCode, String statusText) {
         doReturn(mocSignedRequest)
             .when(mockRequestFactory)
-                .create(any(ApiGatewayRequest.class));
+                .create(any(ApiGatewayRequest.class), any(Span.class));
 
         doAnswer(invocation -> {
             HttpExecuteRequest request = (HttpExecuteRequest)invocation.getArgument(0);
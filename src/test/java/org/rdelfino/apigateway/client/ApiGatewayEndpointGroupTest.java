@@ -0,0 +1,184 @@
+package org.rdelfino.apigateway.client;
+
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.http.async.AsyncExecuteRequest;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+class ApiGatewayEndpointGroupTest {
+
+    @Mock
+    SdkAsyncHttpClient mockHttpClient;
+
+    List<String> hosts = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    @SneakyThrows
+    void setup() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+    }
+
+    @Test
+    public void testFailoverToAnotherRegion() {
+        scenario("west.example.com");
+
+        ApiGatewayEndpointGroup group = group(1);
+
+        for (int i = 0; i < 20; i++) {
+            ApiGatewayResponse response = group.invoke(
+                ApiGatewayRequest.builder("api.example.com", "/items")
+                    .setMethod("POST")
+                    .setJsonPayload(Map.of("i", i))
+                .build()
+            ).join();
+
+            assertEquals(200, response.getStatusCode());
+            assertEquals("east.example.com", hosts.get(hosts.size() - 1));
+        }
+
+        ApiGatewayEndpointGroup.EndpointState west = group.getEndpoints().get(0);
+        assertTrue(west.isEjected());
+        assertTrue(west.getErrorRate() > 0);
+    }
+
+    @Test
+    public void testEjectedEndpointsAreNotChosen() {
+        scenario("west.example.com");
+
+        ApiGatewayEndpointGroup group = group(1);
+
+        ApiGatewayEndpointGroup.EndpointState west = group.getEndpoints().get(0);
+        for (int i = 0; i < 100 && !west.isEjected(); i++) {
+            group.invoke(ApiGatewayRequest.builder("api.example.com").build()).join();
+        }
+        assertTrue(west.isEjected());
+        hosts.clear();
+
+        for (int i = 0; i < 20; i++) {
+            group.invoke(ApiGatewayRequest.builder("api.example.com").build()).join();
+        }
+
+        assertFalse(hosts.contains("west.example.com"));
+    }
+
+    @Test
+    public void testFailsOverOnlyRequestsSafeToRepeat() {
+        scenario("west.example.com", new IOException("connection reset"));
+
+        ApiGatewayEndpointGroup group = group(100);
+
+        for (int i = 0; i < 20; i++) {
+            hosts.clear();
+            CompletableFuture<ApiGatewayResponse> post = group.invoke(
+                ApiGatewayRequest.builder("api.example.com", "/items").setMethod("POST").build()
+            );
+            if (hosts.get(0).equals("west.example.com")) {
+                // may have been processed before the connection was reset
+                CompletionException failure = assertThrows(CompletionException.class, post::join);
+                assertInstanceOf(IOException.class, failure.getCause());
+                assertEquals(List.of("west.example.com"), hosts);
+            } else {
+                assertEquals(200, post.join().getStatusCode());
+            }
+
+            // GET is safe to repeat on another endpoint
+            ApiGatewayResponse get = group.invoke(ApiGatewayRequest.builder("api.example.com", "/items").build()).join();
+            assertEquals(200, get.getStatusCode());
+        }
+
+        // not sent at all: no failover, and no failure recorded against the endpoint
+        hosts.clear();
+        CompletionException rejected = assertThrows(
+            CompletionException.class,
+            () -> group.invoke(
+                ApiGatewayRequest.builder("api.example.com", "/items").setDeadline(Instant.EPOCH).build()
+            ).join()
+        );
+        assertInstanceOf(RequestRejectedException.class, rejected.getCause());
+        assertTrue(hosts.isEmpty());
+    }
+
+    private ApiGatewayEndpointGroup group(int ejectionThreshold) {
+        return ApiGatewayEndpointGroup.builder()
+                .httpClient(mockHttpClient)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "456")))
+                .endpoint(
+                    ApiGatewayEndpointGroup.Endpoint.builder()
+                        .host("west.example.com")
+                        .region(Region.US_WEST_2)
+                    .build()
+                )
+                .endpoint(
+                    ApiGatewayEndpointGroup.Endpoint.builder()
+                        .host("east.example.com")
+                        .region(Region.US_EAST_1)
+                    .build()
+                )
+                .ejectionThreshold(ejectionThreshold)
+                .ejectionTime(Duration.ofMinutes(1))
+            .build();
+    }
+
+    private void scenario(String failingHost) {
+        scenario(failingHost, new ConnectException("connection refused"));
+    }
+
+    private void scenario(String failingHost, Exception failure) {
+        doAnswer(invocation -> {
+            AsyncExecuteRequest request = invocation.getArgument(0);
+            String host = request.request().host();
+            hosts.add(host);
+
+            if (host.equals(failingHost)) {
+                return CompletableFuture.failedFuture(failure);
+            }
+
+            request.responseHandler().onHeaders(
+                SdkHttpResponse.builder()
+                    .statusCode(200)
+                    .putHeader("Content-Length", "2")
+                .build()
+            );
+
+            Publisher<ByteBuffer> publisher = subscriber -> {
+                subscriber.onSubscribe(Mockito.mock(Subscription.class));
+                subscriber.onNext(ByteBuffer.wrap("{}".getBytes()));
+                subscriber.onComplete();
+            };
+            request.responseHandler().onStream(publisher);
+
+            return CompletableFuture.completedFuture(null);
+        })
+            .when(mockHttpClient)
+                .execute(any(AsyncExecuteRequest.class));
+    }
+}
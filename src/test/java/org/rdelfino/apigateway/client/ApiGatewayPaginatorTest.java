@@ -0,0 +1,196 @@
+package org.rdelfino.apigateway.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ApiGatewayPaginatorTest {
+
+    @Mock
+    ApiGatewayAsyncClient mockClient;
+
+    @BeforeEach
+    @SneakyThrows
+    void setup() throws Exception {
+        MockitoAnnotations.openMocks(this).close();
+    }
+
+    @Test
+    public void testQueryParameterPagination() {
+        scenario(3, 200);
+
+        ApiGatewayPaginator paginator = ApiGatewayPaginator.builder()
+                .client(mockClient)
+                .request(ApiGatewayRequest.builder("localhost", "/items").build())
+                .tokenStrategy(
+                    PageTokenStrategy.queryParameter(
+                        "nextToken",
+                        page -> Optional.ofNullable((JsonNode) page.readTreeNode().get("next"))
+                            .map(JsonNode::asText)
+                            .orElse(null)
+                    )
+                )
+                .prefetchDepth(2)
+            .build();
+
+        try (Stream<Something> items = paginator.items(page -> page.readObjects(Something.class))) {
+            List<Integer> values = items.map(Something::getA).collect(Collectors.toList());
+            assertEquals(List.of(0, 1, 2), values);
+        }
+
+        verify(mockClient, times(3)).invoke(any(ApiGatewayRequest.class));
+    }
+
+    @Test
+    public void testNonSuccessfulPage() {
+        scenario(3, 500);
+
+        ApiGatewayPaginator paginator = ApiGatewayPaginator.builder()
+                .client(mockClient)
+                .request(ApiGatewayRequest.builder("localhost", "/items").build())
+                .tokenStrategy(PageTokenStrategy.linkHeader())
+            .build();
+
+        try (Stream<ApiGatewayResponse> pages = paginator.pages()) {
+            assertThrows(ApiGatewayException.class, () -> pages.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testCloseReleasesPrefetchedPages() {
+        List<ApiGatewayResponse> pages = new ArrayList<>();
+        CompletableFuture<ApiGatewayResponse> late = new CompletableFuture<>();
+
+        doAnswer(invocation -> {
+            ApiGatewayResponse page = mock(ApiGatewayResponse.class);
+            doReturn(true).when(page).isSuccessful();
+            pages.add(page);
+            return pages.size() < 3 ? CompletableFuture.completedFuture(page) : late.thenApply(response -> page);
+        })
+            .when(mockClient)
+                .invoke(any(ApiGatewayRequest.class));
+
+        ApiGatewayPaginator paginator = ApiGatewayPaginator.builder()
+                .client(mockClient)
+                .request(ApiGatewayRequest.builder("localhost", "/items").build())
+                .tokenStrategy(PageTokenStrategy.queryParameter("nextToken", page -> "more"))
+                .prefetchDepth(2)
+            .build();
+
+        Stream<ApiGatewayResponse> stream = paginator.pages();
+        ApiGatewayResponse first = stream.iterator().next();
+        assertSame(pages.get(0), first);
+        assertEquals(3, pages.size());
+
+        stream.close();
+        verify(pages.get(0), never()).close();
+        verify(pages.get(1)).close();
+
+        late.complete(null);
+        verify(pages.get(2)).close();
+    }
+
+    @Test
+    public void testItemsCloseConsumedPages() {
+        List<ApiGatewayResponse> pages = new ArrayList<>();
+
+        doAnswer(invocation -> {
+            ApiGatewayResponse page = mock(ApiGatewayResponse.class);
+            doReturn(true).when(page).isSuccessful();
+            pages.add(page);
+            return CompletableFuture.completedFuture(page);
+        })
+            .when(mockClient)
+                .invoke(any(ApiGatewayRequest.class));
+
+        ApiGatewayPaginator paginator = ApiGatewayPaginator.builder()
+                .client(mockClient)
+                .request(ApiGatewayRequest.builder("localhost", "/items").build())
+                .tokenStrategy(PageTokenStrategy.queryParameter("nextToken", page -> pages.size() < 3 ? "more" : null))
+            .build();
+
+        try (Stream<Integer> items = paginator.items(page -> Stream.of(1, 2))) {
+            assertEquals(6, items.count());
+        }
+
+        assertEquals(3, pages.size());
+        for (ApiGatewayResponse page : pages) {
+            verify(page).close();
+        }
+    }
+
+    @Test
+    public void testLinkHeader() {
+        assertEquals(
+            "/items?page=2",
+            PageTokenStrategy.LinkHeaderStrategy.nextTarget(
+                "</items?page=1>; rel=\"prev\", </items?page=2>; rel=\"next\", </items?page=9>; rel=\"last\""
+            )
+        );
+        assertNull(PageTokenStrategy.LinkHeaderStrategy.nextTarget("</items?page=1>; rel=\"prev\""));
+
+        ApiGatewayRequest next = PageTokenStrategy.linkHeader().nextRequest(
+            ApiGatewayRequest.builder("localhost", "/v1/items").setApiKey("key").build(),
+            "items?page=2"
+        );
+
+        assertEquals("localhost", next.getHost());
+        assertEquals(443, next.getPort());
+        assertEquals("/v1/items", next.getPath());
+        assertEquals(List.of("2"), next.getQueryParameters().get("page"));
+        assertEquals("key", next.getApiKey());
+    }
+
+    private void scenario(int pageCount, int statusCode) {
+        doAnswer(invocation -> {
+            ApiGatewayRequest request = invocation.getArgument(0);
+
+            int page = Integer.parseInt(
+                request.getQueryParameters().getOrDefault("nextToken", List.of("0")).get(0)
+            );
+
+            String body = page + 1 < pageCount ?
+                "{\"a\":" + page + ",\"next\":\"" + (page + 1) + "\"}" :
+                "{\"a\":" + page + "}";
+
+            Buffer buffer = new Buffer(64);
+            buffer.write(body.getBytes(StandardCharsets.UTF_8));
+
+            return CompletableFuture.completedFuture(
+                SimpleApiGatewayResponse.builder()
+                    .objectMapper(request.getMapper())
+                    .statusCode(statusCode)
+                    .successful(statusCode < 300)
+                    .headers(Map.of())
+                    .body(buffer.asByteBuffer())
+                .build()
+            );
+        })
+            .when(mockClient)
+                .invoke(any(ApiGatewayRequest.class));
+    }
+}
@@ -0,0 +1,289 @@
+package org.rdelfino.apigateway.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ApiGatewaySimulatorTest {
+
+    StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "456"));
+
+    @Test
+    @SneakyThrows
+    public void testVerifiesSignatures() {
+        ApiGatewaySimulator simulator = simulator().build();
+
+        ApiGatewayClient client = ApiGatewayClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+            .build();
+
+        ApiGatewayResponse response = client.invoke(
+            ApiGatewayRequest.builder("api.example.com", "/items/42")
+                .setMethod("POST")
+                .addQueryParameter("q", "a b")
+                .setJsonPayload(Map.of("name", "thing"))
+            .build()
+        );
+
+        assertEquals(200, response.getStatusCode());
+        JsonNode echoed = response.readOject(JsonNode.class);
+        assertEquals("42", echoed.get("id").asText());
+        assertEquals("thing", echoed.get("name").asText());
+
+        ApiGatewayClient impostor = ApiGatewayClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "789")))
+                .region(Region.US_WEST_2)
+            .build();
+
+        assertEquals(403, impostor.invoke(ApiGatewayRequest.builder("api.example.com", "/items/42").build()).getStatusCode());
+        assertEquals(1, simulator.getRejectedCount().get());
+    }
+
+    @Test
+    public void testThrottlesApiKeys() {
+        ApiGatewaySimulator simulator = simulator()
+                .apiKey("key", ApiGatewaySimulator.UsagePlan.builder().rateLimit(1).burstLimit(2).build())
+                .clock(Clock.fixed(Instant.now(), ZoneOffset.UTC))
+                .latency(Duration.ofMillis(5))
+            .build();
+
+        ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+            .build();
+
+        ApiGatewayRequest request = ApiGatewayRequest.builder("api.example.com", "/items/1")
+                .setMethod("POST")
+                .setApiKey("key")
+            .build();
+
+        assertEquals(200, client.invoke(request).join().getStatusCode());
+        assertEquals(200, client.invoke(request).join().getStatusCode());
+
+        ApiGatewayResponse throttled = client.invoke(request).join();
+        assertEquals(429, throttled.getStatusCode());
+        assertEquals("Too Many Requests", throttled.readOject(JsonNode.class).get("message").asText());
+
+        ApiGatewayRequest unknownKey = request.toBuilder().setApiKey("other").build();
+        assertEquals(403, client.invoke(unknownKey).join().getStatusCode());
+
+        simulator.close();
+    }
+
+    @Test
+    @SneakyThrows
+    public void testLoopbackServer() {
+        ApiGatewaySimulator simulator = ApiGatewaySimulator.builder()
+                .route(ApiGatewaySimulator.Route.of("GET", "/files/{path+}", request ->
+                    ApiGatewaySimulator.Response.json(200, Map.of("path", request.getPathParameters().get("path")))
+                ))
+            .build();
+
+        try (ApiGatewaySimulator.Server server = simulator.start(0)) {
+            HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://localhost:" + server.getPort() + "/files/a/b.txt").openConnection();
+
+            assertEquals(200, connection.getResponseCode());
+            try (InputStream body = connection.getInputStream()) {
+                assertTrue(new String(body.readAllBytes()).contains("\"a/b.txt\""));
+            }
+
+            HttpURLConnection missing = (HttpURLConnection)
+                new URL("http://localhost:" + server.getPort() + "/other").openConnection();
+            assertEquals(403, missing.getResponseCode());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    public void testRecordAndReplay(@TempDir Path directory) {
+        Path log = directory.resolve("traffic.log");
+        ApiGatewaySimulator simulator = simulator().build();
+
+        try (TrafficRecorder recorder = TrafficRecorder.open(log, true, List.of("X-Auth-Scheme"))) {
+            ApiGatewayClient client = ApiGatewayClient.builder()
+                    .httpClient(simulator)
+                    .credentialsProvider(credentials)
+                    .region(Region.US_WEST_2)
+                    .trafficRecorder(recorder)
+                .build();
+
+            for (int i = 0; i < 5; i++) {
+                client.invoke(
+                    ApiGatewayRequest.builder("api.example.com", "/items/" + i)
+                        .setMethod("POST")
+                        .setApiKey("secret")
+                        .setHeader("Authorization", "Bearer bearer-secret")
+                        .setHeader("Cookie", "session=cookie-secret")
+                        .setHeader("X-Tenant-Token", "token-secret")
+                        .setHeader("X-Auth-Scheme", "allowed-scheme")
+                        .setHeader("X-Request-Id", "request-" + i)
+                        .setQueryParameter("access_token", "query-secret")
+                        .setQueryParameter("page", "page-" + i)
+                        .setJsonPayload(Map.of("name", "thing" + i))
+                    .build()
+                ).close();
+            }
+            client.invoke(ApiGatewayRequest.builder("api.example.com", "/other").build()).close();
+
+            assertEquals(6, recorder.getRecordedCount().get());
+        }
+
+        String recorded = new String(Files.readAllBytes(log), StandardCharsets.UTF_8);
+        assertFalse(recorded.contains("secret"));
+        assertFalse(recorded.contains("Cookie"));
+        assertTrue(recorded.contains("allowed-scheme"));
+        assertTrue(recorded.contains("request-4"));
+        assertFalse(recorded.contains("access_token"));
+        assertTrue(recorded.contains("page-4"));
+
+        long before = simulator.getRequestCount().get();
+
+        TrafficReplayer.Report report = TrafficReplayer.builder()
+                .client(
+                    ApiGatewayAsyncClient.builder()
+                        .httpClient(simulator)
+                        .credentialsProvider(credentials)
+                        .region(Region.US_WEST_2)
+                    .build()
+                )
+                .log(log)
+                .speedup(10.0)
+            .build()
+            .replay()
+            .join();
+
+        assertEquals(6, report.getSentCount());
+        assertEquals(0, report.getFailedCount());
+        assertEquals(Map.of(200, 5L, 403, 1L), report.getStatusCodes());
+        assertEquals(6, simulator.getRequestCount().get() - before);
+    }
+
+    @Test
+    @SneakyThrows
+    public void testReplayKeepsRecordedOffsets(@TempDir Path directory) {
+        Path log = directory.resolve("traffic.log");
+
+        // appended as calls complete: the call started at 150 ms completed before the one started at 100 ms
+        long start = TimeUnit.SECONDS.toMicros(1_800_000_000L);
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(log))) {
+            TrafficLog.writeHeader(output);
+            for (long offsetMillis : new long[] {0, 50, 150, 100, 200}) {
+                TrafficLog.write(output, new TrafficLog.Entry(
+                    start + TimeUnit.MILLISECONDS.toMicros(offsetMillis), 1_000_000, 200, 2,
+                    "GET", "api.example.com", 443, "/items/" + offsetMillis, Map.of(), Map.of(), false, null
+                ));
+            }
+        }
+
+        TrafficReplayer replayer = TrafficReplayer.builder()
+                .client(
+                    ApiGatewayAsyncClient.builder()
+                        .httpClient(simulator().build())
+                        .credentialsProvider(credentials)
+                        .region(Region.US_WEST_2)
+                    .build()
+                )
+                .log(log)
+                .speedup(10.0)
+            .build();
+
+        List<TrafficLog.Entry> entries = replayer.readEntries();
+        assertEquals(List.of("/items/0", "/items/50", "/items/100", "/items/150", "/items/200"),
+            entries.stream().map(TrafficLog.Entry::getPath).collect(Collectors.toList()));
+
+        long[] expected = {0, 5, 10, 15, 20};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(expected[i]), replayer.delayNanos(start, entries.get(i)));
+        }
+
+        TrafficReplayer.Report report = replayer.replay().join();
+        assertEquals(Map.of(200, 5L), report.getStatusCodes());
+    }
+
+    @Test
+    @SneakyThrows
+    public void testReplaysLogsLongerThanTheReorderBuffer(@TempDir Path directory) {
+        Path log = directory.resolve("traffic.log");
+
+        // every other call completed after the next one started
+        int count = 3 * TrafficReplayer.REORDER_BUFFER_SIZE;
+        long start = TimeUnit.SECONDS.toMicros(1_800_000_000L);
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(log))) {
+            TrafficLog.writeHeader(output);
+            for (int i = 0; i < count; i++) {
+                long offsetMicros = i % 2 == 0 ? i + 1 : i - 1;
+                TrafficLog.write(output, new TrafficLog.Entry(
+                    start + offsetMicros * 1000, 1_000_000, 200, 2,
+                    "GET", "api.example.com", 443, "/items/" + offsetMicros, Map.of(), Map.of(), false, null
+                ));
+            }
+        }
+
+        TrafficReplayer replayer = TrafficReplayer.builder()
+                .client(
+                    ApiGatewayAsyncClient.builder()
+                        .httpClient(simulator().build())
+                        .credentialsProvider(credentials)
+                        .region(Region.US_WEST_2)
+                    .build()
+                )
+                .log(log)
+                .speedup(2.0)
+            .build();
+
+        List<TrafficLog.Entry> entries = replayer.readEntries();
+        for (int i = 0; i < count; i++) {
+            assertEquals("/items/" + i, entries.get(i).getPath());
+        }
+
+        // lasting longer than the calls are scheduled ahead
+        TrafficReplayer.Report report = replayer.replay().join();
+        assertTrue(report.getElapsed().toMillis() >= 1500, "elapsed: " + report.getElapsed());
+        assertEquals(count, report.getSentCount());
+        assertEquals(Map.of(200, (long) count), report.getStatusCodes());
+    }
+
+    private ApiGatewaySimulator.ApiGatewaySimulatorBuilder simulator() {
+        return ApiGatewaySimulator.builder()
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .route(ApiGatewaySimulator.Route.of("ANY", "/items/{id}", request -> {
+                    Map<String, Object> echo = new HashMap<>();
+                    echo.put("id", request.getPathParameters().get("id"));
+                    if (request.getBody().length > 0) {
+                        echo.putAll(request.readJson(Map.class));
+                    }
+                    return ApiGatewaySimulator.Response.json(200, echo);
+                }));
+    }
+}
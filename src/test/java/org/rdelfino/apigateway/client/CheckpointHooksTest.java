@@ -0,0 +1,97 @@
+package org.rdelfino.apigateway.client;
+
+import org.crac.Core;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointHooksTest {
+
+    AwsCredentials credentials = AwsBasicCredentials.create("123", "456");
+
+    AtomicInteger resolved = new AtomicInteger();
+
+    AwsCredentialsProvider credentialsProvider = () -> {
+        resolved.incrementAndGet();
+        return credentials;
+    };
+
+    ApiGatewayRequest request = ApiGatewayRequest.builder("api.example.com", "/items").build();
+
+    @BeforeEach
+    public void resetCore() {
+        Core.reset();
+    }
+
+    @Test
+    public void testResetsStateOnRestore() throws Exception {
+        JdkAsyncHttpClient httpClient = JdkAsyncHttpClient.builder().build();
+
+        ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+                .httpClient(httpClient)
+                .credentialsProvider(credentialsProvider)
+                .region(Region.US_WEST_2)
+                .signatureCacheTtl(Duration.ofMinutes(1))
+                .checkpointWarmUp(WarmUpPlan.builder().request(request).payloadType(Item.class).build())
+            .build();
+
+        assertNotNull(client.checkpointHooks);
+        assertEquals(List.of(client.checkpointHooks), Core.resources());
+
+        client.signedRequestFactory.create(request);
+        assertEquals(1, client.signedRequestFactory.signatureCache.entries.size());
+        HttpClient connections = httpClient.getHttpClient();
+
+        Core.checkpointRestore();
+
+        // primed before the checkpoint: credentials resolved and the request signed, then discarded
+        assertEquals(3, resolved.get());
+        assertTrue(client.signedRequestFactory.signatureCache.entries.isEmpty());
+        assertNotSame(connections, httpClient.getHttpClient());
+
+        client.signedRequestFactory.create(request);
+        assertEquals(4, resolved.get());
+        assertEquals(1, client.signedRequestFactory.signatureCache.entries.size());
+    }
+
+    @Test
+    public void testKeepsGivenHttpClient() {
+        HttpClient connections = HttpClient.newHttpClient();
+        JdkAsyncHttpClient httpClient = JdkAsyncHttpClient.builder().httpClient(connections).build();
+
+        httpClient.resetConnections();
+        assertSame(connections, httpClient.getHttpClient());
+    }
+
+    @Test
+    public void testRegistersSyncClients() throws Exception {
+        ApiGatewayClient client = ApiGatewayClient.builder()
+                .httpClient(ApiGatewaySimulator.builder().build())
+                .credentialsProvider(credentialsProvider)
+                .region(Region.US_WEST_2)
+            .build();
+
+        assertEquals(List.of(client.checkpointHooks), Core.resources());
+
+        Core.checkpointRestore();
+        assertEquals(1, resolved.get());
+    }
+
+    static class Item {
+        public String name;
+    }
+}
@@ -0,0 +1,79 @@
+package org.rdelfino.apigateway.client;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlightRecorderEventsTest {
+
+    StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "456"));
+
+    @Test
+    public void testEmitsEvents(@TempDir Path directory) throws Exception {
+        ApiGatewaySimulator simulator = ApiGatewaySimulator.builder()
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .route(ApiGatewaySimulator.Route.of("POST", "/items", request ->
+                    ApiGatewaySimulator.Response.json(201, Map.of("id", "1"))
+                ))
+            .build();
+
+        // new credentials with the same values on every call, refreshed only once
+        ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(() -> AwsBasicCredentials.create("123", "456"))
+                .region(Region.US_WEST_2)
+            .build();
+
+        ApiGatewayRequest request = ApiGatewayRequest.builder("api.example.com", "/items")
+                .setMethod("POST")
+                .setJsonPayload(Map.of("data", "x".repeat(4096)))
+            .build();
+
+        Path file = directory.resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.rdelfino.apigateway.Invocation");
+            recording.enable("org.rdelfino.apigateway.CredentialsRefresh");
+            recording.enable("org.rdelfino.apigateway.BufferGrowth");
+            recording.start();
+
+            assertEquals(201, client.invoke(request).join().getStatusCode());
+            assertEquals(201, client.invoke(request).join().getStatusCode());
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        Map<String, List<RecordedEvent>> events = RecordingFile.readAllEvents(file).stream()
+            .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+
+        List<RecordedEvent> invocations = events.get("org.rdelfino.apigateway.Invocation");
+        assertEquals(2, invocations.size());
+        RecordedEvent invocation = invocations.get(0);
+        assertEquals("POST", invocation.getString("method"));
+        assertEquals("/items", invocation.getString("path"));
+        assertEquals(201, invocation.getInt("statusCode"));
+        assertEquals(request.getPayloadSource().size(), invocation.getLong("bytesOut"));
+        assertTrue(invocation.getLong("bytesOut") > 4096);
+        assertTrue(invocation.getLong("bytesIn") > 0);
+        assertFalse(invocation.getString("requestId").isEmpty());
+
+        assertEquals(1, events.get("org.rdelfino.apigateway.CredentialsRefresh").size());
+        assertFalse(events.get("org.rdelfino.apigateway.BufferGrowth").isEmpty());
+        assertFalse(events.containsKey("org.rdelfino.apigateway.SlowInvocation"));
+    }
+}
@@ -0,0 +1,173 @@
+package org.rdelfino.apigateway.client;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.async.AsyncExecuteRequest;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JdkAsyncHttpClientTest {
+
+    StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "456"));
+
+    ApiGatewaySimulator simulator = ApiGatewaySimulator.builder()
+            .route(ApiGatewaySimulator.Route.of("POST", "/items", request ->
+                ApiGatewaySimulator.Response.json(201, request.readJson(Map.class))
+            ))
+            .route(ApiGatewaySimulator.Route.of("GET", "/large", request ->
+                ApiGatewaySimulator.Response.json(200, Map.of("data", "x".repeat(300_000)))
+            ))
+        .build();
+
+    JdkAsyncHttpClient jdkClient = JdkAsyncHttpClient.builder().build();
+
+    @Test
+    public void testInvokesThroughJdkClient() throws Exception {
+        try (ApiGatewaySimulator.Server server = simulator.start(0)) {
+            ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+                    .httpClient(loopback(server.getPort()))
+                    .credentialsProvider(credentials)
+                    .region(Region.US_WEST_2)
+                .build();
+
+            ApiGatewayResponse created = client.invoke(
+                ApiGatewayRequest.builder("api.example.com", "/items")
+                    .setMethod("POST")
+                    .setJsonPayload(Map.of("name", "y".repeat(100_000)))
+                    .build()
+            ).join();
+
+            assertEquals(201, created.getStatusCode());
+            assertEquals("y".repeat(100_000), created.readOject(Map.class).get("name"));
+
+            ApiGatewayResponse large = client.invoke(ApiGatewayRequest.builder("api.example.com", "/large").build()).join();
+
+            assertEquals(200, large.getStatusCode());
+            assertEquals("x".repeat(300_000), large.readOject(Map.class).get("data"));
+
+            assertEquals(403, client.invoke(ApiGatewayRequest.builder("api.example.com", "/other").build()).join().getStatusCode());
+        }
+    }
+
+    @Test
+    public void testFailsOnConnectionErrors() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+                .httpClient(loopback(port))
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+            .build();
+
+        CompletionException failure = assertThrows(
+            CompletionException.class,
+            () -> client.invoke(ApiGatewayRequest.builder("api.example.com", "/items").build()).join()
+        );
+        assertInstanceOf(ConnectException.class, failure.getCause());
+    }
+
+    @Test
+    public void testDeliversChunksOnDemand() {
+        JdkAsyncHttpClient.ResponseBody body = new JdkAsyncHttpClient.ResponseBody();
+
+        AtomicInteger upstreamRequests = new AtomicInteger();
+        body.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                upstreamRequests.addAndGet((int) n);
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+
+        List<ByteBuffer> received = new ArrayList<>();
+        Subscription[] subscription = new Subscription[1];
+        boolean[] completed = new boolean[1];
+        body.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription[0] = s;
+            }
+
+            @Override
+            public void onNext(ByteBuffer chunk) {
+                received.add(chunk);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onComplete() {
+                completed[0] = true;
+            }
+        });
+
+        assertEquals(0, upstreamRequests.get(), "nothing is read before the handler asks for it");
+
+        subscription[0].request(1);
+        assertEquals(1, upstreamRequests.get());
+
+        body.onNext(List.of(ByteBuffer.wrap(new byte[1]), ByteBuffer.wrap(new byte[2]), ByteBuffer.wrap(new byte[3])));
+        assertEquals(1, received.size());
+
+        subscription[0].request(2);
+        assertEquals(3, received.size());
+        assertEquals(1, upstreamRequests.get(), "the next list is only read once the last one is consumed");
+
+        subscription[0].request(1);
+        assertEquals(2, upstreamRequests.get());
+
+        body.onComplete();
+        assertTrue(completed[0]);
+        assertTrue(body.getBody().toCompletableFuture().isDone());
+        assertFalse(body.getBody().toCompletableFuture().isCompletedExceptionally());
+    }
+
+    // sends the signed requests to the loopback server, over plain HTTP
+    private SdkAsyncHttpClient loopback(int port) {
+        return new SdkAsyncHttpClient() {
+            @Override
+            public CompletableFuture<Void> execute(AsyncExecuteRequest request) {
+                return jdkClient.execute(
+                    AsyncExecuteRequest.builder()
+                        .request(request.request().toBuilder().protocol("http").host("localhost").port(port).build())
+                        .requestContentPublisher(request.requestContentPublisher())
+                        .responseHandler(request.responseHandler())
+                        .fullDuplex(request.fullDuplex())
+                    .build()
+                );
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,174 @@
+package org.rdelfino.apigateway.client;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryBudgetTest {
+
+    StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "456"));
+
+    ApiGatewaySimulator simulator = ApiGatewaySimulator.builder()
+            .credentialsProvider(credentials)
+            .region(Region.US_WEST_2)
+            .latency(Duration.ofMillis(5))
+            .route(ApiGatewaySimulator.Route.of("POST", "/large", request ->
+                ApiGatewaySimulator.Response.json(200, Map.of("data", "x".repeat(300_000)))
+            ))
+        .build();
+
+    ApiGatewayRequest request = ApiGatewayRequest.builder("api.example.com", "/large")
+            .setMethod("POST")
+            .setJsonPayload(Map.of("data", "y".repeat(50_000)))
+        .build();
+
+    @Test
+    public void testQueuesAndPausesOverBudget() {
+        MemoryBudget budget = new MemoryBudget(100);
+
+        CompletableFuture<Void> first = budget.reserve(60);
+        CompletableFuture<Void> second = budget.reserve(60);
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+
+        budget.release(60);
+        assertTrue(second.isDone());
+        budget.release(60);
+
+        // larger than the whole budget, reserved once nothing else is
+        assertTrue(budget.reserve(500).isDone());
+        budget.release(500);
+
+        MemoryBudget.Receiver oldest = budget.receiver();
+        MemoryBudget.Receiver newest = budget.receiver();
+        AtomicBoolean resumed = new AtomicBoolean();
+
+        assertTrue(oldest.received(150, () -> {}), "the oldest response always proceeds");
+        assertFalse(newest.received(10, () -> resumed.set(true)));
+
+        oldest.close();
+        assertTrue(resumed.get());
+        assertEquals(10, budget.getUsed());
+
+        newest.close();
+        assertEquals(0, budget.getUsed());
+    }
+
+    @Test
+    public void testWithdrawsCancelledAndExpiredReservations() {
+        MemoryBudget budget = new MemoryBudget(100);
+
+        assertTrue(budget.reserve(60).isDone());
+        CompletableFuture<Void> cancelled = budget.reserve(60);
+        CompletableFuture<Void> expiring = budget.reserve(60, Instant.now().plusMillis(50));
+        CompletableFuture<Void> waiting = budget.reserve(40);
+        assertFalse(waiting.isDone());
+
+        // the ones ahead leave the queue, the last one fits beside the first
+        cancelled.cancel(false);
+        CompletionException expired = assertThrows(CompletionException.class, expiring::join);
+        assertInstanceOf(RequestRejectedException.class, expired.getCause());
+        waiting.join();
+        assertEquals(100, budget.getUsed());
+
+        budget.release(60);
+        budget.release(40);
+        assertEquals(0, budget.getUsed());
+    }
+
+    @Test
+    public void testEndsSpanOfRequestsNeverAdmitted() {
+        TracerTest.RecordingSpan span = new TracerTest.RecordingSpan(TraceContext.newTrace(true));
+
+        ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .maxInFlightBytes(100L)
+                .tracer(apiGatewayRequest -> span)
+            .build();
+
+        // the budget stays taken until the deadline of the request passes
+        client.memoryBudget.reserve(100).join();
+
+        CompletableFuture<ApiGatewayResponse> response = client.invoke(
+            request.toBuilder()
+                    .setDeadline(Instant.now().plusMillis(50))
+                .build()
+        );
+
+        CompletionException rejected = assertThrows(CompletionException.class, response::join);
+        assertInstanceOf(RequestRejectedException.class, rejected.getCause());
+        assertEquals(1, span.ended.size());
+        assertInstanceOf(RequestRejectedException.class, span.failure);
+
+        client.memoryBudget.release(100);
+        assertEquals(0, client.memoryBudget.getUsed());
+    }
+
+    @Test
+    public void testBoundsBytesInFlight() {
+        ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .maxInFlightBytes(200_000L)
+            .build();
+
+        List<CompletableFuture<ApiGatewayResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            responses.add(client.invoke(request));
+        }
+
+        for (CompletableFuture<ApiGatewayResponse> response : responses) {
+            assertEquals(200, response.join().getStatusCode());
+            assertTrue(response.join().getBody().remaining() > 300_000);
+        }
+        assertEquals(0, client.memoryBudget.getUsed());
+    }
+
+    @Test
+    public void testRejectsOversizedResponses() throws Exception {
+        ApiGatewayAsyncClient asyncClient = ApiGatewayAsyncClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .maxResponseSize(100_000L)
+            .build();
+
+        CompletionException failure = assertThrows(CompletionException.class, () -> asyncClient.invoke(request).join());
+        assertInstanceOf(ResponseTooLargeException.class, failure.getCause());
+        assertEquals(100_000L, ((ResponseTooLargeException) failure.getCause()).getMaxResponseSize());
+
+        ApiGatewayRequest allowed = request.toBuilder().setMaxResponseSize(1_000_000L).build();
+        assertEquals(200, asyncClient.invoke(allowed).join().getStatusCode());
+
+        ApiGatewayClient client = ApiGatewayClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+            .build();
+
+        assertEquals(200, client.invoke(request).getStatusCode());
+        assertThrows(
+            ResponseTooLargeException.class,
+            () -> client.invoke(request.toBuilder().setMaxResponseSize(100_000L).build())
+        );
+    }
+}
@@ -0,0 +1,288 @@
+package org.rdelfino.apigateway.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseCacheTest {
+
+    StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "456"));
+
+    AtomicInteger calls = new AtomicInteger();
+    AtomicInteger notModified = new AtomicInteger();
+
+    ApiGatewaySimulator simulator = ApiGatewaySimulator.builder()
+            .route(ApiGatewaySimulator.Route.of("GET", "/reference", request -> {
+                calls.incrementAndGet();
+                List<String> ifNoneMatch = request.getHeaders().entrySet().stream()
+                    .filter(header -> header.getKey().equalsIgnoreCase("If-None-Match"))
+                    .map(Map.Entry::getValue)
+                    .findFirst()
+                    .orElse(List.of());
+                if (ifNoneMatch.contains("\"v1\"")) {
+                    notModified.incrementAndGet();
+                    return ApiGatewaySimulator.Response.builder().statusCode(304).build();
+                }
+                return ApiGatewaySimulator.Response.builder()
+                    .statusCode(200)
+                    .header("Content-Type", List.of("application/json"))
+                    .header("ETag", List.of("\"v1\""))
+                    .body("{\"countries\":[\"AR\",\"BR\"]}".getBytes(StandardCharsets.UTF_8))
+                    .build();
+            }))
+            .route(ApiGatewaySimulator.Route.of("GET", "/large", request -> {
+                calls.incrementAndGet();
+                return ApiGatewaySimulator.Response.builder()
+                    .statusCode(200)
+                    .header("Cache-Control", List.of("max-age=0"))
+                    .header("ETag", List.of("\"" + calls.get() + "\""))
+                    .body(new byte[256 * 1024])
+                    .build();
+            }))
+            .route(ApiGatewaySimulator.Route.of("GET", "/private", request -> {
+                calls.incrementAndGet();
+                return ApiGatewaySimulator.Response.builder()
+                    .statusCode(200)
+                    .header("Cache-Control", List.of("no-store"))
+                    .build();
+            }))
+        .build();
+
+    ApiGatewayRequest request = ApiGatewayRequest.builder("api.example.com", "/reference").build();
+
+    AtomicLong now = new AtomicLong(Instant.parse("2026-01-01T00:00:00Z").toEpochMilli());
+
+    Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(now.get());
+        }
+    };
+
+    @Test
+    public void testServesAcrossRestarts(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("responses.cache");
+
+        try (ResponseCache cache = ResponseCache.open(file, Duration.ofMinutes(1), Duration.ofHours(1), clock)) {
+            ApiGatewayAsyncClient client = asyncClient(cache);
+
+            assertEquals(List.of("AR", "BR"), client.invoke(request).join().readOject(Map.class).get("countries"));
+            assertEquals(1, calls.get());
+            cache.awaitStored();
+
+            assertEquals(200, client.invoke(request).join().getStatusCode());
+            assertEquals(1, calls.get());
+            assertEquals(1, cache.getHitCount().get());
+
+            // stale: served right away, and fetched again in the background
+            now.addAndGet(TimeUnit.MINUTES.toMillis(2));
+            assertEquals(200, client.invoke(request).join().getStatusCode());
+            assertEquals(1, cache.getStaleHitCount().get());
+            awaitNotModified(cache, 1);
+            cache.awaitStored();
+            assertEquals(1, notModified.get());
+
+            // renewed by the 304
+            assertEquals(200, client.invoke(request).join().getStatusCode());
+            assertEquals(2, cache.getHitCount().get());
+        }
+
+        try (ResponseCache cache = ResponseCache.open(file, Duration.ofMinutes(1), Duration.ofHours(1), clock)) {
+            assertEquals(1, cache.size());
+
+            ApiGatewayClient client = syncClient(cache);
+            try (ApiGatewayResponse response = client.invoke(request)) {
+                assertEquals("{\"countries\":[\"AR\",\"BR\"]}", StandardCharsets.UTF_8.decode(response.getBody()).toString());
+            }
+            assertEquals(2, calls.get());
+
+            // too stale to be served, fetched again with If-None-Match
+            now.addAndGet(TimeUnit.HOURS.toMillis(2));
+            try (ApiGatewayResponse response = client.invoke(request)) {
+                assertEquals(200, response.getStatusCode());
+                assertEquals("{\"countries\":[\"AR\",\"BR\"]}", StandardCharsets.UTF_8.decode(response.getBody()).toString());
+            }
+            assertEquals(3, calls.get());
+            assertEquals(2, notModified.get());
+            assertEquals(1, cache.getMissCount().get());
+        }
+    }
+
+    @Test
+    public void testSkipsUncacheableResponses(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("responses.cache");
+
+        try (ResponseCache cache = ResponseCache.open(file, Duration.ofMinutes(1), Duration.ofHours(1), clock)) {
+            ApiGatewayClient client = syncClient(cache);
+
+            ApiGatewayRequest uncached = ApiGatewayRequest.builder("api.example.com", "/private").build();
+            client.invoke(uncached).close();
+            client.invoke(uncached).close();
+            assertEquals(2, calls.get());
+
+            client.invoke(request).close();
+            client.invoke(request.toBuilder().setQueryParameter("region", "south").build()).close();
+            assertEquals(4, calls.get());
+            assertEquals(2, cache.size());
+
+            assertThrows(IOException.class, () -> ResponseCache.open(file, Duration.ZERO, Duration.ZERO));
+        }
+
+        // a record cut short by a crash is ignored
+        Files.write(file, new byte[] {0, 0, 1, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (ResponseCache cache = ResponseCache.open(file, Duration.ofMinutes(1), Duration.ofHours(1), clock)) {
+            assertEquals(2, cache.size());
+            syncClient(cache).invoke(request).close();
+            assertEquals(4, calls.get());
+        }
+    }
+
+    @Test
+    public void testCompactsWhileOpen(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("responses.cache");
+        String reference = "{\"countries\":[\"AR\",\"BR\"]}";
+
+        try (ResponseCache cache = ResponseCache.open(file, Duration.ofMinutes(1), Duration.ofHours(1), clock)) {
+            ApiGatewayClient client = syncClient(cache);
+            client.invoke(request).close();
+
+            try (ApiGatewayResponse cached = client.invoke(request)) {
+                assertEquals(1, cache.getHitCount().get());
+
+                // every response replaces the previous one, which is left unused in the file
+                ApiGatewayRequest large = ApiGatewayRequest.builder("api.example.com", "/large").build();
+                for (int i = 0; i < 40; i++) {
+                    client.invoke(large).close();
+                }
+                assertEquals(0, cache.getDroppedCount().get());
+                assertTrue(Files.size(file) < 4 * 1024 * 1024, "file size: " + Files.size(file));
+
+                // read from the file replaced by the compaction
+                assertEquals(reference, StandardCharsets.UTF_8.decode(cached.getBody()).toString());
+            }
+
+            try (ApiGatewayResponse cached = client.invoke(request)) {
+                assertEquals(reference, StandardCharsets.UTF_8.decode(cached.getBody()).toString());
+            }
+            assertEquals(2, cache.getHitCount().get());
+        }
+
+        try (ResponseCache cache = ResponseCache.open(file, Duration.ofMinutes(1), Duration.ofHours(1), clock)) {
+            assertEquals(2, cache.size());
+            try (ApiGatewayResponse cached = syncClient(cache).invoke(request)) {
+                assertEquals(reference, StandardCharsets.UTF_8.decode(cached.getBody()).toString());
+            }
+            assertEquals(1, cache.getHitCount().get());
+        }
+    }
+
+    @Test
+    public void testDropsResponsesNotRevalidatedForADay(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("responses.cache");
+
+        try (ResponseCache cache = ResponseCache.open(file, Duration.ofMinutes(1), Duration.ofHours(1), clock)) {
+            ApiGatewayClient client = syncClient(cache);
+            for (int i = 0; i < 4; i++) {
+                client.invoke(ApiGatewayRequest.builder("api.example.com", "/large").setQueryParameter("page", "" + i).build()).close();
+            }
+            assertEquals(4, cache.size());
+        }
+
+        // stale, yet kept to be revalidated with their ETag
+        now.addAndGet(TimeUnit.HOURS.toMillis(12));
+        try (ResponseCache cache = ResponseCache.open(file, Duration.ofMinutes(1), Duration.ofHours(1), clock)) {
+            assertEquals(4, cache.size());
+        }
+
+        now.addAndGet(TimeUnit.DAYS.toMillis(1));
+        try (ResponseCache cache = ResponseCache.open(file, Duration.ofMinutes(1), Duration.ofHours(1), clock)) {
+            assertEquals(0, cache.size());
+        }
+        assertTrue(Files.size(file) < 64 * 1024, "file size: " + Files.size(file));
+    }
+
+    @Test
+    public void testKeysTenantsOnTheirId() {
+        AtomicInteger resolved = new AtomicInteger();
+        SigningContext tenantA = SigningContext.of("arn:aws:iam::111111111111:role/a", () -> {
+            resolved.incrementAndGet();
+            return AwsBasicCredentials.create("AKIDA1", "secretA1");
+        });
+        // the same tenant, its credentials rotated
+        SigningContext tenantARotated = SigningContext.of(
+            "arn:aws:iam::111111111111:role/a",
+            StaticCredentialsProvider.create(AwsBasicCredentials.create("AKIDA2", "secretA2"))
+        );
+        SigningContext tenantB = SigningContext.of("arn:aws:iam::222222222222:role/b", credentials);
+
+        String keyA = ResponseCache.key(request.toBuilder().setSigningContext(tenantA).build());
+        assertEquals(keyA, ResponseCache.key(request.toBuilder().setSigningContext(tenantARotated).build()));
+        assertNotEquals(keyA, ResponseCache.key(request.toBuilder().setSigningContext(tenantB).build()));
+        assertNotEquals(keyA, ResponseCache.key(request));
+        assertEquals(0, resolved.get());
+
+        assertTrue(ResponseCache.isCacheable(request.toBuilder().setSigningContext(tenantA).build()));
+        assertFalse(ResponseCache.isCacheable(request.toBuilder().setSigningContext(SigningContext.of(credentials)).build()));
+    }
+
+    private void awaitNotModified(ResponseCache cache, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.getNotModifiedCount().get() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(cache.getNotModifiedCount().get() >= count);
+    }
+
+    private ApiGatewayAsyncClient asyncClient(ResponseCache cache) {
+        return ApiGatewayAsyncClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .responseCache(cache)
+            .build();
+    }
+
+    private ApiGatewayClient syncClient(ResponseCache cache) {
+        return ApiGatewayClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .responseCache(cache)
+            .build();
+    }
+}
@@ -3,15 +3,34 @@ package org.rdelfino.apigateway.client;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.signer.Aws4Signer;
+import software.amazon.awssdk.auth.signer.params.Aws4SignerParams;
+import software.amazon.awssdk.auth.signer.params.SignerChecksumParams;
+import software.amazon.awssdk.core.checksums.Algorithm;
 import software.amazon.awssdk.http.SdkHttpFullRequest;
+import software.amazon.awssdk.http.SdkHttpMethod;
 import software.amazon.awssdk.regions.Region;
 
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.doReturn;
@@ -91,6 +110,268 @@ class SignedRequestFactoryTest {
         assertNull(sdkHttpFullRequest.contentStreamProvider().orElse(null));
     }
 
+    @Test
+    @SneakyThrows
+    public void testSignatureCache() {
+        AtomicLong now = new AtomicLong(Instant.parse("2026-01-01T00:00:00Z").toEpochMilli());
+
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now.get());
+            }
+        };
+
+        SignedRequestFactory factory = SignedRequestFactory.builder()
+                .signingRegion(Region.US_WEST_2)
+                .credentialsProvider(mockCredentialsProvider)
+                .signatureCacheTtl(Duration.ofSeconds(30))
+                .clock(clock)
+            .build();
+
+        ApiGatewayRequest request = ApiGatewayRequest.builder("localhost", "/items")
+                .addQueryParameter("q1", "v1")
+                .addHeader("h1", "v1")
+            .build();
+
+        SdkHttpFullRequest first = factory.create(request);
+        assertSame(first, factory.create(request));
+
+        // traced requests carry their own propagation headers, and are signed every time
+        TracerTest.RecordingSpan span = new TracerTest.RecordingSpan(TraceContext.newTrace(true));
+        SdkHttpFullRequest traced = factory.create(request, span);
+        assertNotSame(traced, factory.create(request, span));
+        assertEquals(span.context.toTraceparent(), traced.firstMatchingHeader("traceparent").orElseThrow());
+        assertSame(first, factory.create(request));
+
+        // payloads and other methods are never cached
+        ApiGatewayRequest put = scenario("payload");
+        assertNotSame(factory.create(put), factory.create(scenario("payload")));
+
+        now.addAndGet(Duration.ofSeconds(31).toMillis());
+        SdkHttpFullRequest expired = factory.create(request);
+        assertNotSame(first, expired);
+        assertSame(expired, factory.create(request));
+
+        doReturn(AwsBasicCredentials.create("789", "012")).when(mockCredentialsProvider).resolveCredentials();
+        SdkHttpFullRequest rotated = factory.create(request);
+        assertNotSame(expired, rotated);
+        assertTrue(rotated.firstMatchingHeader("Authorization").orElseThrow().contains("789/"));
+
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> SignedRequestFactory.builder()
+                    .signingRegion(Region.US_WEST_2)
+                    .credentialsProvider(mockCredentialsProvider)
+                    .signatureCacheTtl(Duration.ofMinutes(5))
+                .build()
+        );
+    }
+
+    @Test
+    @SneakyThrows
+    public void testPayloadSources(@TempDir Path directory) {
+        Clock clock = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+        SignedRequestFactory factory = SignedRequestFactory.builder()
+                .signingRegion(Region.US_WEST_2)
+                .credentialsProvider(mockCredentialsProvider)
+                .clock(clock)
+            .build();
+
+        byte[] content = "{\"payload\":true}".getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(directory.resolve("payload.json"), content);
+        ByteBuffer direct = ByteBuffer.allocateDirect(content.length).put(content).flip();
+
+        SdkHttpFullRequest fromStream = factory.create(scenario(new String(content, StandardCharsets.UTF_8)));
+        SdkHttpFullRequest fromFile = factory.create(scenario(null).toBuilder().setPayload(file).build());
+        SdkHttpFullRequest fromBuffer = factory.create(scenario(null).toBuilder().setPayload(direct).build());
+
+        // signed exactly as the SDK signer computing the checksum from the payload stream
+        SdkHttpFullRequest expected = Aws4Signer.create().sign(
+            SdkHttpFullRequest.builder()
+                .protocol("https")
+                .method(SdkHttpMethod.PUT)
+                .host("localhost")
+                .port(444)
+                .encodedPath("/path")
+                .putRawQueryParameter("q1", "v1")
+                .putHeader("h1", "v1")
+                .putHeader("Content-Length", String.valueOf(content.length))
+                .contentStreamProvider(() -> new ByteArrayInputStream(content))
+            .build(),
+            Aws4SignerParams.builder()
+                .signingName("execute-api")
+                .signingRegion(Region.US_WEST_2)
+                .awsCredentials(mockCredentialsProvider.resolveCredentials())
+                .checksumParams(
+                    SignerChecksumParams.builder()
+                        .algorithm(Algorithm.SHA256)
+                        .isStreamingRequest(false)
+                        .checksumHeaderName("x-amz-content-sha256")
+                    .build()
+                )
+                .signingClockOverride(clock)
+            .build()
+        );
+
+        for (SdkHttpFullRequest signed : List.of(fromStream, fromFile, fromBuffer)) {
+            assertEquals(expected.headers().get("Authorization"), signed.headers().get("Authorization"));
+            assertEquals(expected.headers().get("x-amz-content-sha256"), signed.headers().get("x-amz-content-sha256"));
+            assertEquals(List.of(String.valueOf(content.length)), signed.headers().get("Content-Length"));
+            assertArrayEquals(content, signed.contentStreamProvider().orElseThrow().newStream().readAllBytes());
+        }
+
+        // and the same when the SDK does not link with the internal signer
+        Aws4SignerParams params = Aws4SignerParams.builder()
+                .signingName("execute-api")
+                .signingRegion(Region.US_WEST_2)
+                .awsCredentials(mockCredentialsProvider.resolveCredentials())
+                .signingClockOverride(clock)
+            .build();
+        for (PayloadSigner signer : List.of(new PayloadSigner(true), new PayloadSigner(false))) {
+            SdkHttpFullRequest signed = signer.sign(
+                expected.toBuilder().removeHeader("Authorization").removeHeader("X-Amz-Date").removeHeader("x-amz-content-sha256"),
+                params,
+                PayloadSource.of(ByteBuffer.wrap(content)).sha256()
+            );
+            assertEquals(expected.headers().get("Authorization"), signed.headers().get("Authorization"));
+            assertEquals(expected.headers().get("x-amz-content-sha256"), signed.headers().get("x-amz-content-sha256"));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    public void testPayloadHashCache() {
+        Clock clock = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+        SignedRequestFactory factory = SignedRequestFactory.builder()
+                .signingRegion(Region.US_WEST_2)
+                .credentialsProvider(mockCredentialsProvider)
+                .payloadHashCacheSize(16)
+                .clock(clock)
+            .build();
+
+        // serialized payloads are hashed while being written
+        ApiGatewayRequest json = scenario(null).toBuilder().setJsonPayload(List.of(1, 2, 3)).build();
+        assertArrayEquals(
+            PayloadSource.newSha256().digest("[1,2,3]".getBytes(StandardCharsets.UTF_8)),
+            json.getPayloadSource().knownSha256()
+        );
+
+        ApiGatewayRequest first = scenario("same payload");
+        ApiGatewayRequest second = scenario("same payload");
+        ApiGatewayRequest other = scenario("same-payload");
+
+        SdkHttpFullRequest signedFirst = factory.create(first);
+        SdkHttpFullRequest signedSecond = factory.create(second);
+        SdkHttpFullRequest signedOther = factory.create(other);
+
+        assertSame(first.getPayloadSource().knownSha256(), second.getPayloadSource().knownSha256());
+        assertFalse(Arrays.equals(first.getPayloadSource().knownSha256(), other.getPayloadSource().knownSha256()));
+
+        assertEquals(signedFirst.headers().get("Authorization"), signedSecond.headers().get("Authorization"));
+        assertNotEquals(signedFirst.headers().get("Authorization"), signedOther.headers().get("Authorization"));
+
+        // cached payloads are copies, unaffected by callers reusing their buffers
+        byte[] reused = "reused buffer".getBytes(StandardCharsets.UTF_8);
+        ApiGatewayRequest original = scenario(null).toBuilder().setPayload(ByteBuffer.wrap(reused)).build();
+        factory.create(original);
+        Arrays.fill(reused, (byte) ' ');
+
+        ApiGatewayRequest again = scenario(null).toBuilder()
+                .setPayload(ByteBuffer.wrap("reused buffer".getBytes(StandardCharsets.UTF_8)))
+            .build();
+        factory.create(again);
+        assertSame(original.getPayloadSource().knownSha256(), again.getPayloadSource().knownSha256());
+    }
+
+    @Test
+    @SneakyThrows
+    public void testSigningContexts() {
+        AtomicLong now = new AtomicLong(Instant.parse("2026-01-01T00:00:00Z").toEpochMilli());
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now.get());
+            }
+        };
+
+        SignedRequestFactory factory = SignedRequestFactory.builder()
+                .signingRegion(Region.US_WEST_2)
+                .credentialsProvider(mockCredentialsProvider)
+                .signatureCacheTtl(Duration.ofMinutes(1))
+                .maxSigningContexts(2)
+                .signingContextTtl(Duration.ofMinutes(10))
+                .clock(clock)
+            .build();
+
+        SigningContext tenantA = SigningContext.of(() -> AwsBasicCredentials.create("AKIDTENANTA", "secretA"));
+        SigningContext tenantB = SigningContext.of(
+            () -> AwsBasicCredentials.create("AKIDTENANTB", "secretB"),
+            Region.EU_WEST_1
+        );
+        SigningContext tenantC = SigningContext.of(() -> AwsBasicCredentials.create("AKIDTENANTC", "secretC"));
+
+        ApiGatewayRequest get = ApiGatewayRequest.builder("localhost", "/items").build();
+
+        assertTrue(authorization(factory.create(get)).contains("Credential=123/20260101/us-west-2/execute-api/"));
+        assertTrue(authorization(factory.create(signedWith(get, tenantA))).contains("Credential=AKIDTENANTA/20260101/us-west-2/"));
+        assertTrue(authorization(factory.create(signedWith(get, tenantB))).contains("Credential=AKIDTENANTB/20260101/eu-west-1/"));
+
+        // equal contexts share their signing state
+        assertEquals(tenantA, SigningContext.of(tenantA.getCredentialsProvider(), null));
+        factory.create(signedWith(get, SigningContext.of(tenantA.getCredentialsProvider())));
+        assertEquals(2, factory.signingContexts.size());
+
+        // bounded: tenant B, the least recently used, is evicted
+        factory.create(signedWith(get, tenantC));
+        assertEquals(2, factory.signingContexts.size());
+        assertNull(factory.signingContexts.get(tenantB));
+
+        // expiring: unused tenants are discarded as others are added
+        now.addAndGet(Duration.ofMinutes(5).toMillis());
+        factory.create(signedWith(get, tenantC));
+        now.addAndGet(Duration.ofMinutes(6).toMillis());
+        factory.create(signedWith(get, tenantB));
+        assertNull(factory.signingContexts.get(tenantA));
+        assertEquals(2, factory.signingContexts.size());
+
+        // the signature cache keeps the signatures of each tenant and region apart
+        SigningContext tenantBWest = SigningContext.of(tenantB.getCredentialsProvider(), Region.US_WEST_2);
+        assertTrue(authorization(factory.create(signedWith(get, tenantBWest))).contains("/us-west-2/"));
+        assertTrue(authorization(factory.create(signedWith(get, tenantB))).contains("/eu-west-1/"));
+        assertTrue(authorization(factory.create(get)).contains("Credential=123/"));
+    }
+
+    private static ApiGatewayRequest signedWith(ApiGatewayRequest request, SigningContext context) {
+        return request.toBuilder().setSigningContext(context).build();
+    }
+
+    private static String authorization(SdkHttpFullRequest request) {
+        return request.firstMatchingHeader("Authorization").orElseThrow();
+    }
+
     private ApiGatewayRequest scenario(String content) {
         return ApiGatewayRequest
                 .builder("localhost")
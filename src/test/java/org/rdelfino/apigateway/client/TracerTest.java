@@ -0,0 +1,134 @@
+package org.rdelfino.apigateway.client;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TracerTest {
+
+    StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "456"));
+
+    Map<String, String> receivedHeaders = new ConcurrentHashMap<>();
+
+    ApiGatewaySimulator simulator = ApiGatewaySimulator.builder()
+            .credentialsProvider(credentials)
+            .region(Region.US_WEST_2)
+            .route(ApiGatewaySimulator.Route.of("POST", "/items", request -> {
+                request.getHeaders().forEach((name, values) -> receivedHeaders.put(name.toLowerCase(), values.get(0)));
+                return ApiGatewaySimulator.Response.json(200, Map.of("id", "1"));
+            }))
+        .build();
+
+    ApiGatewayRequest request = ApiGatewayRequest.builder("api.example.com", "/items")
+            .setMethod("POST")
+            .setJsonPayload(Map.of("name", "item"))
+        .build();
+
+    @Test
+    public void testTracesSyncInvocations() throws IOException {
+        RecordingSpan span = new RecordingSpan(TraceContext.newTrace(true));
+
+        ApiGatewayClient client = ApiGatewayClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .tracer(request -> span)
+            .build();
+
+        assertEquals(200, client.invoke(request).getStatusCode());
+        assertTraced(span);
+    }
+
+    @Test
+    public void testTracesAsyncInvocations() {
+        RecordingSpan span = new RecordingSpan(TraceContext.newTrace(true));
+
+        ApiGatewayAsyncClient client = ApiGatewayAsyncClient.builder()
+                .httpClient(simulator)
+                .credentialsProvider(credentials)
+                .region(Region.US_WEST_2)
+                .tracer(request -> span)
+            .build();
+
+        assertEquals(200, client.invoke(request).join().getStatusCode());
+        assertTraced(span);
+    }
+
+    @Test
+    public void testTraceContext() {
+        TraceContext context = TraceContext.newTrace(true);
+        TraceContext child = context.newChild();
+
+        assertEquals(context.getTraceId(), child.getTraceId());
+        assertEquals(child, TraceContext.fromTraceparent(child.toTraceparent()));
+        assertEquals(
+            "Root=1-" + context.getTraceId().substring(0, 8) + "-" + context.getTraceId().substring(8) +
+                ";Parent=" + context.getSpanId() + ";Sampled=1",
+            context.toXrayTraceId()
+        );
+    }
+
+    private void assertTraced(RecordingSpan span) {
+        assertEquals(span.context.toTraceparent(), receivedHeaders.get("traceparent"));
+        assertEquals(span.context.toXrayTraceId(), receivedHeaders.get("x-amzn-trace-id"));
+
+        assertEquals(
+            List.of(Span.Stage.SERIALIZATION, Span.Stage.CREDENTIALS, Span.Stage.SIGNING, Span.Stage.SEND, Span.Stage.RECEIVE),
+            span.stages
+        );
+        assertNotNull(span.attributes.get(Span.REQUEST_ID));
+        assertEquals(span.context.toXrayTraceId(), span.attributes.get(Span.XRAY_TRACE_ID));
+
+        assertEquals(1, span.ended.size());
+        assertEquals(200, span.ended.get(0).getStatusCode());
+        assertNull(span.failure);
+    }
+
+    static class RecordingSpan implements Span {
+
+        final TraceContext context;
+        final List<Stage> stages = Collections.synchronizedList(new ArrayList<>());
+        final Map<String, String> attributes = new ConcurrentHashMap<>();
+        final List<ApiGatewayResponse> ended = Collections.synchronizedList(new ArrayList<>());
+        volatile Throwable failure;
+
+        RecordingSpan(TraceContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public Map<String, String> propagationHeaders() {
+            return context.toHeaders();
+        }
+
+        @Override
+        public void stage(Stage stage, long startNanos, long endNanos) {
+            assertTrue(startNanos <= endNanos);
+            stages.add(stage);
+        }
+
+        @Override
+        public void attribute(String name, String value) {
+            attributes.put(name, value);
+        }
+
+        @Override
+        public void end(ApiGatewayResponse response, Throwable failure) {
+            ended.add(response);
+            this.failure = failure;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.rdelfino.apigateway.client;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebSocketConnectionsClientTest {
+
+    StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("123", "456"));
+
+    Set<String> connected = ConcurrentHashMap.newKeySet();
+    Map<String, String> received = new ConcurrentHashMap<>();
+
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+
+    ApiGatewaySimulator simulator = ApiGatewaySimulator.builder()
+            .credentialsProvider(credentials)
+            .region(Region.US_WEST_2)
+            .route(ApiGatewaySimulator.Route.of("POST", "/production/@connections/{connectionId}", request -> {
+                int current = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(current, Math::max);
+                try {
+                    String connectionId = request.getPathParameters().get("connectionId");
+                    if (connectionId.startsWith("broken")) {
+                        return ApiGatewaySimulator.Response.json(500, Map.of("message", "Internal server error"));
+                    }
+                    if (!connected.contains(connectionId)) {
+                        return ApiGatewaySimulator.Response.json(410, Map.of());
+                    }
+                    received.put(connectionId, new String(request.getBody(), StandardCharsets.UTF_8));
+                    return ApiGatewaySimulator.Response.builder().statusCode(200).build();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }))
+            .route(ApiGatewaySimulator.Route.of("GET", "/production/@connections/{connectionId}", request ->
+                connected.contains(request.getPathParameters().get("connectionId"))
+                    ? ApiGatewaySimulator.Response.json(200, Map.of(
+                        "connectedAt", "2026-01-01T00:00:00Z",
+                        "lastActiveAt", "2026-01-01T00:05:00Z",
+                        "identity", Map.of("sourceIp", "192.0.2.1", "userAgent", "test")
+                    ))
+                    : ApiGatewaySimulator.Response.json(410, Map.of())
+            ))
+            .route(ApiGatewaySimulator.Route.of("DELETE", "/production/@connections/{connectionId}", request ->
+                connected.remove(request.getPathParameters().get("connectionId"))
+                    ? ApiGatewaySimulator.Response.builder().statusCode(204).build()
+                    : ApiGatewaySimulator.Response.json(410, Map.of())
+            ))
+        .build();
+
+    WebSocketConnectionsClient connections = WebSocketConnectionsClient.builder()
+            .client(
+                ApiGatewayAsyncClient.builder()
+                    .httpClient(simulator)
+                    .credentialsProvider(credentials)
+                    .region(Region.US_WEST_2)
+                    .build()
+            )
+            .endpoint(URI.create("https://abc123.execute-api.us-west-2.amazonaws.com/production"))
+            .maxConcurrency(8)
+        .build();
+
+    @Test
+    public void testManagesConnections() {
+        connected.add("L0SM9cOFvHcCIhw=");
+
+        assertTrue(connections.postToConnection("L0SM9cOFvHcCIhw=", ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8))).join());
+        assertEquals("hello", received.get("L0SM9cOFvHcCIhw="));
+
+        WebSocketConnectionsClient.WebSocketConnection connection = connections.getConnection("L0SM9cOFvHcCIhw=").join().get();
+        assertEquals(Instant.parse("2026-01-01T00:00:00Z"), connection.getConnectedAt());
+        assertEquals("192.0.2.1", connection.getSourceIp());
+
+        assertTrue(connections.deleteConnection("L0SM9cOFvHcCIhw=").join());
+        assertFalse(connections.deleteConnection("L0SM9cOFvHcCIhw=").join());
+        assertFalse(connections.getConnection("L0SM9cOFvHcCIhw=").join().isPresent());
+        assertFalse(connections.postToConnection("L0SM9cOFvHcCIhw=", ByteBuffer.allocate(1)).join());
+    }
+
+    @Test
+    public void testBroadcasts() {
+        List<String> connectionIds = IntStream.range(0, 500).mapToObj(i -> "connection" + i).collect(Collectors.toList());
+        connected.addAll(connectionIds.subList(0, 450));
+
+        List<String> recipients = new java.util.ArrayList<>(connectionIds);
+        recipients.add("broken1");
+
+        WebSocketConnectionsClient.BroadcastResult result = connections.broadcast(
+            recipients,
+            ByteBuffer.wrap("{\"event\":\"update\"}".getBytes(StandardCharsets.UTF_8))
+        ).join();
+
+        assertEquals(450, result.getDelivered());
+        assertEquals(Set.copyOf(connectionIds.subList(450, 500)), Set.copyOf(result.getGoneConnectionIds()));
+        assertEquals(Set.of("broken1"), result.getFailures().keySet());
+        assertInstanceOf(ApiGatewayException.class, result.getFailures().get("broken1"));
+
+        assertEquals(450, received.size());
+        assertTrue(received.values().stream().allMatch("{\"event\":\"update\"}"::equals));
+        assertTrue(maxInFlight.get() <= 8);
+    }
+}